@@ -0,0 +1,196 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmark of the record heap the sort runs on and of the record
+ * comparison of its store. The Record object heap the sort used before the
+ * primitive store is kept as a baseline. Run with SortBenchmark, which
+ * writes the results of every benchmark as JSON.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.16.22
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+
+    /** The number of records sifted into the heaps, a power of two **/
+    public static final int REPLACEMENTS = 4096;
+
+    /** The number of records in the heap **/
+    @Param({ "1024", "65536" })
+    public int heapSize;
+
+    private RecordStore input;
+    private RecordStore replacements;
+    private RecordStore store;
+    private RecordHeap heap;
+    private MinHeap<Record> baselineHeap;
+    private Record[] baselineReplacements;
+    private int next;
+
+    /**
+     * Generate the random records, the same ones in every trial, and build
+     * the heaps sifted down into
+     */
+    @Setup(Level.Trial)
+    public void generate() {
+        Random random = new Random(17);
+        input = records(random, heapSize);
+        replacements = records(random, REPLACEMENTS);
+        store = copy(input);
+        heap = new RecordHeap(store, heapSize);
+        Record[] baselineInput = new Record[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            baselineInput[i] = input.getRecord(i);
+        }
+        baselineHeap = new MinHeap<>(baselineInput, heapSize, heapSize);
+        baselineReplacements = new Record[REPLACEMENTS];
+        for (int i = 0; i < REPLACEMENTS; i++) {
+            baselineReplacements[i] = replacements.getRecord(i);
+        }
+    }
+
+
+    /**
+     * Replace the root by a new record and sift it down, the step of
+     * replacement selection for every record read
+     *
+     * @return The new root key
+     */
+    @Benchmark
+    public double siftdown() {
+        int i = next++ & (REPLACEMENTS - 1);
+        store.set(0, replacements.getId(i), replacements.getKey(i));
+        heap.siftdown(0);
+        return store.getKey(0);
+    }
+
+
+    /**
+     * Remove every record of a full heap in order
+     *
+     * @param full
+     *            The full heap, built again before every invocation
+     * @param blackhole
+     *            Sink of the removed records
+     */
+    @Benchmark
+    public void removemin(FullHeap full, Blackhole blackhole) {
+        while (full.heap.heapsize() > 0) {
+            blackhole.consume(full.heap.removemin());
+        }
+    }
+
+
+    /**
+     * Compare two records of the store by their keys
+     *
+     * @return The comparison
+     */
+    @Benchmark
+    public int compare() {
+        int i = next++ & (REPLACEMENTS - 1);
+        return replacements.compare(i, (i + 1) & (REPLACEMENTS - 1));
+    }
+
+
+    /**
+     * Baseline: the sift down of the Record object heap
+     *
+     * @return The new root
+     */
+    @Benchmark
+    public Record baselineSiftdown() {
+        baselineHeap.getHeap()[0] = baselineReplacements[next++
+            & (REPLACEMENTS - 1)];
+        baselineHeap.siftdown(0);
+        return baselineHeap.peek();
+    }
+
+
+    /**
+     * Baseline: the comparison of two Record objects
+     *
+     * @return The comparison
+     */
+    @Benchmark
+    public int baselineCompareTo() {
+        int i = next++ & (REPLACEMENTS - 1);
+        return baselineReplacements[i].compareTo(baselineReplacements[(i + 1)
+            & (REPLACEMENTS - 1)]);
+    }
+
+
+    /**
+     * Generate records of random ids and keys
+     *
+     * @param random
+     *            The random source
+     * @param num
+     *            The number of records
+     * @return The records
+     */
+    private static RecordStore records(Random random, int num) {
+        RecordStore records = new RecordStore(num);
+        for (int i = 0; i < num; i++) {
+            records.set(i, random.nextLong(), random.nextDouble());
+        }
+        return records;
+    }
+
+
+    /**
+     * Copy the records of a store into a new one
+     *
+     * @param source
+     *            The store to copy
+     * @return The copy
+     */
+    private static RecordStore copy(RecordStore source) {
+        RecordStore records = new RecordStore(source.capacity());
+        for (int i = 0; i < source.capacity(); i++) {
+            records.set(i, source.getId(i), source.getKey(i));
+        }
+        return records;
+    }
+
+
+    /**
+     * A full heap for the benchmark draining it, kept apart so the other
+     * benchmarks do not pay for building it
+     */
+    @State(Scope.Thread)
+    public static class FullHeap {
+        private RecordHeap heap;
+
+        /**
+         * Build the heap of the input records
+         *
+         * @param benchmark
+         *            The benchmark holding the input records
+         */
+        @Setup(Level.Invocation)
+        public void build(HeapBenchmark benchmark) {
+            heap = new RecordHeap(copy(benchmark.input), benchmark.heapSize);
+        }
+    }
+}
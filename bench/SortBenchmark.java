@@ -0,0 +1,298 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of run generation and of the multi-way merge. Every
+ * benchmark counts the records and bytes it sorted, so next to the time of
+ * an operation JMH reports records/sec and bytes/sec. Run generation is
+ * measured with both sort engines, replacement selection on the heap and
+ * load-sort-store with the radix sort, and the merge at several fan-ins,
+ * all over inputs of several sizes.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.16.22
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class SortBenchmark {
+
+    /** The file the results are written to without an argument **/
+    public static final String RESULT_PATH = "benchmark.json";
+    /** The memory budget of every sort, 16384 records **/
+    public static final long MEMORY_BUDGET = FileReader.HEAP_SIZE * 4;
+
+    /**
+     * Run the heap and sort benchmarks, writing their results as JSON to
+     * compare them with the ones of an earlier version
+     *
+     * @param args
+     *            The result file, benchmark.json without one
+     * @throws RunnerException
+     *             Throws when a benchmark fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(
+            "(Heap|Sort)Benchmark").resultFormat(ResultFormatType.JSON)
+            .result(args.length > 0 ? args[0] : RESULT_PATH).build();
+        new Runner(options).run();
+    }
+
+
+    /**
+     * Generate the runs of the input
+     *
+     * @param input
+     *            The input and the settings of the sort
+     * @param counters
+     *            The records and bytes sorted
+     * @return The message of the runs
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Benchmark
+    public RunMessage generateRuns(RunInput input, Counters counters)
+        throws IOException {
+        RunMessage message = SortWorker.generateRuns(input.config,
+            RunInput.INPUT_NAME, 0, input.length, RunInput.RUN_NAME, 0);
+        counters.records += input.length / FileReader.RECORD_SIZE;
+        counters.bytes += input.length;
+        return message;
+    }
+
+
+    /**
+     * Merge the runs of the input into the output
+     *
+     * @param input
+     *            The runs and the settings of the merge
+     * @param counters
+     *            The records and bytes merged
+     * @return The bytes written
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Benchmark
+    public long multiwayMerge(MergeInput input, Counters counters)
+        throws IOException {
+        long written = input.controller.multiwayMerge(input.runFile,
+            input.runs, input.config.open(input.output));
+        counters.records += written / FileReader.RECORD_SIZE;
+        counters.bytes += written;
+        return written;
+    }
+
+
+    /**
+     * Write a file of random records
+     *
+     * @param fileName
+     *            Name of the file
+     * @param recordNum
+     *            The number of records
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private static void writeInput(String fileName, int recordNum)
+        throws IOException {
+        Random random = new Random(23);
+        ByteBuffer input = ByteBuffer.allocate(recordNum
+            * FileReader.RECORD_SIZE);
+        while (input.hasRemaining()) {
+            input.putLong(random.nextLong()).putDouble(random.nextDouble());
+        }
+        Files.write(Paths.get(fileName), input.array());
+    }
+
+
+    /**
+     * The records and bytes sorted, reported by JMH per second
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        /** The records sorted in the iteration **/
+        public long records;
+        /** The bytes sorted in the iteration **/
+        public long bytes;
+
+        /**
+         * Count from zero in every iteration
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0;
+            bytes = 0;
+        }
+    }
+
+
+    /**
+     * An input to generate the runs of
+     */
+    @State(Scope.Thread)
+    public static class RunInput {
+        private static final String INPUT_NAME = "benchmarkRunInput.bin";
+        private static final String RUN_NAME = "benchmarkRunFile.bin";
+
+        /** The sort engine generating the runs **/
+        @Param({ "HEAP", "RADIX" })
+        public SortEngine engine;
+        /** The number of records of the input **/
+        @Param({ "262144", "2097152" })
+        public int recordNum;
+
+        private SortConfig config;
+        private long length;
+
+        /**
+         * Write the input
+         *
+         * @throws IOException
+         *             Throws when anything wrong with I/O
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            config = new SortConfig(MEMORY_BUDGET, FileReader.BLOCK_SIZE,
+                SortConfig.DEFAULT_MAX_FAN_IN);
+            config.setSortEngine(engine);
+            length = (long)recordNum * FileReader.RECORD_SIZE;
+            writeInput(INPUT_NAME, recordNum);
+        }
+
+
+        /**
+         * Delete the input and the runs
+         *
+         * @throws IOException
+         *             Throws when anything wrong with I/O
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(Paths.get(INPUT_NAME));
+            Files.deleteIfExists(Paths.get(RUN_NAME));
+        }
+    }
+
+
+    /**
+     * The runs of an input to merge
+     */
+    @State(Scope.Thread)
+    public static class MergeInput {
+        private static final String INPUT_NAME = "benchmarkMergeInput.bin";
+        private static final String RUN_NAME = "benchmarkMergeRun.bin";
+        private static final String PRISTINE_NAME =
+            "benchmarkMergePristine.bin";
+        private static final String OUTPUT_NAME = "benchmarkOutput.bin";
+
+        /** The most runs merged at once **/
+        @Param({ "2", "8", "32" })
+        public int fanIn;
+        /** The number of records of the input **/
+        @Param({ "262144", "2097152" })
+        public int recordNum;
+
+        private SortConfig config;
+        private RandomAccessFile runFile;
+        private FileChannel pristine;
+        private RandomAccessFile output;
+        private RunIndex runs;
+        private long runFileLength;
+        private SortController controller;
+
+        /**
+         * Write the input and generate its runs, the same for every merge
+         *
+         * @throws IOException
+         *             Throws when anything wrong with I/O
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            config = new SortConfig(MEMORY_BUDGET, FileReader.BLOCK_SIZE,
+                fanIn);
+            writeInput(INPUT_NAME, recordNum);
+            runs = SortWorker.generateRuns(config, INPUT_NAME, 0,
+                (long)recordNum * FileReader.RECORD_SIZE, RUN_NAME, 0)
+                .getRuns();
+            // the merge steps write over the runs they merged, every merge
+            // starts from a copy of the generated runs
+            Files.copy(Paths.get(RUN_NAME), Paths.get(PRISTINE_NAME),
+                StandardCopyOption.REPLACE_EXISTING);
+            pristine = FileChannel.open(Paths.get(PRISTINE_NAME));
+            runFile = new RandomAccessFile(RUN_NAME, "rw");
+            runFileLength = runFile.length();
+            output = new RandomAccessFile(OUTPUT_NAME, "rw");
+            controller = new SortController(new RecordStore(config
+                .getHeapRecordNum()), null, ByteBuffer.wrap(
+                    new byte[config.getBlockSize()]), output, config);
+        }
+
+
+        /**
+         * Restore the generated runs the merge steps of the last merge
+         * wrote over, and drop the runs they appended
+         *
+         * @throws IOException
+         *             Throws when anything wrong with I/O
+         */
+        @Setup(Level.Invocation)
+        public void reset() throws IOException {
+            runFile.setLength(runFileLength);
+            FileChannel channel = runFile.getChannel();
+            pristine.position(0);
+            long copied = 0;
+            while (copied < runFileLength) {
+                copied += channel.transferFrom(pristine, copied,
+                    runFileLength - copied);
+            }
+        }
+
+
+        /**
+         * Delete the input, the runs, their copy and the output
+         *
+         * @throws IOException
+         *             Throws when anything wrong with I/O
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            runFile.close();
+            pristine.close();
+            output.close();
+            Files.deleteIfExists(Paths.get(INPUT_NAME));
+            Files.deleteIfExists(Paths.get(RUN_NAME));
+            Files.deleteIfExists(Paths.get(PRISTINE_NAME));
+            Files.deleteIfExists(Paths.get(OUTPUT_NAME));
+        }
+    }
+}
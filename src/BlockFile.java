@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Block level access to a file of records, reading and writing whole blocks
+ * at absolute positions so the sort does not depend on how the bytes reach
+ * the disk
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.23.22
+ *
+ */
+public interface BlockFile {
+
+    /**
+     * Get the length of the data inside the file
+     *
+     * @return The length in bytes
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public long length() throws IOException;
+
+
+    /**
+     * Read a block of the file
+     *
+     * @param position
+     *            The position of the block inside the file
+     * @param length
+     *            The number of bytes to read, inside the file length
+     * @param buffer
+     *            An array backed buffer with room for the block, which may be
+     *            used to hold the data
+     * @return A buffer holding the block between its position and limit
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public ByteBuffer read(long position, int length, ByteBuffer buffer)
+        throws IOException;
+
+
+    /**
+     * Write the remaining bytes of a buffer to the file
+     *
+     * @param position
+     *            The position of the block inside the file
+     * @param buffer
+     *            The array backed buffer to write from its position to its
+     *            limit
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void write(long position, ByteBuffer buffer) throws IOException;
+
+
+    /**
+     * Make the written data visible through the random access file
+     *
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void flush() throws IOException;
+
+
+    /**
+     * Get the underlying random access file
+     *
+     * @return The random access file, null for a channel
+     */
+    public RandomAccessFile getFile();
+}
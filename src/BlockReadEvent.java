@@ -0,0 +1,55 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the refill of the merge block of a run, the
+ * merge waiting for the read
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.18.22
+ *
+ */
+@Name("externalsort.BlockRead")
+@Label("Merge Block Read")
+@Category({ "External Sort", "I/O" })
+@Description("A block of a run read into its merge block")
+@StackTrace(false)
+public class BlockReadEvent extends Event {
+
+    @Label("Run")
+    @Description("Index of the run among the runs merged")
+    private int run;
+
+    @Label("Position")
+    @Description("Position of the block inside the run file")
+    private long position;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    private long bytes;
+
+    /**
+     * Commit the event of a block read, if it is recorded
+     *
+     * @param runIndex
+     *            The index of the run
+     * @param blockStart
+     *            The position of the block
+     * @param length
+     *            The bytes read
+     */
+    public void record(int runIndex, long blockStart, long length) {
+        end();
+        if (shouldCommit()) {
+            run = runIndex;
+            position = blockStart;
+            bytes = length;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sequential reader of the blocks of a file region. With read-ahead turned
+ * on, a background thread reads the next block into a second buffer while
+ * the caller consumes the current one, so the heap does not wait for the
+ * disk every time a block drains.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.25.22
+ *
+ */
+public class BlockReader implements BlockSource {
+    private BlockFile file;
+    private long position;
+    private long end;
+    private ByteBuffer[] buffers;
+    private int nextBuffer;
+    private ExecutorService executor;
+    private Future<ByteBuffer> pending;
+    private SortMetrics metrics;
+
+    /**
+     * Constructor of the block reader
+     *
+     * @param file
+     *            The file to read
+     * @param start
+     *            The position of the first block
+     * @param end
+     *            The position after the last block
+     * @param blockSize
+     *            The bytes of each block
+     * @param readAhead
+     *            True to read the next block in the background
+     */
+    public BlockReader(
+        BlockFile file,
+        long start,
+        long end,
+        int blockSize,
+        boolean readAhead) {
+        this.file = file;
+        this.position = start;
+        this.end = end;
+        buffers = new ByteBuffer[] { ByteBuffer.wrap(new byte[blockSize]),
+            ByteBuffer.wrap(new byte[blockSize]) };
+        if (readAhead) {
+            executor = Executors.newSingleThreadExecutor();
+            pending = executor.submit(readTask());
+        }
+    }
+
+
+    /**
+     * Set the metrics counting the bytes read and the time waited for a
+     * block
+     *
+     * @param newMetrics
+     *            The sort metrics, null to count nothing
+     */
+    public void setMetrics(SortMetrics newMetrics) {
+        this.metrics = newMetrics;
+    }
+
+
+    /**
+     * Check if blocks are left to read
+     *
+     * @return True if the region has more blocks
+     */
+    @Override
+    public boolean hasNext() {
+        return pending != null || position < end;
+    }
+
+
+    /**
+     * Get the next block, the last block may be partial. The block stays
+     * valid until the following call of next.
+     *
+     * @return A buffer holding the block, empty after the end
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public ByteBuffer next() throws IOException {
+        long begin = metrics == null ? 0 : System.nanoTime();
+        ByteBuffer block;
+        if (pending == null) {
+            block = readTask().call();
+        }
+        else {
+            block = await(pending);
+            // start reading the following block while this one is consumed
+            pending = position < end ? executor.submit(readTask()) : null;
+        }
+        if (metrics != null) {
+            metrics.addStall(System.nanoTime() - begin);
+            metrics.addRead(block.remaining());
+        }
+        return block;
+    }
+
+
+    /**
+     * Stop the background reader. A read in flight is left to finish,
+     * interrupting it would close the channel it shares with other readers.
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * Create the task reading the block at the current position into the
+     * buffer not held by the caller
+     *
+     * @return The read task
+     */
+    private IoTask<ByteBuffer> readTask() {
+        long blockStart = position;
+        ByteBuffer buffer = buffers[nextBuffer];
+        int length = (int)Math.max(0, Math.min(buffer.capacity(), end
+            - blockStart));
+        position += length;
+        nextBuffer = 1 - nextBuffer;
+        return () -> {
+            if (length == 0) {
+                buffer.clear();
+                buffer.limit(0);
+                return buffer;
+            }
+            return file.read(blockStart, length, buffer);
+        };
+    }
+
+
+    /**
+     * Wait for a background read
+     *
+     * @param task
+     *            The pending read
+     * @return The block read
+     * @throws IOException
+     *             Throws when the read failed or was interrupted
+     */
+    private static ByteBuffer await(Future<ByteBuffer> task)
+        throws IOException {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted reading a block");
+        }
+        catch (ExecutionException e) {
+            throw IoTask.unwrap(e);
+        }
+    }
+}
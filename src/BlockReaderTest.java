@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the block reader
+ *
+ * @author Wenjun Han
+ * @version 4.25.22
+ */
+public class BlockReaderTest extends TestCase {
+
+    private RandomAccessFile file;
+    private BlockFile blockFile;
+
+    /**
+     * set up a file of 10 records
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("readerTest.bin"));
+        file = new RandomAccessFile("readerTest.bin", "rw");
+        for (int i = 0; i < 10; i++) {
+            file.writeLong(i);
+            file.writeDouble(i);
+        }
+        blockFile = new StreamBlockFile(file);
+    }
+
+
+    /**
+     * Read the file region 3 records at a time and check the ids
+     *
+     * @param readAhead
+     *            True to read in the background
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private void checkRead(boolean readAhead) throws IOException {
+        BlockReader reader = new BlockReader(blockFile, 16, 160, 48,
+            readAhead);
+        long id = 1;
+        int blocks = 0;
+        while (reader.hasNext()) {
+            ByteBuffer block = reader.next();
+            blocks++;
+            while (block.hasRemaining()) {
+                assertEquals(id++, block.getLong());
+                block.getDouble();
+            }
+        }
+        reader.close();
+        assertEquals(10, id);
+        assertEquals(3, blocks);
+        assertEquals(0, reader.next().remaining());
+    }
+
+
+    /**
+     * test reading in the caller thread
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSyncRead() throws IOException {
+        checkRead(false);
+    }
+
+
+    /**
+     * test reading ahead in the background
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testReadAhead() throws IOException {
+        checkRead(true);
+        file.close();
+        Files.deleteIfExists(Paths.get("readerTest.bin"));
+    }
+}
@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Sequential source of input blocks for run generation, a region of a file
+ * or a stream of records
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.2.22
+ *
+ */
+public interface BlockSource {
+
+    /**
+     * Check if blocks are left to read
+     *
+     * @return True if the source has more blocks
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public boolean hasNext() throws IOException;
+
+
+    /**
+     * Get the next block, the last block may be partial. The block stays
+     * valid until the following call of next.
+     *
+     * @return A buffer holding the block, empty after the end
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public ByteBuffer next() throws IOException;
+}
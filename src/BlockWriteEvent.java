@@ -0,0 +1,48 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a block written to its file, lasting as long as
+ * the write itself, on the background thread with write-behind
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.18.22
+ *
+ */
+@Name("externalsort.BlockWrite")
+@Label("Block Write")
+@Category({ "External Sort", "I/O" })
+@Description("An output buffer flushed to its file")
+@StackTrace(false)
+public class BlockWriteEvent extends Event {
+
+    @Label("Position")
+    @Description("Position of the block inside its file")
+    private long position;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    private long bytes;
+
+    /**
+     * Commit the event of a block write, if it is recorded
+     *
+     * @param blockStart
+     *            The position of the block
+     * @param length
+     *            The bytes written, the frame bytes when compressed
+     */
+    public void record(long blockStart, long length) {
+        end();
+        if (shouldCommit()) {
+            position = blockStart;
+            bytes = length;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sequential writer of blocks to a file. With write-behind turned on, a full
+ * block is handed to a background thread and the caller keeps filling a
+ * second buffer, so the heap does not wait for the disk every time the
+ * output buffer fills. With compression turned on, every block is encoded
+ * into a run frame before it is written, and the positions count the frame
+ * bytes.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.25.22
+ *
+ */
+public class BlockWriter {
+    private BlockFile file;
+    private long position;
+    private ByteBuffer spare;
+    private ByteBuffer[] frames;
+    private int nextFrame;
+    private ExecutorService executor;
+    private Future<ByteBuffer> pending;
+    private SortMetrics metrics;
+
+    /**
+     * Constructor of the block writer
+     *
+     * @param file
+     *            The file to write
+     * @param start
+     *            The position of the first block
+     * @param blockSize
+     *            The bytes of each block
+     * @param writeBehind
+     *            True to write the blocks in the background
+     */
+    public BlockWriter(
+        BlockFile file,
+        long start,
+        int blockSize,
+        boolean writeBehind) {
+        this(file, start, blockSize, writeBehind, false);
+    }
+
+
+    /**
+     * Constructor of the block writer
+     *
+     * @param file
+     *            The file to write
+     * @param start
+     *            The position of the first block
+     * @param blockSize
+     *            The bytes of each block
+     * @param writeBehind
+     *            True to write the blocks in the background
+     * @param compress
+     *            True to write every block as a compressed run frame
+     */
+    public BlockWriter(
+        BlockFile file,
+        long start,
+        int blockSize,
+        boolean writeBehind,
+        boolean compress) {
+        this.file = file;
+        this.position = start;
+        spare = ByteBuffer.wrap(new byte[blockSize]);
+        if (compress) {
+            // one frame is encoded while the previous one is written
+            frames = new ByteBuffer[2];
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = ByteBuffer.wrap(new byte[RunCodec.frameCapacity(
+                    blockSize)]);
+            }
+        }
+        if (writeBehind) {
+            executor = Executors.newSingleThreadExecutor();
+        }
+    }
+
+
+    /**
+     * Set the metrics counting the bytes written and the time waited for a
+     * block
+     *
+     * @param newMetrics
+     *            The sort metrics, null to count nothing
+     */
+    public void setMetrics(SortMetrics newMetrics) {
+        this.metrics = newMetrics;
+    }
+
+
+    /**
+     * Get the position after the blocks written so far
+     *
+     * @return The position of the next block
+     */
+    public long getPosition() {
+        return position;
+    }
+
+
+    /**
+     * Write a buffer filled from position 0 and get an empty buffer to keep
+     * filling
+     *
+     * @param buffer
+     *            The filled buffer, owned by the writer afterwards
+     * @return An empty buffer of the same size
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public ByteBuffer write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            return buffer;
+        }
+        ByteBuffer block = frames == null ? buffer : frames[nextFrame];
+        if (frames != null) {
+            // the raw buffer is free again once encoded
+            nextFrame = 1 - nextFrame;
+            RunCodec.encode(buffer, block);
+        }
+        long blockStart = position;
+        int length = block.remaining();
+        position += length;
+        long begin = 0;
+        if (metrics != null) {
+            metrics.addWritten(length);
+            begin = System.nanoTime();
+        }
+        if (executor == null) {
+            writeBlock(blockStart, block);
+            stalled(begin);
+            buffer.clear();
+            return buffer;
+        }
+        // the previous block has to be written before its buffer is reused
+        ByteBuffer released = pending == null ? spare : await(pending);
+        stalled(begin);
+        IoTask<ByteBuffer> task = () -> {
+            writeBlock(blockStart, block);
+            return block;
+        };
+        pending = executor.submit(task);
+        ByteBuffer free = frames == null ? released : buffer;
+        free.clear();
+        return free;
+    }
+
+
+    /**
+     * Wait for the blocks in flight and flush the file
+     *
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void flush() throws IOException {
+        long begin = metrics == null ? 0 : System.nanoTime();
+        if (pending != null) {
+            ByteBuffer released = await(pending);
+            if (frames == null) {
+                spare = released;
+            }
+            pending = null;
+        }
+        file.flush();
+        stalled(begin);
+    }
+
+
+    /**
+     * Stop the background writer, the blocks in flight are dropped unless
+     * flushed before
+     */
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Write a block to the file, timed by its flight recorder event on the
+     * thread writing it
+     *
+     * @param blockStart
+     *            The position of the block
+     * @param block
+     *            The block, written from its position to its limit
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private void writeBlock(long blockStart, ByteBuffer block)
+        throws IOException {
+        int length = block.remaining();
+        BlockWriteEvent event = new BlockWriteEvent();
+        event.begin();
+        file.write(blockStart, block);
+        event.record(blockStart, length);
+    }
+
+
+    /**
+     * Add the time since a block started to be written or waited for
+     *
+     * @param begin
+     *            The nanoTime the wait began
+     */
+    private void stalled(long begin) {
+        if (metrics != null) {
+            metrics.addStall(System.nanoTime() - begin);
+        }
+    }
+
+
+    /**
+     * Wait for a background write
+     *
+     * @param task
+     *            The pending write
+     * @return The buffer released by the write
+     * @throws IOException
+     *             Throws when the write failed or was interrupted
+     */
+    private static ByteBuffer await(Future<ByteBuffer> task)
+        throws IOException {
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted writing a block");
+        }
+        catch (ExecutionException e) {
+            throw IoTask.unwrap(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the block writer
+ *
+ * @author Wenjun Han
+ * @version 4.25.22
+ */
+public class BlockWriterTest extends TestCase {
+
+    private RandomAccessFile file;
+
+    /**
+     * set up an empty file
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("writerTest.bin"));
+        file = new RandomAccessFile("writerTest.bin", "rw");
+    }
+
+
+    /**
+     * Write 10 records 3 at a time and check the file
+     *
+     * @param writeBehind
+     *            True to write in the background
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private void checkWrite(boolean writeBehind) throws IOException {
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(file), 0, 48,
+            writeBehind);
+        ByteBuffer buffer = ByteBuffer.allocate(48);
+        for (int i = 0; i < 10; i++) {
+            if (!buffer.hasRemaining()) {
+                buffer = writer.write(buffer);
+                assertEquals(0, buffer.position());
+            }
+            buffer.putLong(i).putDouble(i);
+        }
+        writer.write(buffer);
+        writer.write(ByteBuffer.allocate(48));
+        writer.flush();
+        writer.close();
+        assertEquals(160, writer.getPosition());
+        assertEquals(160, file.length());
+        file.seek(144);
+        assertEquals(9, file.readLong());
+        file.close();
+        Files.deleteIfExists(Paths.get("writerTest.bin"));
+    }
+
+
+    /**
+     * test writing in the caller thread
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSyncWrite() throws IOException {
+        checkWrite(false);
+    }
+
+
+    /**
+     * test writing behind in the background
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testWriteBehind() throws IOException {
+        checkWrite(true);
+    }
+
+
+    /**
+     * test writing compressed frames behind in the background
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCompressed() throws IOException {
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(file), 0, 48,
+            true, true);
+        ByteBuffer buffer = ByteBuffer.allocate(48);
+        for (int i = 0; i < 10; i++) {
+            if (!buffer.hasRemaining()) {
+                buffer = writer.write(buffer);
+            }
+            buffer.putLong(i).putDouble(i);
+        }
+        writer.write(buffer);
+        writer.flush();
+        writer.close();
+        // the 4 frames are smaller than the 160 bytes of records
+        assertTrue(writer.getPosition() < 160);
+        assertEquals(writer.getPosition(), file.length());
+        byte[] frames = new byte[(int)file.length()];
+        file.seek(0);
+        file.readFully(frames);
+        ByteBuffer frame = ByteBuffer.wrap(frames);
+        RecordStore records = new RecordStore(10);
+        int count = 0;
+        while (frame.hasRemaining()) {
+            count += RunCodec.decode(frame, records, count, 10 - count);
+        }
+        assertEquals(10, count);
+        assertEquals(9, records.getId(9));
+        assertEquals(9.0, records.getKey(9), 0.0);
+        file.close();
+        Files.deleteIfExists(Paths.get("writerTest.bin"));
+    }
+}
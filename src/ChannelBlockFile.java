@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Write-only block file over a writable channel, so the last merge pass can
+ * stream the sorted records to another process instead of a file. Blocks
+ * must be written in order, one after the other.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.2.22
+ *
+ */
+public class ChannelBlockFile implements BlockFile {
+    private WritableByteChannel channel;
+    private long length;
+
+    /**
+     * Constructor of the channel block file
+     *
+     * @param channel
+     *            The channel to write
+     */
+    public ChannelBlockFile(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+
+    /**
+     * Get the number of bytes written to the channel
+     *
+     * @return The length in bytes
+     */
+    @Override
+    public long length() {
+        return length;
+    }
+
+
+    /**
+     * A channel cannot be read back
+     *
+     * @param position
+     *            The position of the block
+     * @param blockLength
+     *            The number of bytes to read
+     * @param buffer
+     *            A buffer with room for the block
+     * @return Never returns
+     * @throws IOException
+     *             Always throws, the channel is write-only
+     */
+    @Override
+    public ByteBuffer read(long position, int blockLength, ByteBuffer buffer)
+        throws IOException {
+        throw new IOException("Channel output cannot be read");
+    }
+
+
+    /**
+     * Write the remaining bytes of a buffer after the bytes already written
+     *
+     * @param position
+     *            The position of the block, the current length
+     * @param buffer
+     *            The buffer to write
+     * @throws IOException
+     *             Throws when anything wrong with I/O or the block is out of
+     *             order
+     */
+    @Override
+    public void write(long position, ByteBuffer buffer) throws IOException {
+        if (position != length) {
+            throw new IOException("Block at " + position
+                + " is not written after " + length + " bytes");
+        }
+        while (buffer.hasRemaining()) {
+            length += channel.write(buffer);
+        }
+    }
+
+
+    /**
+     * Writes go straight to the channel, nothing to flush
+     */
+    @Override
+    public void flush() {
+        // the caller closes the channel
+    }
+
+
+    /**
+     * A channel has no random access file
+     *
+     * @return null
+     */
+    @Override
+    public RandomAccessFile getFile() {
+        return null;
+    }
+}
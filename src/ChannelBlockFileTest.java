@@ -0,0 +1,49 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import student.TestCase;
+
+/**
+ * Test of the channel block file
+ *
+ * @author Wenjun Han
+ * @version 5.2.22
+ */
+public class ChannelBlockFileTest extends TestCase {
+
+    /**
+     * test writing blocks in order and rejecting the rest
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testWrite() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChannelBlockFile blockFile = new ChannelBlockFile(Channels.newChannel(
+            output));
+        blockFile.write(0, ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        blockFile.write(3, ByteBuffer.wrap(new byte[] { 4 }));
+        blockFile.flush();
+        assertEquals(4, blockFile.length());
+        assertEquals(4, output.size());
+        assertEquals(4, output.toByteArray()[3]);
+        assertNull(blockFile.getFile());
+        Exception thrown = null;
+        try {
+            blockFile.write(0, ByteBuffer.wrap(new byte[] { 5 }));
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            blockFile.read(0, 1, ByteBuffer.allocate(1));
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Source of the blocks of a readable channel. Every block but the last is
+ * read full, and the next block is read when asked whether one is left, so
+ * the end of a stream is known before its last block is taken.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.2.22
+ *
+ */
+public class ChannelBlockSource implements BlockSource {
+    private ReadableByteChannel channel;
+    private ByteBuffer[] buffers;
+    private int nextBuffer;
+    private boolean filled;
+    private boolean ended;
+
+    /**
+     * Constructor of the channel block source
+     *
+     * @param channel
+     *            The channel of records
+     * @param blockSize
+     *            The bytes of each block, a multiple of the record size
+     */
+    public ChannelBlockSource(ReadableByteChannel channel, int blockSize) {
+        this.channel = channel;
+        buffers = new ByteBuffer[] { ByteBuffer.wrap(new byte[blockSize]),
+            ByteBuffer.wrap(new byte[blockSize]) };
+    }
+
+
+    /**
+     * Check if blocks are left to read, reading the next block if needed
+     *
+     * @return True if the channel has more records
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        if (!filled && !ended) {
+            fill(buffers[nextBuffer]);
+        }
+        return filled;
+    }
+
+
+    /**
+     * Get the next block, the last block may be partial. The block stays
+     * valid until the following call of next.
+     *
+     * @return A buffer holding the block, empty after the end
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public ByteBuffer next() throws IOException {
+        ByteBuffer block = buffers[nextBuffer];
+        if (!hasNext()) {
+            block.clear();
+            block.limit(0);
+            return block;
+        }
+        filled = false;
+        nextBuffer = 1 - nextBuffer;
+        return block;
+    }
+
+
+    /**
+     * Read the channel until the block is full or the channel ends
+     *
+     * @param block
+     *            The buffer of the block
+     * @throws IOException
+     *             Throws when anything wrong with I/O or the channel ends
+     *             inside a record
+     */
+    private void fill(ByteBuffer block) throws IOException {
+        block.clear();
+        while (block.hasRemaining()) {
+            if (channel.read(block) < 0) {
+                ended = true;
+                break;
+            }
+        }
+        block.flip();
+        if (block.remaining() % FileReader.RECORD_SIZE != 0) {
+            throw new EOFException("Channel ends inside a record");
+        }
+        filled = block.hasRemaining();
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import student.TestCase;
+
+/**
+ * Test of the channel block source
+ *
+ * @author Wenjun Han
+ * @version 5.2.22
+ */
+public class ChannelBlockSourceTest extends TestCase {
+
+    /**
+     * test full blocks, the partial last block and the end
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testBlocks() throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(80);
+        for (int i = 0; i < 5; i++) {
+            input.putLong(i).putDouble(i);
+        }
+        ChannelBlockSource source = new ChannelBlockSource(Channels
+            .newChannel(new ByteArrayInputStream(input.array())), 32);
+        assertTrue(source.hasNext());
+        assertEquals(32, source.next().remaining());
+        ByteBuffer block = source.next();
+        assertEquals(32, block.remaining());
+        assertEquals(2, block.getLong());
+        assertTrue(source.hasNext());
+        assertEquals(16, source.next().remaining());
+        assertFalse(source.hasNext());
+        assertEquals(0, source.next().remaining());
+    }
+
+
+    /**
+     * test a channel ending inside a record
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testPartialRecord() throws IOException {
+        ChannelBlockSource source = new ChannelBlockSource(Channels
+            .newChannel(new ByteArrayInputStream(new byte[20])), 32);
+        Exception thrown = null;
+        try {
+            source.hasNext();
+        }
+        catch (EOFException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+}
@@ -42,12 +42,15 @@ public class Externalsort {
     public static void main(String[] args)
         throws IOException,
         FileNotFoundException {
+        // the counters of the sort can be watched over JMX while it runs
+        SortConfig config = new SortConfig();
+        config.setMetrics(SortMetrics.getPublished());
         if (args.length == 1) {
-            FileReader reader = new FileReader();
+            FileReader reader = new FileReader(config);
             reader.readFile(args[0]);
         }
         else {
-            FileReader reader = new FileReader();
+            FileReader reader = new FileReader(config);
             reader.readFile("sampleInput16.bin");
         }
     }
@@ -20,8 +20,31 @@ public class FileReader {
     /** Number of records per heap **/
     public static final int HEAP_RECORD_NUM = HEAP_SIZE / RECORD_SIZE;
 
+    private SortConfig config;
+    private RunIndex shardIndex;
+
     /**
-     * The file reader of the bin file
+     * Constructor of the file reader sized from the JVM memory
+     */
+    public FileReader() {
+        this(new SortConfig());
+    }
+
+
+    /**
+     * Constructor of the file reader
+     * 
+     * @param config
+     *            The memory budget, block size and fan-in of the sort
+     */
+    public FileReader(SortConfig config) {
+        this.config = config;
+    }
+
+
+    /**
+     * The file reader of the bin file, sorted in place or into the key range
+     * shards of the configuration
      * 
      * @param fileName
      *            Name of the file
@@ -30,48 +53,206 @@ public class FileReader {
      */
     public void readFile(String fileName) throws IOException {
 
-        ByteBuffer inputBuffer = ByteBuffer.wrap(
-            new byte[FileReader.BLOCK_SIZE]);
-        ByteBuffer outputBuffer = ByteBuffer.wrap(
-            new byte[FileReader.BLOCK_SIZE]);
+        int blockSize = config.getBlockSize();
+        ByteBuffer inputBuffer = ByteBuffer.wrap(new byte[blockSize]);
+        ByteBuffer outputBuffer = ByteBuffer.wrap(new byte[blockSize]);
         RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        BlockFile blockFile = config.open(file);
+        RandomAccessFile[] shards = null;
+        if (config.getShards() > 1) {
+            shards = new RandomAccessFile[config.getShards()];
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new RandomAccessFile(shardName(fileName, i), "rw");
+            }
+        }
         int numRecord = 0;
-        numRecord = Math.min((int)file.length() / RECORD_SIZE, HEAP_SIZE
-            / RECORD_SIZE);
-
-        // build up records
-        Record[] records = buildRecords(0, file, numRecord);
-        if (file.length() <= HEAP_SIZE) {
-            MinHeap<Record> minHeap = new MinHeap<>(records, numRecord,
-                numRecord);
-            file.seek(0);
-            byte[] resultOutput = new byte[BLOCK_SIZE];
-            while (minHeap.heapsize() > 0) {
-                Record minRec = minHeap.removemin();
-                outputBuffer.putLong(minRec.getId());
-                outputBuffer.putDouble(minRec.getKey());
-                if (!outputBuffer.hasRemaining()) {
-                    outputBuffer.flip();
-                    outputBuffer.get(resultOutput);
-                    file.write(resultOutput);
-                    outputBuffer.rewind();
-                    outputBuffer.clear();
-                }
+        numRecord = (int)Math.min(file.length() / RECORD_SIZE, config
+            .getHeapRecordNum());
+
+        boolean radix = config.getSortEngine() == SortEngine.RADIX;
+        // the radix engine keeps a scratch copy after the records
+        long inMemoryLength = radix
+            ? config.getMemoryBudget() / 2
+            : config.getMemoryBudget();
+
+        // build up records, a sort spilling runs gets the whole budget even
+        // when the file is smaller
+        int capacity = file.length() > inMemoryLength
+            ? config.getHeapRecordNum()
+            : radix ? 2 * numRecord : numRecord;
+        RecordStore records = buildRecords(0, blockFile, numRecord, capacity,
+            config.isStable());
+        if (file.length() <= inMemoryLength) {
+            int first = radix
+                ? new RadixSorter().sort(records, 0, numRecord)
+                : 0;
+            RecordHeap minHeap = radix
+                ? null
+                : new RecordHeap(records, numRecord);
+            shardIndex = writeSorted(records, minHeap, first, numRecord,
+                shards == null ? new RandomAccessFile[] { file } : shards,
+                outputBuffer);
+        }
+        else if (config.isTopK()) {
+            // one scan keeps the smallest records, nothing is spilled
+            BlockReader reader = new BlockReader(config.open(file),
+                (long)numRecord * RECORD_SIZE, file.length(), blockSize,
+                config.isAsyncIo());
+            int selected;
+            try {
+                selected = new TopKSelector(records, 0, (int)config
+                    .getLimit()).select(numRecord, reader);
             }
+            finally {
+                reader.close();
+            }
+            shardIndex = writeSorted(records, null, 0, selected, shards == null
+                ? new RandomAccessFile[] { file }
+                : shards, outputBuffer);
         }
         else {
             SortController controller = new SortController(records, inputBuffer,
-                outputBuffer, file);
-            RandomAccessFile sortedFile = controller.replacementSelection();
-            controller.multiwayMerge(sortedFile);
+                outputBuffer, file, config);
+            controller.setInputPath(fileName);
+            // an interrupted sort of the file continues from its runs
+            RandomAccessFile sortedFile = controller.resume();
+            if (sortedFile == null) {
+                sortedFile = controller.replacementSelection();
+            }
+            if (shards == null) {
+                controller.multiwayMerge(sortedFile);
+                shardIndex = new RunIndex(1);
+                shardIndex.add(0, file.length());
+            }
+            else {
+                shardIndex = controller.multiwayMerge(sortedFile, shards);
+            }
+        }
+        if (shards == null) {
+            SortController.printSortedRecord(file);
+        }
+        else {
+            for (RandomAccessFile shard : shards) {
+                SortController.printSortedRecord(shard);
+                System.out.println();
+                shard.close();
+            }
         }
-        SortController.printSortedRecord(file);
         file.close();
     }
 
 
     /**
-     * Build up records in the Records array
+     * Get the files written by the last sort
+     * 
+     * @return The length and key range of the sorted file, or of every
+     *         shard in key order
+     */
+    public RunIndex getShardIndex() {
+        return shardIndex;
+    }
+
+
+    /**
+     * Get the name of a shard of a sorted file
+     * 
+     * @param fileName
+     *            Name of the file
+     * @param shard
+     *            The index of the shard in key order
+     * @return Name of the shard file
+     */
+    public static String shardName(String fileName, int shard) {
+        return fileName + ".shard" + shard;
+    }
+
+
+    /**
+     * Write the records sorted in memory to the start of the file or of its
+     * shards, cut at the limit and combined by the combiner of the sort
+     * 
+     * @param records
+     *            The record store
+     * @param minHeap
+     *            The heap of the records, null if they are sorted already
+     * @param first
+     *            The index of the first sorted record
+     * @param num
+     *            The number of records
+     * @param targets
+     *            The file, or the shards in key order
+     * @param outputBuffer
+     *            The output buffer
+     * @return The length and key range written to every target
+     * @throws IOException
+     *             Throws if anything wrong with I/O
+     */
+    private RunIndex writeSorted(
+        RecordStore records,
+        RecordHeap minHeap,
+        int first,
+        int num,
+        RandomAccessFile[] targets,
+        ByteBuffer outputBuffer)
+        throws IOException {
+        double[] splitters = config.getSplitKeys();
+        if (targets.length == 1) {
+            splitters = new double[0];
+        }
+        else if (splitters == null && minHeap == null) {
+            // the sorted records give the exact splitters of the records
+            // kept
+            long kept = Math.min(num, config.getLimit());
+            splitters = new double[targets.length - 1];
+            for (int j = 1; j < targets.length; j++) {
+                splitters[j - 1] = kept == 0
+                    ? Double.POSITIVE_INFINITY
+                    : records.getKey(first + (int)(j * kept
+                        / targets.length));
+            }
+        }
+        else if (splitters == null) {
+            // every record is in memory, its keys are the sample
+            int sampleNum = targets.length * MergePartitioner.SAMPLES_PER_PART;
+            KeySample sample = new KeySample(sampleNum, Math.max(1, num
+                / sampleNum));
+            for (int i = first; i < first + num; i++) {
+                sample.add(records.getKey(i));
+            }
+            splitters = sample.splitters(targets.length);
+        }
+        BlockWriter[] writers = new BlockWriter[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            writers[i] = new BlockWriter(config.open(targets[i]), 0, config
+                .getBlockSize(), false);
+        }
+        RunOutput output = new RunOutput(writers, splitters, outputBuffer,
+            config.getCombiner(), config.getLimit());
+        for (int i = 0; i < num; i++) {
+            // the root of the heap is the next record
+            int next = minHeap == null ? first + i : 0;
+            if (output.isFull() && !output.folds(records.getKey(next))) {
+                break;
+            }
+            output.write(records, minHeap == null
+                ? next
+                : minHeap.removemin());
+        }
+        // write the last partial block
+        output.endRun();
+        RunIndex written = output.getShardIndex();
+        for (int i = 0; i < targets.length; i++) {
+            writers[i].flush();
+            if (written.getLength(i) < targets[i].length()) {
+                targets[i].setLength(written.getLength(i));
+            }
+        }
+        return written;
+    }
+
+
+    /**
+     * Build up records in the record store block by block
      * 
      * @param pointer
      *            The pointer location
@@ -80,24 +261,102 @@ public class FileReader {
      *            The random access file
      * @param numRecord
      *            The number of records to build Records
-     * @return A record array
+     * @return A record store
      * @throws IOException
      *             Throws if anything wrong with I/O
      */
-    public static Record[] buildRecords(
-        int pointer,
+    public static RecordStore buildRecords(
+        long pointer,
         RandomAccessFile file,
         int numRecord)
         throws IOException {
-        byte[] byteRecord = new byte[RECORD_SIZE];
-        Record[] records = new Record[numRecord];
-        for (int i = 0; i < numRecord; i++) {
-            file.seek(pointer);
-            byteRecord = new byte[RECORD_SIZE];
-            // read the file to the byte record
-            file.read(byteRecord, 0, RECORD_SIZE);
-            pointer += RECORD_SIZE;
-            records[i] = new Record(byteRecord);
+        return buildRecords(pointer, new StreamBlockFile(file), numRecord);
+    }
+
+
+    /**
+     * Build up records in the record store block by block
+     * 
+     * @param pointer
+     *            The pointer location
+     * @param file
+     *            The block file
+     * @param numRecord
+     *            The number of records to build Records
+     * @return A record store
+     * @throws IOException
+     *             Throws if anything wrong with I/O
+     */
+    public static RecordStore buildRecords(
+        long pointer,
+        BlockFile file,
+        int numRecord)
+        throws IOException {
+        return buildRecords(pointer, file, numRecord, numRecord);
+    }
+
+
+    /**
+     * Build up records at the start of a larger record store block by block
+     * 
+     * @param pointer
+     *            The pointer location
+     * @param file
+     *            The block file
+     * @param numRecord
+     *            The number of records to build Records
+     * @param capacity
+     *            The number of records the store can hold, at least numRecord
+     * @return A record store
+     * @throws IOException
+     *             Throws if anything wrong with I/O
+     */
+    public static RecordStore buildRecords(
+        long pointer,
+        BlockFile file,
+        int numRecord,
+        int capacity)
+        throws IOException {
+        return buildRecords(pointer, file, numRecord, capacity, false);
+    }
+
+
+    /**
+     * Build up records at the start of a larger record store block by block
+     * 
+     * @param pointer
+     *            The pointer location
+     * @param file
+     *            The block file
+     * @param numRecord
+     *            The number of records to build Records
+     * @param capacity
+     *            The number of records the store can hold, at least numRecord
+     * @param stable
+     *            True to order the records of equal keys by their ids
+     * @return A record store
+     * @throws IOException
+     *             Throws if anything wrong with I/O
+     */
+    public static RecordStore buildRecords(
+        long pointer,
+        BlockFile file,
+        int numRecord,
+        int capacity,
+        boolean stable)
+        throws IOException {
+        RecordStore records = new RecordStore(capacity, stable);
+        ByteBuffer readBuffer = ByteBuffer.wrap(new byte[BLOCK_SIZE]);
+        int index = 0;
+        while (index < numRecord) {
+            // read the file block by block and decode the records
+            int readLength = Math.min(BLOCK_SIZE, (numRecord - index)
+                * RECORD_SIZE);
+            ByteBuffer block = file.read(pointer, readLength, readBuffer);
+            pointer += readLength;
+            for (int i = 0; i < readLength; i += RECORD_SIZE) {
+                records.read(index++, block);
+            }
         }
         return records;
     }
@@ -0,0 +1,13 @@
+/**
+ * The ways the sort can move blocks between the files and memory
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.23.22
+ *
+ */
+public enum IoMode {
+    /** Read and write through RandomAccessFile byte arrays **/
+    STREAM,
+    /** Read and write through memory mapped windows of the files **/
+    MAPPED
+}
@@ -0,0 +1,46 @@
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A background I/O step of the sort, a Callable narrowed to IOException
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.25.22
+ * @param <T>
+ *            The result type
+ */
+public interface IoTask<T> extends Callable<T> {
+
+    /**
+     * Run the I/O step
+     *
+     * @return The result of the step
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public T call() throws IOException;
+
+
+    /**
+     * Get the I/O failure behind a failed background step
+     *
+     * @param e
+     *            The failure of the background step
+     * @return The I/O exception to throw in the caller
+     */
+    public static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException)cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error)cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * One field of the key of a record layout, the fields of a composite key
+ * compare in the order they are declared
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.19.22
+ *
+ */
+public class KeyField {
+    private int offset;
+    private int length;
+    private KeyType type;
+
+    /**
+     * Constructor of the key field
+     *
+     * @param offset
+     *            The position of the field inside the record
+     * @param length
+     *            The bytes of the field, 8 for doubles and longs and 4 for
+     *            ints
+     * @param type
+     *            The type of the field
+     */
+    public KeyField(int offset, int length, KeyType type) {
+        int typeLength = type == KeyType.INT
+            ? Integer.BYTES
+            : Long.BYTES;
+        if (offset < 0 || length < 1 || (type != KeyType.BYTES
+            && length != typeLength)) {
+            throw new IllegalArgumentException("Key field of " + length
+                + " bytes at " + offset + " cannot hold a " + type);
+        }
+        this.offset = offset;
+        this.length = length;
+        this.type = type;
+    }
+
+
+    /**
+     * Get the position of the field inside the record
+     *
+     * @return The offset of the field
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+
+    /**
+     * Get the bytes of the field
+     *
+     * @return The length of the field
+     */
+    public int getLength() {
+        return length;
+    }
+
+
+    /**
+     * Get the type of the field
+     *
+     * @return The key type
+     */
+    public KeyType getType() {
+        return type;
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * Sample of the keys passing through a sort, every interval-th key is kept
+ * up to the capacity of the sample. Run generation fills it while the runs
+ * are written, so the splitter keys of the output shards are known without
+ * reading the runs again.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.14.22
+ *
+ */
+public class KeySample {
+    private double[] keys;
+    private int count;
+    private long interval;
+    private long seen;
+
+    /**
+     * Constructor of the key sample
+     *
+     * @param capacity
+     *            The most keys kept
+     * @param interval
+     *            The number of keys offered for every key kept, at least 1
+     */
+    public KeySample(int capacity, long interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Sample interval " + interval
+                + " keeps no keys");
+        }
+        keys = new double[capacity];
+        this.interval = interval;
+    }
+
+
+    /**
+     * Offer a key to the sample
+     *
+     * @param key
+     *            The key
+     */
+    public void add(double key) {
+        if (seen++ % interval == 0 && count < keys.length) {
+            keys[count++] = key;
+        }
+    }
+
+
+    /**
+     * Keep the keys of another sample as well
+     *
+     * @param other
+     *            The other sample
+     */
+    public void addAll(KeySample other) {
+        if (count + other.count > keys.length) {
+            keys = Arrays.copyOf(keys, count + other.count);
+        }
+        System.arraycopy(other.keys, 0, keys, count, other.count);
+        count += other.count;
+    }
+
+
+    /**
+     * Get the number of keys kept
+     *
+     * @return The size of the sample
+     */
+    public int size() {
+        return count;
+    }
+
+
+    /**
+     * Pick the keys splitting the sample into equal parts
+     *
+     * @param parts
+     *            The number of parts
+     * @return The parts - 1 splitter keys in ascending order, positive
+     *         infinity when the sample is empty
+     */
+    public double[] splitters(int parts) {
+        double[] sorted = Arrays.copyOf(keys, count);
+        Arrays.sort(sorted);
+        double[] splitters = new double[parts - 1];
+        for (int j = 1; j < parts; j++) {
+            splitters[j - 1] = count == 0
+                ? Double.POSITIVE_INFINITY
+                : sorted[(int)((long)j * count / parts)];
+        }
+        return splitters;
+    }
+}
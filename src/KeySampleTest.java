@@ -0,0 +1,54 @@
+import student.TestCase;
+
+/**
+ * Test of the key sample
+ *
+ * @author Wenjun Han
+ * @version 5.14.22
+ */
+public class KeySampleTest extends TestCase {
+
+    /**
+     * test every interval-th key is kept up to the capacity
+     */
+    public void testAdd() {
+        KeySample sample = new KeySample(3, 2);
+        for (int i = 0; i < 10; i++) {
+            sample.add(9 - i);
+        }
+        assertEquals(3, sample.size());
+        // 9, 7 and 5 are kept, sorted before they are split
+        double[] splitters = sample.splitters(3);
+        assertEquals(2, splitters.length);
+        assertEquals(7.0, splitters[0], 0.0);
+        assertEquals(9.0, splitters[1], 0.0);
+        KeySample other = new KeySample(4, 1);
+        other.add(1);
+        other.add(3);
+        sample.addAll(other);
+        assertEquals(5, sample.size());
+        splitters = sample.splitters(2);
+        assertEquals(5.0, splitters[0], 0.0);
+        Exception thrown = null;
+        try {
+            new KeySample(3, 0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test an empty sample splits at infinity
+     */
+    public void testEmpty() {
+        KeySample sample = new KeySample(4, 1);
+        assertEquals(0, sample.size());
+        double[] splitters = sample.splitters(3);
+        assertEquals(Double.POSITIVE_INFINITY, splitters[0], 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, splitters[1], 0.0);
+        assertEquals(0, sample.splitters(1).length);
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * The types of the key fields of a record layout, each one ordered the way
+ * its values compare
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.19.22
+ *
+ */
+public enum KeyType {
+    /** 8 byte double ordered like Double.compare **/
+    DOUBLE,
+    /** 8 byte signed integer **/
+    LONG,
+    /** 4 byte signed integer **/
+    INT,
+    /** Bytes of any length ordered as unsigned bytes, as gensort keys **/
+    BYTES
+}
@@ -0,0 +1,197 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Record store of any record layout. The record bytes stay where they were
+ * read, every entry only holds the normalized key words of its record and
+ * the slot of its bytes, so the heap, the loser tree and the radix sort move
+ * a few primitives per record however wide the records are. There are two
+ * entries for every slot, the second half serving as the radix scratch.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.19.22
+ *
+ */
+public class LayoutRecordStore implements RecordOrder {
+    private RecordLayout layout;
+    private int width;
+    private int words;
+    private byte[] data;
+    private long[] keys;
+    private int[] slots;
+
+    /**
+     * Constructor of the layout record store
+     *
+     * @param layout
+     *            The layout of the records
+     * @param capacity
+     *            The number of records held, at most the max capacity of
+     *            the layout
+     */
+    public LayoutRecordStore(RecordLayout layout, int capacity) {
+        if (capacity < 0 || capacity > maxCapacity(layout)) {
+            throw new IllegalArgumentException("Cannot hold " + capacity
+                + " records of " + layout.getWidth() + " bytes");
+        }
+        this.layout = layout;
+        width = layout.getWidth();
+        words = layout.getKeyWords();
+        data = new byte[capacity * width];
+        keys = new long[2 * capacity * words];
+        slots = new int[2 * capacity];
+    }
+
+
+    /**
+     * Get the most records a store can hold, the record bytes and the two
+     * entries of every record each staying inside one array
+     *
+     * @param layout
+     *            The layout of the records
+     * @return The max capacity
+     */
+    public static int maxCapacity(RecordLayout layout) {
+        return Math.min(Integer.MAX_VALUE / layout.getWidth(),
+            Integer.MAX_VALUE / 2 / layout.getKeyWords());
+    }
+
+
+    /**
+     * Get the bytes of memory taken by one record
+     *
+     * @param layout
+     *            The layout of the records
+     * @return The record bytes and its two entries
+     */
+    public static int recordBytes(RecordLayout layout) {
+        return layout.getWidth() + 2 * (layout.getKeyWords() * Long.BYTES
+            + Integer.BYTES);
+    }
+
+
+    /**
+     * Get the number of records held
+     *
+     * @return The capacity of the store
+     */
+    public int capacity() {
+        return slots.length / 2;
+    }
+
+
+    /**
+     * Get the layout of the records
+     *
+     * @return The record layout
+     */
+    public RecordLayout getLayout() {
+        return layout;
+    }
+
+
+    /**
+     * Get one word of the normalized key of an entry
+     *
+     * @param index
+     *            The entry index
+     * @param word
+     *            The word, 0 is the most significant
+     * @return The unsigned key word
+     */
+    public long getKeyWord(int index, int word) {
+        return keys[index * words + word];
+    }
+
+
+    /**
+     * Copy an entry to another index
+     *
+     * @param from
+     *            The index of the source entry
+     * @param to
+     *            The index of the destination
+     */
+    public void copy(int from, int to) {
+        System.arraycopy(keys, from * words, keys, to * words, words);
+        slots[to] = slots[from];
+    }
+
+
+    /**
+     * Swap two entries
+     *
+     * @param first
+     *            The index of the first entry
+     * @param second
+     *            The index of the second entry
+     */
+    @Override
+    public void swap(int first, int second) {
+        int a = first * words;
+        int b = second * words;
+        for (int w = 0; w < words; w++) {
+            long temp = keys[a + w];
+            keys[a + w] = keys[b + w];
+            keys[b + w] = temp;
+        }
+        int tempSlot = slots[first];
+        slots[first] = slots[second];
+        slots[second] = tempSlot;
+    }
+
+
+    /**
+     * Compare two entries based on the normalized keys of their records
+     *
+     * @param first
+     *            The index of the first entry
+     * @param second
+     *            The index of the second entry
+     * @return A negative integer, zero, or a positive integer as the first
+     *         record is less than, equal to, or greater than the second
+     */
+    @Override
+    public int compare(int first, int second) {
+        if (words == 1) {
+            return Long.compareUnsigned(keys[first], keys[second]);
+        }
+        int a = first * words;
+        int b = second * words;
+        for (int w = 0; w < words; w++) {
+            int compare = Long.compareUnsigned(keys[a + w], keys[b + w]);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Read the next record of a buffer into the slot of an entry
+     *
+     * @param index
+     *            The entry index, below the capacity
+     * @param buffer
+     *            The buffer positioned at the record
+     */
+    public void read(int index, ByteBuffer buffer) {
+        int offset = index * width;
+        buffer.get(data, offset, width);
+        layout.normalize(data, offset, keys, index * words);
+        slots[index] = index;
+    }
+
+
+    /**
+     * Write the record of an entry into a buffer
+     *
+     * @param index
+     *            The entry index
+     * @param buffer
+     *            The buffer with room for the record
+     */
+    public void write(int index, ByteBuffer buffer) {
+        buffer.put(data, slots[index] * width, width);
+    }
+}
@@ -0,0 +1,101 @@
+import java.nio.ByteBuffer;
+import student.TestCase;
+
+/**
+ * Test of the layout record store
+ *
+ * @author Wenjun Han
+ * @version 5.19.22
+ */
+public class LayoutRecordStoreTest extends TestCase {
+
+    private LayoutRecordStore store;
+
+    /**
+     * set up a store of 4 gensort records
+     */
+    public void setUp() {
+        store = new LayoutRecordStore(RecordLayout.GENSORT, 4);
+        ByteBuffer buffer = ByteBuffer.allocate(400);
+        int[] keys = { 3, 1, 3, 2 };
+        for (int i = 0; i < keys.length; i++) {
+            // the keys differ in the second word only
+            buffer.position(i * 100 + 9);
+            buffer.put((byte)keys[i]);
+            buffer.position(i * 100 + 99);
+            buffer.put((byte)i);
+        }
+        buffer.flip();
+        for (int i = 0; i < keys.length; i++) {
+            store.read(i, buffer);
+        }
+    }
+
+
+    /**
+     * test comparing, swapping and copying entries
+     */
+    public void testCompare() {
+        assertEquals(4, store.capacity());
+        assertEquals(140, LayoutRecordStore.recordBytes(RecordLayout.GENSORT));
+        assertTrue(store.compare(1, 0) < 0);
+        assertEquals(0, store.compare(0, 2));
+        store.swap(0, 1);
+        assertTrue(store.compare(0, 1) < 0);
+        assertEquals(1L << 48, store.getKeyWord(0, 1));
+        store.copy(0, 6);
+        assertEquals(0, store.compare(0, 6));
+        assertEquals(1, payload(6));
+        // swapped entries keep the bytes of their records
+        assertEquals(0, payload(1));
+    }
+
+
+    /**
+     * test a capacity past one array of record bytes is refused before it
+     * allocates
+     */
+    public void testMaxCapacity() {
+        int max = LayoutRecordStore.maxCapacity(RecordLayout.GENSORT);
+        assertEquals(Integer.MAX_VALUE / 100, max);
+        assertEquals(Integer.MAX_VALUE / 16, LayoutRecordStore.maxCapacity(
+            RecordLayout.ID_DOUBLE));
+        Exception thrown = null;
+        try {
+            new LayoutRecordStore(RecordLayout.GENSORT, max + 1);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test the radix sort of the entries is stable
+     */
+    public void testRadixSort() {
+        int first = new RadixSorter().sort(store, 0, 4);
+        int[] expected = { 1, 3, 0, 2 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], payload(first + i));
+        }
+        RecordHeap heap = new RecordHeap(store, 4);
+        assertEquals(1, payload(heap.removemin()));
+        assertEquals(3, payload(heap.removemin()));
+    }
+
+
+    /**
+     * Get the last byte of the record of an entry
+     *
+     * @param index
+     *            The entry index
+     * @return The last byte
+     */
+    private int payload(int index) {
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        store.write(index, buffer);
+        return buffer.get(99);
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Sort of a file of fixed width records of any record layout, such as the
+ * 100 byte gensort records or records with a composite key. Every load of
+ * the memory budget is sorted on the normalized keys, radix sorted or
+ * drained from the heap as the sort engine says, and written as one run;
+ * the runs are merged by the loser tree in as few bytes as the merge
+ * planner finds, the last pass writing back over the file. The 16 byte
+ * records keep their own engine, with key ranges, shards and combiners.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.19.22
+ *
+ */
+public class LayoutSorter {
+    private SortConfig config;
+    private LayoutRecordStore records;
+    private SortMetrics metrics;
+    private int width;
+    private int blockRecordNum;
+    private int loadCapacity;
+    private int mergePass;
+
+    /**
+     * Constructor of the layout sorter
+     *
+     * @param config
+     *            The configuration of the sort, the block size is rounded
+     *            down to whole records
+     * @param layout
+     *            The layout of the records
+     */
+    public LayoutSorter(SortConfig config, RecordLayout layout) {
+        this.config = config;
+        metrics = config.getMetrics();
+        width = layout.getWidth();
+        blockRecordNum = Math.max(1, config.getBlockSize() / width);
+        loadCapacity = loadCapacity(config, layout);
+        // a merge needs two blocks at least
+        if (loadCapacity < 2 * blockRecordNum) {
+            throw new IllegalArgumentException("Memory budget of " + config
+                .getMemoryBudget() + " bytes cannot merge records of "
+                + width + " bytes");
+        }
+        records = new LayoutRecordStore(layout, loadCapacity);
+    }
+
+
+    /**
+     * Get the number of records loaded for one run, the records of the
+     * memory budget the store can hold, ending on a block
+     *
+     * @param config
+     *            The configuration of the sort
+     * @param layout
+     *            The layout of the records
+     * @return The load capacity
+     */
+    public static int loadCapacity(SortConfig config, RecordLayout layout) {
+        int recordNum = Math.max(1, config.getBlockSize() / layout
+            .getWidth());
+        long capacity = Math.min(LayoutRecordStore.maxCapacity(layout), config
+            .getMemoryBudget() / LayoutRecordStore.recordBytes(layout));
+        return (int)(capacity / recordNum * recordNum);
+    }
+
+
+    /**
+     * Sort a file in place
+     *
+     * @param fileName
+     *            Name of the file
+     * @throws IOException
+     *             Throws when anything wrong with I/O or the file does not
+     *             hold whole records
+     */
+    public void sort(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            long fileLength = file.length();
+            if (fileLength % width != 0) {
+                throw new IOException(fileName + " of " + fileLength
+                    + " bytes does not hold records of " + width + " bytes");
+            }
+            BlockReader reader = new BlockReader(config.open(file), 0,
+                fileLength, blockRecordNum * width, config.isAsyncIo());
+            reader.setMetrics(metrics);
+            metrics.startPhase(SortPhase.RUNS);
+            try {
+                int loaded = load(reader);
+                if (!reader.hasNext()) {
+                    // everything fits in memory, nothing is spilled
+                    BlockWriter writer = new BlockWriter(config.open(file),
+                        0, blockRecordNum * width, false);
+                    writer.setMetrics(metrics);
+                    writeSorted(loaded, writer);
+                    writer.flush();
+                    return;
+                }
+                spill(file, reader, loaded);
+            }
+            finally {
+                reader.close();
+                metrics.endPhase();
+            }
+        }
+    }
+
+
+    /**
+     * Load the records of the next blocks until the store is full
+     *
+     * @param reader
+     *            The reader of the file
+     * @return The number of records loaded
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private int load(BlockReader reader) throws IOException {
+        int loaded = 0;
+        while (loaded < loadCapacity && reader.hasNext()) {
+            ByteBuffer block = reader.next();
+            while (block.hasRemaining()) {
+                records.read(loaded++, block);
+            }
+        }
+        return loaded;
+    }
+
+
+    /**
+     * Sort the loaded records and write them out
+     *
+     * @param loaded
+     *            The number of loaded records
+     * @param writer
+     *            The writer of the sorted records
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private void writeSorted(int loaded, BlockWriter writer)
+        throws IOException {
+        boolean radix = config.getSortEngine() == SortEngine.RADIX;
+        int first = radix ? new RadixSorter().sort(records, 0, loaded) : 0;
+        RecordHeap minHeap = radix ? null : new RecordHeap(records, loaded);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[blockRecordNum
+            * width]);
+        for (int i = 0; i < loaded; i++) {
+            records.write(radix ? first + i : minHeap.removemin(), buffer);
+            if (!buffer.hasRemaining()) {
+                buffer = writer.write(buffer);
+            }
+        }
+        // write the last partial block
+        writer.write(buffer);
+        if (minHeap != null) {
+            metrics.addComparisons(minHeap.getComparisons());
+        }
+    }
+
+
+    /**
+     * Write every load as a run into a temp file, then merge the runs back
+     * into the file
+     *
+     * @param file
+     *            The file to sort
+     * @param reader
+     *            The reader of the rest of the file
+     * @param loaded
+     *            The number of records of the first load
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private void spill(RandomAccessFile file, BlockReader reader, int loaded)
+        throws IOException {
+        Path runPath = Files.createTempFile("layoutRun", ".bin");
+        try (RandomAccessFile runFile = new RandomAccessFile(runPath
+            .toFile(), "rw")) {
+            RunIndex runs = new RunIndex();
+            BlockWriter writer = new BlockWriter(config.open(runFile), 0,
+                blockRecordNum * width, config.isAsyncIo());
+            writer.setMetrics(metrics);
+            try {
+                while (loaded > 0) {
+                    SortRunEvent event = new SortRunEvent();
+                    event.begin();
+                    long start = writer.getPosition();
+                    writeSorted(loaded, writer);
+                    runs.add(start, writer.getPosition() - start);
+                    event.record(runs, loaded);
+                    loaded = load(reader);
+                }
+                writer.flush();
+            }
+            finally {
+                writer.close();
+            }
+            metrics.addRuns(runs);
+            metrics.endPhase();
+            metrics.startPhase(SortPhase.MERGE);
+            RunIndex left = mergeSteps(runFile, runs);
+            BlockWriter output = new BlockWriter(config.open(file), 0,
+                blockRecordNum * width, config.isAsyncIo());
+            output.setMetrics(metrics);
+            try {
+                merge(config.open(runFile), left, output);
+                output.flush();
+            }
+            finally {
+                output.close();
+            }
+        }
+        finally {
+            Files.deleteIfExists(runPath);
+        }
+    }
+
+
+    /**
+     * Run the merge steps planned to leave at most fan-in runs, every step
+     * appending its merged run to the run file
+     *
+     * @param runFile
+     *            The run file
+     * @param runs
+     *            The generated runs
+     * @return The runs left for the last pass
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private RunIndex mergeSteps(RandomAccessFile runFile, RunIndex runs)
+        throws IOException {
+        int fanIn = Math.min(config.getMaxFanIn(), loadCapacity
+            / blockRecordNum);
+        long[] runLengths = new long[runs.size()];
+        for (int i = 0; i < runs.size(); i++) {
+            runLengths[i] = runs.getLength(i);
+        }
+        int[][] steps = new MergePlanner(runLengths, fanIn).getSteps();
+        // the merged run of step s gets the id runs.size() + s
+        RunIndex allRuns = new RunIndex(runs.size() + steps.length);
+        allRuns.addAll(runs);
+        boolean[] merged = new boolean[runs.size() + steps.length];
+        for (int[] step : steps) {
+            RunIndex group = new RunIndex(step.length);
+            for (int id : step) {
+                group.add(allRuns, id);
+                merged[id] = true;
+            }
+            MergePassEvent event = new MergePassEvent();
+            event.begin();
+            long start = runFile.length();
+            long groupLength = group.totalLength();
+            BlockWriter writer = new BlockWriter(config.open(runFile), start,
+                blockRecordNum * width, config.isAsyncIo());
+            writer.setMetrics(metrics);
+            try {
+                merge(config.open(runFile), group, writer);
+                writer.flush();
+            }
+            finally {
+                writer.close();
+            }
+            allRuns.add(start, writer.getPosition() - start);
+            event.record(mergePass++, group, start, groupLength, writer
+                .getPosition() - start);
+        }
+        RunIndex left = new RunIndex(fanIn);
+        for (int i = 0; i < allRuns.size(); i++) {
+            if (!merged[i]) {
+                left.add(allRuns, i);
+            }
+        }
+        return left;
+    }
+
+
+    /**
+     * Merge runs into one with the loser tree, every run reading its blocks
+     * into its own slice of the store
+     *
+     * @param runFile
+     *            The run file to read
+     * @param runs
+     *            The runs to merge, consumed by the merge
+     * @param writer
+     *            The writer of the merged run
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private void merge(BlockFile runFile, RunIndex runs, BlockWriter writer)
+        throws IOException {
+        int runNum = runs.size();
+        int[] runRecord = new int[runNum];
+        int[] recordEndIndex = new int[runNum];
+        boolean[] runFinish = new boolean[runNum];
+        ByteBuffer readBuffer = ByteBuffer.wrap(new byte[blockRecordNum
+            * width]);
+        for (int i = 0; i < runNum; i++) {
+            runRecord[i] = i * blockRecordNum;
+            runFinish[i] = !readBlock(runFile, runs, i, recordEndIndex,
+                readBuffer);
+        }
+        LoserTree loserTree = new LoserTree(records, runRecord, runFinish,
+            runNum);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[blockRecordNum
+            * width]);
+        while (!loserTree.isEmpty()) {
+            int run = loserTree.winner();
+            records.write(runRecord[run], buffer);
+            if (!buffer.hasRemaining()) {
+                buffer = writer.write(buffer);
+            }
+            if (runRecord[run] < recordEndIndex[run]) {
+                runRecord[run]++;
+            }
+            else if (readBlock(runFile, runs, run, recordEndIndex,
+                readBuffer)) {
+                runRecord[run] = run * blockRecordNum;
+            }
+            else {
+                runFinish[run] = true;
+            }
+            loserTree.replay(run);
+        }
+        writer.write(buffer);
+        metrics.addComparisons(loserTree.getComparisons());
+        metrics.addMergePass();
+    }
+
+
+    /**
+     * Read the next block of a run into its slice of the store
+     *
+     * @param runFile
+     *            The run file to read
+     * @param runs
+     *            The runs being merged
+     * @param run
+     *            The run index
+     * @param recordEndIndex
+     *            The index of the last record of the slice of every run
+     * @param readBuffer
+     *            The buffer to read into
+     * @return True if a block was read, false if the run is finished
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private boolean readBlock(
+        BlockFile runFile,
+        RunIndex runs,
+        int run,
+        int[] recordEndIndex,
+        ByteBuffer readBuffer)
+        throws IOException {
+        int blockLength = (int)Math.min(readBuffer.capacity(), runs.getLength(
+            run));
+        if (blockLength == 0) {
+            return false;
+        }
+        BlockReadEvent event = new BlockReadEvent();
+        event.begin();
+        ByteBuffer block = runFile.read(runs.getStart(run), blockLength,
+            readBuffer);
+        int first = run * blockRecordNum;
+        int last = first + blockLength / width;
+        for (int j = first; j < last; j++) {
+            records.read(j, block);
+        }
+        recordEndIndex[run] = last - 1;
+        metrics.addRead(blockLength);
+        event.record(run, runs.getStart(run), blockLength);
+        runs.consume(run, blockLength);
+        return true;
+    }
+}
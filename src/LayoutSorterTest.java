@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Test of the layout sorter
+ *
+ * @author Wenjun Han
+ * @version 5.19.22
+ */
+public class LayoutSorterTest extends TestCase {
+
+    /**
+     * Delete the test file
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get("layoutTest.bin"));
+    }
+
+
+    /**
+     * test gensort records merged in several passes by both engines
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testGensort() throws IOException {
+        Random random = new Random(5);
+        byte[][] records = new byte[95][100];
+        for (byte[] record : records) {
+            random.nextBytes(record);
+            // a few equal prefixes make the second key word count
+            record[0] = (byte)random.nextInt(2);
+        }
+        Comparator<byte[]> order = (a, b) -> Arrays.compareUnsigned(a, 0, 10,
+            b, 0, 10);
+        // 10 records a load, 10 runs merged 3 at a time
+        SortConfig config = new SortConfig(1408, 64, 3);
+        assertSorted(records, RecordLayout.GENSORT, config, order);
+        config.setSortEngine(SortEngine.RADIX);
+        config.setAsyncIo(false);
+        assertSorted(records, RecordLayout.GENSORT, config, order);
+        assertTrue(config.getMetrics().getMergePasses() >= 10);
+    }
+
+
+    /**
+     * test a budget of 16 GB loads no more gensort records than one array
+     * of record bytes holds
+     */
+    public void testLargeBudget() {
+        SortConfig config = new SortConfig(16L << 30, 8000, 8);
+        int capacity = LayoutSorter.loadCapacity(config, RecordLayout.GENSORT);
+        assertTrue(capacity > 0);
+        assertEquals(0, capacity % 80);
+        assertTrue((long)capacity * 100 <= Integer.MAX_VALUE);
+        assertEquals(LayoutRecordStore.maxCapacity(RecordLayout.GENSORT)
+            / 80 * 80, capacity);
+        // the 16 byte layout is still bounded by the budget
+        assertEquals(1500, LayoutSorter.loadCapacity(new SortConfig(
+            64 * 1024, 8000, 8), RecordLayout.ID_DOUBLE));
+    }
+
+
+    /**
+     * test a composite key of an int and a descending long in memory
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testComposite() throws IOException {
+        Random random = new Random(8);
+        byte[][] records = new byte[40][20];
+        for (byte[] record : records) {
+            ByteBuffer.wrap(record).putInt(random.nextInt(4) - 2).putLong(
+                random.nextLong()).putLong(random.nextLong());
+        }
+        RecordLayout layout = new RecordLayout(20, new KeyField(0, 4,
+            KeyType.INT), new KeyField(4, 8, KeyType.LONG));
+        Comparator<byte[]> order = Comparator.comparingInt(
+            (byte[] r) -> ByteBuffer.wrap(r).getInt(0)).thenComparingLong(
+                r -> ByteBuffer.wrap(r).getLong(4));
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        config.setSortEngine(SortEngine.RADIX);
+        assertSorted(records, layout, config, order);
+        config = new SortConfig(256, 32, 2);
+        assertSorted(records, layout, config, order);
+    }
+
+
+    /**
+     * test the 16 byte layout sorts like the record engine, and files or
+     * budgets that do not fit the layout
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testIdDouble() throws IOException {
+        Random random = new Random(3);
+        byte[][] records = new byte[50][16];
+        for (int i = 0; i < records.length; i++) {
+            ByteBuffer.wrap(records[i]).putLong(i).putDouble(random.nextInt(
+                20) - 10.5);
+        }
+        Comparator<byte[]> order = (a, b) -> Double.compare(ByteBuffer.wrap(
+            a).getDouble(8), ByteBuffer.wrap(b).getDouble(8));
+        assertSorted(records, RecordLayout.ID_DOUBLE, new SortConfig(128, 16,
+            4), order);
+        Files.write(Paths.get("layoutTest.bin"), new byte[150]);
+        Exception thrown = null;
+        try {
+            new LayoutSorter(new SortConfig(128, 16, 4), RecordLayout.GENSORT)
+                .sort("layoutTest.bin");
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            new LayoutSorter(new SortConfig(1408, 64, 3), RecordLayout.GENSORT)
+                .sort("layoutTest.bin");
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * Write the records to the test file, sort it and check it holds them
+     * in order
+     *
+     * @param records
+     *            The records to sort
+     * @param layout
+     *            The layout of the records
+     * @param config
+     *            The configuration of the sort
+     * @param order
+     *            The expected order of the keys
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private void assertSorted(
+        byte[][] records,
+        RecordLayout layout,
+        SortConfig config,
+        Comparator<byte[]> order)
+        throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile("layoutTest.bin",
+            "rw")) {
+            file.setLength(0);
+            for (byte[] record : records) {
+                file.write(record);
+            }
+        }
+        new LayoutSorter(config, layout).sort("layoutTest.bin");
+        byte[] bytes = Files.readAllBytes(Paths.get("layoutTest.bin"));
+        assertEquals(records.length * layout.getWidth(), bytes.length);
+        byte[][] sorted = new byte[records.length][];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = Arrays.copyOfRange(bytes, i * layout.getWidth(), (i
+                + 1) * layout.getWidth());
+            if (i > 0) {
+                assertTrue(order.compare(sorted[i - 1], sorted[i]) <= 0);
+            }
+        }
+        // the same records come out, whatever the order of equal keys
+        Comparator<byte[]> whole = order.thenComparing(Arrays::compare);
+        byte[][] expected = records.clone();
+        Arrays.sort(expected, whole);
+        Arrays.sort(sorted, whole);
+        for (int i = 0; i < sorted.length; i++) {
+            assertTrue(Arrays.equals(expected[i], sorted[i]));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Tournament (loser) tree used by the multi-way merge. Every leaf is the head
+ * record of one run, every internal node keeps the run that lost the match
+ * played there, and the overall winner is kept at position 0. Replacing the
+ * head of the winning run only replays the matches on its path to the root,
+ * so picking the next record costs about log2(k) comparisons and does not
+ * allocate anything.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.20.22
+ *
+ */
+public class LoserTree {
+    private RecordOrder records;
+    private int[] runRecord;
+    private boolean[] runFinish;
+    private int[] tree;
+    private int[] winner;
+    private int runNum;
+    private long comparisons;
+
+    /**
+     * Constructor of the loser tree
+     *
+     * @param records
+     *            The record blocks of all the runs
+     * @param runRecord
+     *            The index of the head record of each run inside records
+     * @param runFinish
+     *            Whether each run has been completely merged
+     * @param runNum
+     *            The number of runs to merge
+     */
+    public LoserTree(
+        RecordOrder records,
+        int[] runRecord,
+        boolean[] runFinish,
+        int runNum) {
+        this.records = records;
+        this.runRecord = runRecord;
+        this.runFinish = runFinish;
+        this.runNum = runNum;
+        tree = new int[Math.max(runNum, 1)];
+        winner = new int[Math.max(runNum, 1)];
+        build();
+    }
+
+
+    /**
+     * Play all the matches from the leaves up to the root
+     */
+    public void build() {
+        for (int node = runNum - 1; node > 0; node--) {
+            int left = winnerOf(2 * node);
+            int right = winnerOf(2 * node + 1);
+            if (beats(left, right)) {
+                winner[node] = left;
+                tree[node] = right;
+            }
+            else {
+                winner[node] = right;
+                tree[node] = left;
+            }
+        }
+        tree[0] = runNum > 1 ? winner[1] : 0;
+    }
+
+
+    /**
+     * Get the run holding the smallest head record
+     *
+     * @return The index of the winning run
+     */
+    public int winner() {
+        return tree[0];
+    }
+
+
+    /**
+     * Check if every run has been completely merged
+     *
+     * @return True if the winner is a finished run
+     */
+    public boolean isEmpty() {
+        return runNum == 0 || runFinish[tree[0]];
+    }
+
+
+    /**
+     * Get the key comparisons of the matches played so far
+     *
+     * @return The number of comparisons
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+
+    /**
+     * Replay the matches of a run after its head record changed
+     *
+     * @param run
+     *            The run whose head record has been replaced or finished
+     */
+    public void replay(int run) {
+        int current = run;
+        for (int node = (run + runNum) >> 1; node > 0; node >>= 1) {
+            if (beats(tree[node], current)) {
+                int loser = current;
+                current = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = current;
+    }
+
+
+    /**
+     * Get the winner of the subtree rooted at a node
+     *
+     * @param node
+     *            The node position, leaves start at runNum
+     * @return The run winning the subtree
+     */
+    private int winnerOf(int node) {
+        if (node >= runNum) {
+            return node - runNum;
+        }
+        return winner[node];
+    }
+
+
+    /**
+     * Check if a run wins the match against another run, a finished run
+     * always loses and ties are broken by the run index
+     *
+     * @param first
+     *            The first run
+     * @param second
+     *            The second run
+     * @return True if the first run wins
+     */
+    private boolean beats(int first, int second) {
+        if (runFinish[first]) {
+            return false;
+        }
+        if (runFinish[second]) {
+            return true;
+        }
+        comparisons++;
+        int compare = records.compare(runRecord[first], runRecord[second]);
+        return compare < 0 || (compare == 0 && first < second);
+    }
+}
@@ -0,0 +1,75 @@
+import student.TestCase;
+
+/**
+ * Test of the loser tree
+ *
+ * @author Wenjun Han
+ * @version 4.20.22
+ */
+public class LoserTreeTest extends TestCase {
+
+    private RecordStore records;
+    private int[] runRecord;
+    private boolean[] runFinish;
+
+    /**
+     * set up three runs of two records each
+     */
+    public void setUp() {
+        double[] keys = { 1.0, 4.0, 2.0, 5.0, 0.5, 6.0 };
+        records = new RecordStore(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            records.set(i, i, keys[i]);
+        }
+        runRecord = new int[] { 0, 2, 4 };
+        runFinish = new boolean[3];
+    }
+
+
+    /**
+     * test the merge order of the winners
+     */
+    public void testMergeOrder() {
+        LoserTree tree = new LoserTree(records, runRecord, runFinish, 3);
+        double[] expected = { 0.5, 1.0, 2.0, 4.0, 5.0, 6.0 };
+        int count = 0;
+        while (!tree.isEmpty()) {
+            int run = tree.winner();
+            assertEquals(expected[count++], records.getKey(runRecord[run]),
+                0.0);
+            if (runRecord[run] % 2 == 1) {
+                runFinish[run] = true;
+            }
+            else {
+                runRecord[run]++;
+            }
+            tree.replay(run);
+        }
+        assertEquals(6, count);
+        assertTrue(tree.getComparisons() > 0);
+    }
+
+
+    /**
+     * test a single run and an empty tree
+     */
+    public void testSingleRun() {
+        LoserTree tree = new LoserTree(records, runRecord, runFinish, 1);
+        assertEquals(0, tree.winner());
+        assertFalse(tree.isEmpty());
+        runFinish[0] = true;
+        tree.replay(0);
+        assertTrue(tree.isEmpty());
+        assertTrue(new LoserTree(records, runRecord, runFinish, 0).isEmpty());
+    }
+
+
+    /**
+     * test equal keys are won by the lower run
+     */
+    public void testTieBreak() {
+        runRecord = new int[] { 1, 1 };
+        LoserTree tree = new LoserTree(records, runRecord, runFinish, 2);
+        assertEquals(0, tree.winner());
+    }
+}
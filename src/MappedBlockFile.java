@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Block file reading and writing through a memory mapped window of the file.
+ * Reads return slices of the mapped window, so the records are decoded
+ * straight from the page cache, and writes copy the block into the window.
+ * Only one window of the file is mapped at a time, so files larger than the
+ * address space can still be sorted.
+ *
+ * A window written past the end grows the file. The block files over the
+ * same random access file share one length of the written data, and the
+ * file is only trimmed back to it once none of them has a window to write,
+ * so no block file cuts off the data or the window of another one.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.23.22
+ *
+ */
+public class MappedBlockFile implements BlockFile {
+    /** The shared length of every file with a window being written **/
+    private static final Map<RandomAccessFile, Extent> EXTENTS =
+        new IdentityHashMap<>();
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private Extent extent;
+
+    /**
+     * Constructor of the mapped block file
+     *
+     * @param file
+     *            The random access file opened for read and write
+     * @param windowSize
+     *            The bytes of the file mapped at a time
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public MappedBlockFile(RandomAccessFile file, long windowSize)
+        throws IOException {
+        this.file = file;
+        this.windowSize = windowSize;
+        channel = file.getChannel();
+    }
+
+
+    /**
+     * Get the length of the data inside the file, including the data written
+     * to the window but not yet flushed
+     *
+     * @return The length in bytes
+     */
+    @Override
+    public long length() throws IOException {
+        synchronized (EXTENTS) {
+            Extent shared = EXTENTS.get(file);
+            return shared == null ? file.length() : shared.length;
+        }
+    }
+
+
+    /**
+     * Read a block of the file as a slice of the mapped window
+     *
+     * @param position
+     *            The position of the block inside the file
+     * @param blockLength
+     *            The number of bytes to read, inside the file length
+     * @param buffer
+     *            Not used, the data stays in the window
+     * @return A slice of the window holding the block
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public ByteBuffer read(long position, int blockLength, ByteBuffer buffer)
+        throws IOException {
+        if (!covers(position, blockLength)) {
+            // never map beyond the data when only reading
+            map(position, Math.max(blockLength, Math.min(windowSize, length()
+                - position)));
+        }
+        ByteBuffer slice = window.duplicate();
+        int offset = (int)(position - windowStart);
+        slice.limit(offset + blockLength);
+        slice.position(offset);
+        return slice;
+    }
+
+
+    /**
+     * Copy the remaining bytes of a buffer into the mapped window
+     *
+     * @param position
+     *            The position of the block inside the file
+     * @param buffer
+     *            The buffer to write from its position to its limit
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public void write(long position, ByteBuffer buffer) throws IOException {
+        int blockLength = buffer.remaining();
+        if (extent == null) {
+            synchronized (EXTENTS) {
+                extent = EXTENTS.get(file);
+                if (extent == null) {
+                    extent = new Extent(file.length());
+                    EXTENTS.put(file, extent);
+                }
+                extent.writers++;
+            }
+        }
+        if (!covers(position, blockLength)) {
+            // mapping beyond the end grows the file, flush trims it again
+            map(position, Math.max(blockLength, windowSize));
+        }
+        window.position((int)(position - windowStart));
+        window.put(buffer);
+        synchronized (EXTENTS) {
+            extent.length = Math.max(extent.length, position + blockLength);
+        }
+    }
+
+
+    /**
+     * Force the written window to the disk and drop it, the last block file
+     * writing the file trims it back to the written data
+     *
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public void flush() throws IOException {
+        if (extent != null && window != null) {
+            window.force();
+        }
+        window = null;
+        if (extent == null) {
+            return;
+        }
+        synchronized (EXTENTS) {
+            if (--extent.writers == 0) {
+                EXTENTS.remove(file);
+                if (file.length() != extent.length) {
+                    file.setLength(extent.length);
+                }
+            }
+        }
+        extent = null;
+    }
+
+
+    /**
+     * Get the underlying random access file
+     *
+     * @return The random access file
+     */
+    @Override
+    public RandomAccessFile getFile() {
+        return file;
+    }
+
+
+    /**
+     * Check if the mapped window holds a block
+     *
+     * @param position
+     *            The position of the block inside the file
+     * @param blockLength
+     *            The length of the block
+     * @return True if the whole block is inside the window
+     */
+    private boolean covers(long position, int blockLength) {
+        return window != null && position >= windowStart && position
+            + blockLength <= windowStart + window.capacity();
+    }
+
+
+    /**
+     * Map a new window of the file
+     *
+     * @param position
+     *            The start of the window
+     * @param size
+     *            The size of the window
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private void map(long position, long size) throws IOException {
+        if (extent != null && window != null) {
+            // the pages of a window only reach the disk when forced
+            window.force();
+        }
+        window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math
+            .min(size, Integer.MAX_VALUE));
+        windowStart = position;
+    }
+
+
+    /**
+     * The length of the data written to a file through its block files
+     */
+    private static class Extent {
+        private long length;
+        private int writers;
+
+        /**
+         * Constructor of the extent
+         *
+         * @param length
+         *            The length of the file before the first write
+         */
+        public Extent(long length) {
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the mapped block file
+ *
+ * @author Wenjun Han
+ * @version 4.23.22
+ */
+public class MappedBlockFileTest extends TestCase {
+
+    private RandomAccessFile file;
+    private MappedBlockFile blockFile;
+
+    /**
+     * set up an empty file mapped 64 bytes at a time
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("mappedTest.bin"));
+        file = new RandomAccessFile("mappedTest.bin", "rw");
+        blockFile = new MappedBlockFile(file, 64);
+    }
+
+
+    /**
+     * test writes across several windows and the trimmed length
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testWriteRead() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FileReader.RECORD_SIZE);
+        for (int i = 0; i < 10; i++) {
+            buffer.clear();
+            buffer.putLong(i).putDouble(i / 2.0);
+            buffer.flip();
+            blockFile.write(i * FileReader.RECORD_SIZE, buffer);
+        }
+        assertEquals(160, blockFile.length());
+        blockFile.flush();
+        assertEquals(160, file.length());
+        // a block crossing the window end maps a new window
+        ByteBuffer block = blockFile.read(48, 32, null);
+        assertEquals(32, block.remaining());
+        assertEquals(3, block.getLong());
+        assertEquals(1.5, block.getDouble(), 0.0);
+        assertEquals(4, block.getLong());
+        block = blockFile.read(144, 16, null);
+        assertEquals(9, block.getLong());
+        assertSame(file, blockFile.getFile());
+        file.close();
+        Files.deleteIfExists(Paths.get("mappedTest.bin"));
+    }
+
+
+    /**
+     * test block files over one file keep the data of each other until the
+     * last one is flushed
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSharedFile() throws IOException {
+        MappedBlockFile other = new MappedBlockFile(file, 64);
+        ByteBuffer buffer = ByteBuffer.allocate(FileReader.RECORD_SIZE);
+        buffer.putLong(1).putDouble(0.5).flip();
+        blockFile.write(0, buffer);
+        buffer.clear();
+        buffer.putLong(2).putDouble(1.5).flip();
+        other.write(96, buffer);
+        assertEquals(112, blockFile.length());
+        blockFile.flush();
+        // the other window is still written, the file is not trimmed
+        assertTrue(file.length() >= 112);
+        buffer.clear();
+        buffer.putLong(3).putDouble(2.5).flip();
+        other.write(112, buffer);
+        other.flush();
+        assertEquals(128, file.length());
+        assertEquals(128, blockFile.length());
+        ByteBuffer block = blockFile.read(96, 32, null);
+        assertEquals(2, block.getLong());
+        assertEquals(1.5, block.getDouble(), 0.0);
+        assertEquals(3, block.getLong());
+        assertEquals(1, blockFile.read(0, 16, null).getLong());
+        file.close();
+        Files.deleteIfExists(Paths.get("mappedTest.bin"));
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Splits the key space of a group of sorted runs into disjoint ranges so the
+ * ranges can be merged independently. The splitter keys are sampled from the
+ * runs in proportion to their length, and the range bounds of every run are
+ * found by binary search on the run file, skipped when the key bounds of a
+ * run already place it on one side of a splitter.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.29.22
+ *
+ */
+public class MergePartitioner {
+
+    /** Number of keys sampled for every partition **/
+    public static final int SAMPLES_PER_PART = 64;
+
+    private BlockFile runFile;
+    private RunIndex runs;
+    private ByteBuffer recordBuffer;
+
+    /**
+     * Constructor of the merge partitioner
+     *
+     * @param runFile
+     *            The file holding the runs
+     * @param runs
+     *            The sorted runs to split
+     */
+    public MergePartitioner(BlockFile runFile, RunIndex runs) {
+        this.runFile = runFile;
+        this.runs = runs;
+        recordBuffer = ByteBuffer.allocate(FileReader.RECORD_SIZE);
+    }
+
+
+    /**
+     * Sample the runs and pick the keys splitting them into equal parts
+     *
+     * @param parts
+     *            The number of parts
+     * @return The parts - 1 splitter keys in ascending order
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public double[] splitters(int parts) throws IOException {
+        long total = runs.totalLength();
+        int sampleNum = parts * SAMPLES_PER_PART;
+        KeySample sample = new KeySample(sampleNum + runs.size(), 1);
+        for (int r = 0; r < runs.size(); r++) {
+            long recordNum = runs.getLength(r) / FileReader.RECORD_SIZE;
+            if (recordNum == 0) {
+                continue;
+            }
+            // longer runs get more of the samples
+            long runSamples = Math.max(1, Math.min(recordNum, sampleNum
+                * runs.getLength(r) / Math.max(1, total)));
+            for (long i = 0; i < runSamples; i++) {
+                long index = (2 * i + 1) * recordNum / (2 * runSamples);
+                sample.add(keyAt(runs.getStart(r) + index
+                    * FileReader.RECORD_SIZE));
+            }
+        }
+        return sample.splitters(parts);
+    }
+
+
+    /**
+     * Find the bounds of every part inside every run, a record belongs to
+     * the first part whose splitter is not smaller than its key
+     *
+     * @param splitters
+     *            The splitter keys in ascending order
+     * @return The file position where each part starts inside each run,
+     *         indexed by part then run, with the run ends as the last row
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public long[][] bounds(double[] splitters) throws IOException {
+        long[][] bounds = new long[splitters.length + 2][runs.size()];
+        for (int r = 0; r < runs.size(); r++) {
+            bounds[0][r] = runs.getStart(r);
+            bounds[splitters.length + 1][r] = runs.getEnd(r);
+            for (int j = 0; j < splitters.length; j++) {
+                if (Double.compare(runs.getMaxKey(r), splitters[j]) <= 0) {
+                    // the whole run is not larger than the splitter
+                    bounds[j + 1][r] = runs.getEnd(r);
+                }
+                else if (Double.compare(runs.getMinKey(r),
+                    splitters[j]) > 0) {
+                    bounds[j + 1][r] = runs.getStart(r);
+                }
+                else {
+                    bounds[j + 1][r] = upperBound(r, bounds[j][r],
+                        splitters[j]);
+                }
+            }
+        }
+        return bounds;
+    }
+
+
+    /**
+     * Binary search a run for the first record with a larger key
+     *
+     * @param run
+     *            The run to search
+     * @param from
+     *            The position to start the search at
+     * @param key
+     *            The splitter key
+     * @return The position of the first record with a larger key, the run
+     *         end if there is none
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private long upperBound(int run, long from, double key)
+        throws IOException {
+        long start = runs.getStart(run);
+        long low = (from - start) / FileReader.RECORD_SIZE;
+        long high = runs.getLength(run) / FileReader.RECORD_SIZE;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Double.compare(keyAt(start + mid * FileReader.RECORD_SIZE),
+                key) <= 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return start + low * FileReader.RECORD_SIZE;
+    }
+
+
+    /**
+     * Read the key of the record at a position of the run file
+     *
+     * @param position
+     *            The position of the record
+     * @return The key of the record
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private double keyAt(long position) throws IOException {
+        ByteBuffer record = runFile.read(position, FileReader.RECORD_SIZE,
+            recordBuffer);
+        return record.getDouble(record.position() + Long.BYTES);
+    }
+}
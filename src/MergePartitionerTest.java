@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the merge partitioner
+ *
+ * @author Wenjun Han
+ * @version 4.29.22
+ */
+public class MergePartitionerTest extends TestCase {
+
+    private RandomAccessFile runFile;
+    private MergePartitioner partitioner;
+
+    /**
+     * set up two sorted runs of 100 records
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("partitionRun.bin"));
+        runFile = new RandomAccessFile("partitionRun.bin", "rw");
+        for (int run = 0; run < 2; run++) {
+            for (int i = 0; i < 100; i++) {
+                runFile.writeLong(i);
+                runFile.writeDouble(2 * i + run);
+            }
+        }
+        RunIndex runs = new RunIndex();
+        runs.add(0, 1600, 0, 198);
+        runs.add(1600, 1600, 1, 199);
+        partitioner = new MergePartitioner(new StreamBlockFile(runFile),
+            runs);
+    }
+
+
+    /**
+     * test the splitters cut the keys into equal parts
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSplitters() throws IOException {
+        double[] splitters = partitioner.splitters(4);
+        assertEquals(3, splitters.length);
+        assertTrue(splitters[0] < splitters[1]);
+        assertTrue(splitters[1] < splitters[2]);
+        assertEquals(100, splitters[1], 4);
+        assertEquals(0, partitioner.splitters(1).length);
+    }
+
+
+    /**
+     * test the bounds of the parts inside the runs
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testBounds() throws IOException {
+        long[][] bounds = partitioner.bounds(new double[] { 9, 9, 500 });
+        assertEquals(5, bounds.length);
+        assertEquals(0, bounds[0][0]);
+        assertEquals(1600, bounds[0][1]);
+        // keys 0 2 4 6 8 and 1 3 5 7 9 are not larger than 9
+        assertEquals(80, bounds[1][0]);
+        assertEquals(1680, bounds[1][1]);
+        assertEquals(80, bounds[2][0]);
+        assertEquals(1600, bounds[3][0]);
+        assertEquals(3200, bounds[4][1]);
+        runFile.close();
+        Files.deleteIfExists(Paths.get("partitionRun.bin"));
+    }
+
+
+    /**
+     * test splitters outside the key range of a run take its ends
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testKeyRange() throws IOException {
+        long[][] bounds = partitioner.bounds(new double[] { -1, 0.5 });
+        assertEquals(0, bounds[1][0]);
+        assertEquals(1600, bounds[1][1]);
+        // only key 0 of the first run is not larger than 0.5
+        assertEquals(16, bounds[2][0]);
+        assertEquals(1600, bounds[2][1]);
+        runFile.close();
+        Files.deleteIfExists(Paths.get("partitionRun.bin"));
+    }
+}
@@ -0,0 +1,74 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one merge of a group of runs, a planned step or
+ * the last pass
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.18.22
+ *
+ */
+@Name("externalsort.MergePass")
+@Label("Merge Pass")
+@Category({ "External Sort", "Merge" })
+@Description("A group of runs merged into one run or the output")
+@StackTrace(false)
+public class MergePassEvent extends Event {
+
+    @Label("Pass")
+    @Description("Index of the merge among the merges of the sort")
+    private int pass;
+
+    @Label("Runs")
+    @Description("Number of runs merged")
+    private int runs;
+
+    @Label("Position")
+    @Description("Position of the merged run inside its file")
+    private long position;
+
+    @Label("Bytes Read")
+    @DataAmount(DataAmount.BYTES)
+    private long bytesRead;
+
+    @Label("Bytes Written")
+    @DataAmount(DataAmount.BYTES)
+    private long bytesWritten;
+
+    /**
+     * Commit the event of a merge, if it is recorded
+     *
+     * @param passIndex
+     *            The index of the merge
+     * @param group
+     *            The runs merged
+     * @param mergedStart
+     *            The position of the merged run
+     * @param readLength
+     *            The bytes of the runs merged
+     * @param writtenLength
+     *            The bytes of the merged run
+     */
+    public void record(
+        int passIndex,
+        RunIndex group,
+        long mergedStart,
+        long readLength,
+        long writtenLength) {
+        end();
+        if (shouldCommit()) {
+            pass = passIndex;
+            runs = group.size();
+            position = mergedStart;
+            bytesRead = readLength;
+            bytesWritten = writtenLength;
+            commit();
+        }
+    }
+}
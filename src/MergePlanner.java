@@ -0,0 +1,155 @@
+/**
+ * Huffman-style schedule of the merge steps before the last pass. Zero
+ * length dummy runs are added so every step can merge a full fan-in, and
+ * every step merges the shortest runs left, so a long run is re-read by as
+ * few steps as possible. The planner also counts the bytes written by the
+ * list order passes it replaces, so the saving can be reported.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.6.22
+ *
+ */
+public class MergePlanner {
+    private int[][] steps;
+    private long plannedBytes;
+    private long passBytes;
+
+    /**
+     * Constructor of the merge planner
+     *
+     * @param runLengths
+     *            The bytes of every run
+     * @param fanIn
+     *            The most runs merged by one step, at least 2
+     */
+    public MergePlanner(long[] runLengths, int fanIn) {
+        int runNum = runLengths.length;
+        int stepNum = runNum <= fanIn
+            ? 0
+            : (runNum - fanIn + fanIn - 2) / (fanIn - 1);
+        steps = new int[stepNum][];
+        PlannedRun[] heapArray = new PlannedRun[runNum];
+        for (int i = 0; i < runNum; i++) {
+            heapArray[i] = new PlannedRun(runLengths[i], i);
+        }
+        MinHeap<PlannedRun> heap = new MinHeap<>(heapArray, runNum, runNum);
+        // the dummies only shrink the first step, the last pass is full
+        int groupSize = runNum <= fanIn
+            ? 0
+            : (runNum - 2) % (fanIn - 1) + 2;
+        for (int s = 0; s < stepNum; s++) {
+            steps[s] = new int[groupSize];
+            long merged = 0;
+            for (int i = 0; i < groupSize; i++) {
+                PlannedRun run = heap.removemin();
+                steps[s][i] = run.id;
+                merged += run.length;
+            }
+            plannedBytes += merged;
+            heap.insert(new PlannedRun(merged, runNum + s));
+            groupSize = fanIn;
+        }
+        passBytes = countPassBytes(runLengths, fanIn);
+    }
+
+
+    /**
+     * Get the merge steps in order, a run created by step s has the index
+     * of the number of runs plus s
+     *
+     * @return The indexes of the runs merged by each step
+     */
+    public int[][] getSteps() {
+        return steps;
+    }
+
+
+    /**
+     * Get the bytes written by the planned steps
+     *
+     * @return The bytes written before the last pass
+     */
+    public long getPlannedBytes() {
+        return plannedBytes;
+    }
+
+
+    /**
+     * Get the bytes list order passes would write before the last pass
+     *
+     * @return The bytes written by the passes
+     */
+    public long getPassBytes() {
+        return passBytes;
+    }
+
+
+    /**
+     * Get the bytes the plan saves over the list order passes
+     *
+     * @return The bytes not written and not read again
+     */
+    public long getBytesSaved() {
+        return passBytes - plannedBytes;
+    }
+
+
+    /**
+     * Count the bytes written by passes merging fan-in runs at a time in
+     * list order, every pass writes all the runs
+     *
+     * @param runLengths
+     *            The bytes of every run
+     * @param fanIn
+     *            The most runs merged at a time
+     * @return The bytes written before the last pass
+     */
+    private static long countPassBytes(long[] runLengths, int fanIn) {
+        long total = 0;
+        for (long length : runLengths) {
+            total += length;
+        }
+        long bytes = 0;
+        for (long runNum = runLengths.length; runNum > fanIn; runNum =
+            (runNum + fanIn - 1) / fanIn) {
+            bytes += total;
+        }
+        return bytes;
+    }
+
+
+    /**
+     * A run of the plan ordered by its length
+     */
+    private static class PlannedRun implements Comparable<PlannedRun> {
+        private long length;
+        private int id;
+
+        /**
+         * Constructor of the planned run
+         *
+         * @param length
+         *            The bytes of the run
+         * @param id
+         *            The index of the run
+         */
+        public PlannedRun(long length, int id) {
+            this.length = length;
+            this.id = id;
+        }
+
+
+        /**
+         * Compare by length, then by index to keep the plan stable
+         *
+         * @param other
+         *            The other run
+         * @return The order of the two runs
+         */
+        @Override
+        public int compareTo(PlannedRun other) {
+            int compare = Long.compare(length, other.length);
+            return compare != 0 ? compare : Integer.compare(id, other.id);
+        }
+    }
+}
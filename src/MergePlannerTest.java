@@ -0,0 +1,55 @@
+import student.TestCase;
+
+/**
+ * Test of the merge planner
+ *
+ * @author Wenjun Han
+ * @version 5.6.22
+ */
+public class MergePlannerTest extends TestCase {
+
+    /**
+     * test the shortest runs are merged first with a smaller first step
+     */
+    public void testSteps() {
+        long[] lengths = { 100, 5, 50, 1, 80, 2 };
+        MergePlanner planner = new MergePlanner(lengths, 4);
+        int[][] steps = planner.getSteps();
+        // one dummy run, the first step merges the 3 shortest runs
+        assertEquals(1, steps.length);
+        assertEquals(3, steps[0].length);
+        assertEquals(3, steps[0][0]);
+        assertEquals(5, steps[0][1]);
+        assertEquals(1, steps[0][2]);
+        assertEquals(8, planner.getPlannedBytes());
+        assertEquals(238, planner.getPassBytes());
+        assertEquals(230, planner.getBytesSaved());
+    }
+
+
+    /**
+     * test several steps reuse the merged runs
+     */
+    public void testMergedRuns() {
+        long[] lengths = { 1, 1, 1, 1, 1, 1, 1 };
+        MergePlanner planner = new MergePlanner(lengths, 2);
+        int[][] steps = planner.getSteps();
+        assertEquals(5, steps.length);
+        // the last single run is merged with the first merged run
+        assertEquals(6, steps[3][0]);
+        assertEquals(7, steps[3][1]);
+        assertEquals(2 + 2 + 2 + 3 + 4, planner.getPlannedBytes());
+        // passes of 7 and 4 runs write all 7 bytes
+        assertEquals(14, planner.getPassBytes());
+    }
+
+
+    /**
+     * test runs fitting one pass need no step
+     */
+    public void testOnePass() {
+        MergePlanner planner = new MergePlanner(new long[] { 3, 4 }, 8);
+        assertEquals(0, planner.getSteps().length);
+        assertEquals(0, planner.getBytesSaved());
+    }
+}
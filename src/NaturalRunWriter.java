@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writer of natural runs. When a load of the record store is already in
+ * ascending order, the load is written as it is and the run is extended
+ * with the input records straight from the input blocks for as long as
+ * they do not descend, so presorted stretches of the input never touch the
+ * heap or the sorter.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.12.22
+ *
+ */
+public class NaturalRunWriter {
+    private RecordStore records;
+    private BlockSource reader;
+    private BlockWriter writer;
+    private RunOutput output;
+    private ByteBuffer inputBuffer;
+
+    /**
+     * Constructor of the natural run writer
+     *
+     * @param records
+     *            The record store holding the loads
+     * @param reader
+     *            The source of the input after the loads
+     * @param writer
+     *            The writer of the runs
+     * @param output
+     *            The output of the runs through the writer
+     */
+    public NaturalRunWriter(
+        RecordStore records,
+        BlockSource reader,
+        BlockWriter writer,
+        RunOutput output) {
+        this.records = records;
+        this.reader = reader;
+        this.writer = writer;
+        this.output = output;
+    }
+
+
+    /**
+     * Check if some records of the store are in ascending order
+     *
+     * @param records
+     *            The record store
+     * @param first
+     *            The index of the first record
+     * @param num
+     *            The number of records
+     * @return True if no record is smaller than the one before it
+     */
+    public static boolean isAscending(RecordStore records, int first, int num) {
+        for (int i = first + 1; i < first + num; i++) {
+            if (records.compare(i - 1, i) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Write an ascending load as a run and extend it with the input records
+     * that do not descend. The first descending record is left in the input
+     * buffer.
+     *
+     * @param run
+     *            The index the run is added to
+     * @param first
+     *            The index of the first record of the load
+     * @param num
+     *            The number of records of the load, at least 1
+     * @param input
+     *            The input buffer positioned after the load
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void write(RunIndex run, int first, int num, ByteBuffer input)
+        throws IOException {
+        SortRunEvent event = new SortRunEvent();
+        event.begin();
+        inputBuffer = input;
+        long runStart = writer.getPosition();
+        for (int i = first; i < first + num; i++) {
+            output.write(records, i);
+        }
+        long lastId = records.getId(first + num - 1);
+        double lastKey = records.getKey(first + num - 1);
+        while (inputBuffer.hasRemaining() || reader.hasNext()) {
+            if (!inputBuffer.hasRemaining()) {
+                inputBuffer = reader.next();
+                continue;
+            }
+            // peek at the record, a descending one starts the next load
+            long id = inputBuffer.getLong(inputBuffer.position());
+            double key = inputBuffer.getDouble(inputBuffer.position()
+                + Long.BYTES);
+            if (records.compare(id, key, lastId, lastKey) < 0) {
+                break;
+            }
+            lastId = id;
+            lastKey = key;
+            output.write(inputBuffer.getLong(), inputBuffer.getDouble());
+        }
+        long recordNum = output.getCount();
+        output.endRun();
+        run.add(runStart, writer.getPosition() - runStart, output
+            .getFirstKey(), output.getLastKey());
+        event.record(run, recordNum);
+    }
+
+
+    /**
+     * Get the input buffer to keep reading after the run
+     *
+     * @return The input buffer positioned at the next record
+     */
+    public ByteBuffer getInputBuffer() {
+        return inputBuffer;
+    }
+}
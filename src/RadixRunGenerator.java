@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Load-sort-store run generation over one region of the input. The generator
+ * fills half of its slice of the record store, radix sorts it with the other
+ * half as scratch, and writes it as one run, so every run but the last holds
+ * half of the slice. It replaces the run generator when the sort engine is
+ * radix.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.30.22
+ *
+ */
+public class RadixRunGenerator implements IoTask<RunIndex> {
+    private RecordStore records;
+    private int base;
+    private int loadCapacity;
+    private int preloaded;
+    private BlockSource reader;
+    private BlockWriter writer;
+    private ByteBuffer outputBuffer;
+    private RadixSorter sorter;
+    private long limit;
+    private RecordCombiner combiner;
+    private KeySample sample;
+
+    /**
+     * Constructor of the radix run generator
+     *
+     * @param records
+     *            The record store holding the slice
+     * @param base
+     *            The index of the first slice record inside the store
+     * @param capacity
+     *            The number of records of the slice, at least two
+     * @param preloaded
+     *            The number of records already loaded into the slice from
+     *            the start of the region, at most half of the slice
+     * @param reader
+     *            The source of the region after the preloaded records
+     * @param writer
+     *            The writer of the runs, starting at the run file position of
+     *            the region
+     * @param outputBuffer
+     *            The output buffer of one block
+     */
+    public RadixRunGenerator(
+        RecordStore records,
+        int base,
+        int capacity,
+        int preloaded,
+        BlockSource reader,
+        BlockWriter writer,
+        ByteBuffer outputBuffer) {
+        this.records = records;
+        this.base = base;
+        this.loadCapacity = capacity / 2;
+        this.preloaded = preloaded;
+        this.reader = reader;
+        this.writer = writer;
+        this.outputBuffer = outputBuffer;
+        sorter = new RadixSorter();
+        limit = Long.MAX_VALUE;
+    }
+
+
+    /**
+     * Set the most records written by a run, the rest of a run is dropped
+     *
+     * @param newLimit
+     *            The most records of a run
+     */
+    public void setLimit(long newLimit) {
+        this.limit = newLimit;
+    }
+
+
+    /**
+     * Set the combiner folding records of equal keys inside a run
+     *
+     * @param newCombiner
+     *            The combiner, null to keep every record
+     */
+    public void setCombiner(RecordCombiner newCombiner) {
+        this.combiner = newCombiner;
+    }
+
+
+    /**
+     * Set the sample offered the keys of the runs while they are written
+     *
+     * @param newSample
+     *            The key sample, null to sample nothing
+     */
+    public void setSample(KeySample newSample) {
+        this.sample = newSample;
+    }
+
+
+    /**
+     * Load, sort and write the region one half slice at a time, a load
+     * already in ascending order is written as a natural run instead
+     *
+     * @return The runs written, in file order, with their key ranges
+     * @throws IOException
+     *             Throws if any wrong with I/O
+     */
+    @Override
+    public RunIndex call() throws IOException {
+        RunIndex run = new RunIndex();
+        ByteBuffer inputBuffer = reader.next();
+        RunOutput output = new RunOutput(writer, outputBuffer, combiner,
+            limit);
+        output.setSample(sample);
+        NaturalRunWriter natural = new NaturalRunWriter(records, reader,
+            writer, output);
+        long runStart = writer.getPosition();
+        int loaded = preloaded;
+        boolean ascending = NaturalRunWriter.isAscending(records, base,
+            preloaded);
+        while (true) {
+            SortRunEvent event = new SortRunEvent();
+            event.begin();
+            // fill the first half of the slice from the region
+            while (loaded < loadCapacity && (inputBuffer.hasRemaining()
+                || reader.hasNext())) {
+                if (!inputBuffer.hasRemaining()) {
+                    inputBuffer = reader.next();
+                    continue;
+                }
+                records.read(base + loaded, inputBuffer);
+                ascending = ascending && (loaded == 0 || records.compare(base
+                    + loaded - 1, base + loaded) <= 0);
+                loaded++;
+            }
+            if (loaded == 0) {
+                break;
+            }
+            if (ascending) {
+                // a presorted load is not sorted, the run goes on until the
+                // input descends
+                natural.write(run, base, loaded, inputBuffer);
+                inputBuffer = natural.getInputBuffer();
+                runStart = writer.getPosition();
+                loaded = 0;
+                continue;
+            }
+            int first = sorter.sort(records, base, loaded);
+            for (int i = first; i < first + loaded; i++) {
+                output.write(records, i);
+            }
+            long recordNum = output.getCount();
+            output.endRun();
+            // record a new run, a compressed run is shorter than its records
+            run.add(runStart, writer.getPosition() - runStart, output
+                .getFirstKey(), output.getLastKey());
+            event.record(run, recordNum);
+            runStart = writer.getPosition();
+            loaded = 0;
+            ascending = true;
+        }
+        writer.flush();
+        return run;
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the radix run generator
+ *
+ * @author Wenjun Han
+ * @version 4.30.22
+ */
+public class RadixRunGeneratorTest extends TestCase {
+
+    private RandomAccessFile input;
+    private RandomAccessFile runFile;
+
+    /**
+     * set up an input of 8 records
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("radixTest.bin"));
+        Files.deleteIfExists(Paths.get("radixRun.bin"));
+        input = new RandomAccessFile("radixTest.bin", "rw");
+        runFile = new RandomAccessFile("radixRun.bin", "rw");
+        double[] keys = { 5, 3, 9, 1, 7, 2, 8, 6 };
+        for (int i = 0; i < keys.length; i++) {
+            input.writeLong(i);
+            input.writeDouble(keys[i]);
+        }
+    }
+
+
+    /**
+     * test loads of 3 records in a slice of 6 placed at the end of the store
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testGenerateRuns() throws IOException {
+        RecordStore store = new RecordStore(8);
+        BlockReader reader = new BlockReader(new StreamBlockFile(input), 0,
+            128, 32, false);
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(runFile), 16,
+            32, false);
+        RadixRunGenerator generator = new RadixRunGenerator(store, 2, 6, 0,
+            reader, writer, ByteBuffer.allocate(32));
+        RunIndex runs = generator.call();
+        // runs of 3 5 9 | 1 2 7 | 6 8
+        assertEquals(3, runs.size());
+        assertEquals(16, runs.getStart(0));
+        assertEquals(48, runs.getLength(0));
+        assertEquals(3.0, runs.getMinKey(0), 0.0);
+        assertEquals(9.0, runs.getMaxKey(0), 0.0);
+        assertEquals(64, runs.getStart(1));
+        assertEquals(48, runs.getLength(1));
+        assertEquals(112, runs.getStart(2));
+        assertEquals(32, runs.getLength(2));
+        assertEquals(6.0, runs.getMinKey(2), 0.0);
+        assertEquals(8.0, runs.getMaxKey(2), 0.0);
+        assertEquals(144, runFile.length());
+        runFile.seek(64);
+        assertEquals(3, runFile.readLong());
+        assertEquals(1.0, runFile.readDouble(), 0.0);
+        runFile.seek(112);
+        assertEquals(7, runFile.readLong());
+        assertEquals(6.0, runFile.readDouble(), 0.0);
+        input.close();
+        runFile.close();
+        Files.deleteIfExists(Paths.get("radixTest.bin"));
+        Files.deleteIfExists(Paths.get("radixRun.bin"));
+    }
+
+
+    /**
+     * test ascending loads skip the sorter and are cut at the limit
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testNaturalRuns() throws IOException {
+        input.setLength(0);
+        double[] keys = { 1, 2, 3, 4, 5, 0, 6, 7 };
+        for (int i = 0; i < keys.length; i++) {
+            input.writeLong(i);
+            input.writeDouble(keys[i]);
+        }
+        RecordStore store = new RecordStore(8);
+        BlockReader reader = new BlockReader(new StreamBlockFile(input), 0,
+            128, 32, false);
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(runFile), 0,
+            32, false);
+        RadixRunGenerator generator = new RadixRunGenerator(store, 2, 6, 0,
+            reader, writer, ByteBuffer.allocate(32));
+        generator.setLimit(4);
+        RunIndex runs = generator.call();
+        // runs of 1 2 3 4 (5) | 0 6 7
+        assertEquals(2, runs.size());
+        assertEquals(0, runs.getStart(0));
+        assertEquals(64, runs.getLength(0));
+        assertEquals(4.0, runs.getMaxKey(0), 0.0);
+        assertEquals(64, runs.getStart(1));
+        assertEquals(48, runs.getLength(1));
+        assertEquals(0.0, runs.getMinKey(1), 0.0);
+        runFile.seek(64);
+        assertEquals(5, runFile.readLong());
+        assertEquals(0.0, runFile.readDouble(), 0.0);
+        input.close();
+        runFile.close();
+        Files.deleteIfExists(Paths.get("radixTest.bin"));
+        Files.deleteIfExists(Paths.get("radixRun.bin"));
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * Byte-wise least significant digit radix sort of a slice of the record
+ * store. Every key is mapped to an unsigned 64-bit integer ordered like
+ * Double.compare, the digits of all the records are counted in one pass, and
+ * every digit not shared by all the records scatters them between the slice
+ * and the scratch slice right after it. The sort is stable and compares no
+ * keys.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.30.22
+ *
+ */
+public class RadixSorter {
+    /** Number of bits of one digit **/
+    public static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int DIGITS = Long.SIZE / DIGIT_BITS;
+    private int[][] counts;
+
+    /**
+     * Constructor of the radix sorter, the digit counts of the keys and the
+     * ids are reused by every sort
+     */
+    public RadixSorter() {
+        counts = new int[2 * DIGITS][RADIX];
+    }
+
+
+    /**
+     * Map a key to an unsigned integer with the same order, negative keys
+     * have all their bits flipped and the others only their sign bit
+     *
+     * @param key
+     *            The key of a record
+     * @return The order preserving unsigned bits of the key
+     */
+    public static long normalize(double key) {
+        long bits = Double.doubleToLongBits(key);
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+
+    /**
+     * Sort the records of a slice of the store, the same number of records
+     * after the slice is used as scratch
+     *
+     * @param store
+     *            The record store
+     * @param from
+     *            The index of the first record to sort
+     * @param num
+     *            The number of records to sort
+     * @return The index where the sorted records start, either from or
+     *         from + num
+     */
+    public int sort(RecordStore store, int from, int num) {
+        // a stable store sorts the ids first, as the less significant half
+        int idDigits = store.isStable() ? DIGITS : 0;
+        for (int[] count : counts) {
+            Arrays.fill(count, 0);
+        }
+        for (int i = from; i < from + num; i++) {
+            long key = normalize(store.getKey(i));
+            for (int d = 0; d < DIGITS; d++) {
+                counts[idDigits + d][digit(key, d)]++;
+            }
+            if (idDigits > 0) {
+                long id = store.getId(i) ^ Long.MIN_VALUE;
+                for (int d = 0; d < DIGITS; d++) {
+                    counts[d][digit(id, d)]++;
+                }
+            }
+        }
+        int source = from;
+        int target = from + num;
+        for (int d = 0; d < idDigits + DIGITS && num > 0; d++) {
+            int[] count = counts[d];
+            // a digit shared by every record would not move anything
+            if (count[digit(store, source, d, idDigits)] == num) {
+                continue;
+            }
+            // turn the counts into the next index of each digit value
+            int next = target;
+            for (int v = 0; v < RADIX; v++) {
+                int size = count[v];
+                count[v] = next;
+                next += size;
+            }
+            for (int i = source; i < source + num; i++) {
+                store.copy(i, count[digit(store, i, d, idDigits)]++);
+            }
+            int sorted = target;
+            target = source;
+            source = sorted;
+        }
+        return source;
+    }
+
+
+    /**
+     * Sort the entries of a slice of a layout record store by their
+     * normalized key words, the last word first, the same number of entries
+     * after the slice is used as scratch
+     *
+     * @param store
+     *            The layout record store
+     * @param from
+     *            The index of the first entry to sort
+     * @param num
+     *            The number of entries to sort
+     * @return The index where the sorted entries start, either from or
+     *         from + num
+     */
+    public int sort(LayoutRecordStore store, int from, int num) {
+        int source = from;
+        int target = from + num;
+        for (int w = store.getLayout().getKeyWords() - 1; w >= 0
+            && num > 0; w--) {
+            for (int[] count : counts) {
+                Arrays.fill(count, 0);
+            }
+            for (int i = source; i < source + num; i++) {
+                long key = store.getKeyWord(i, w);
+                for (int d = 0; d < DIGITS; d++) {
+                    counts[d][digit(key, d)]++;
+                }
+            }
+            for (int d = 0; d < DIGITS; d++) {
+                int[] count = counts[d];
+                // the zero padding of a key is shared by every record
+                if (count[digit(store.getKeyWord(source, w), d)] == num) {
+                    continue;
+                }
+                int next = target;
+                for (int v = 0; v < RADIX; v++) {
+                    int size = count[v];
+                    count[v] = next;
+                    next += size;
+                }
+                for (int i = source; i < source + num; i++) {
+                    store.copy(i, count[digit(store.getKeyWord(i, w),
+                        d)]++);
+                }
+                int sorted = target;
+                target = source;
+                source = sorted;
+            }
+        }
+        return source;
+    }
+
+
+    /**
+     * Get one digit of a record, the digits of the id come before the ones
+     * of the key
+     *
+     * @param store
+     *            The record store
+     * @param index
+     *            The index of the record
+     * @param d
+     *            The digit, 0 is the least significant
+     * @param idDigits
+     *            The number of digits of the id, 0 when the ids are not
+     *            sorted
+     * @return The value of the digit
+     */
+    private static int digit(
+        RecordStore store,
+        int index,
+        int d,
+        int idDigits) {
+        return d < idDigits
+            ? digit(store.getId(index) ^ Long.MIN_VALUE, d)
+            : digit(normalize(store.getKey(index)), d - idDigits);
+    }
+
+
+    /**
+     * Get one digit of a normalized key
+     *
+     * @param key
+     *            The normalized key
+     * @param d
+     *            The digit, 0 is the least significant
+     * @return The value of the digit
+     */
+    private static int digit(long key, int d) {
+        return (int)(key >>> (d * DIGIT_BITS)) & (RADIX - 1);
+    }
+}
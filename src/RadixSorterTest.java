@@ -0,0 +1,89 @@
+import student.TestCase;
+
+/**
+ * Test of the radix sorter
+ *
+ * @author Wenjun Han
+ * @version 4.30.22
+ */
+public class RadixSorterTest extends TestCase {
+
+    private RecordStore records;
+    private RadixSorter sorter;
+
+    /**
+     * set up a store of 16 records
+     */
+    public void setUp() {
+        records = new RecordStore(16);
+        sorter = new RadixSorter();
+    }
+
+
+    /**
+     * test the normalized keys keep the order of Double.compare
+     */
+    public void testNormalize() {
+        double[] keys = { Double.NEGATIVE_INFINITY, -1e300, -1.5,
+            -Double.MIN_VALUE, -0.0, 0.0, Double.MIN_VALUE, 2.0, 1e300,
+            Double.POSITIVE_INFINITY, Double.NaN };
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(Long.compareUnsigned(RadixSorter.normalize(keys[i - 1]),
+                RadixSorter.normalize(keys[i])) < 0);
+        }
+    }
+
+
+    /**
+     * test sorting keys of mixed signs into the scratch half
+     */
+    public void testSort() {
+        double[] keys = { 3.5, -2.0, 1e10, 0.0, -1e-5, 7.25, -2.0, 42.0 };
+        for (int i = 0; i < keys.length; i++) {
+            records.set(i, i, keys[i]);
+        }
+        int first = sorter.sort(records, 0, keys.length);
+        assertTrue(first == 0 || first == keys.length);
+        double[] expected = { -2.0, -2.0, -1e-5, 0.0, 3.5, 7.25, 42.0, 1e10 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], records.getKey(first + i), 0.0);
+        }
+        // equal keys keep their input order
+        assertEquals(1, records.getId(first));
+        assertEquals(6, records.getId(first + 1));
+    }
+
+
+    /**
+     * test a slice sharing every digit, a single record and an empty slice
+     */
+    public void testTrivial() {
+        for (int i = 0; i < 4; i++) {
+            records.set(4 + i, i, 9.0);
+        }
+        assertEquals(4, sorter.sort(records, 4, 4));
+        assertEquals(2, records.getId(6));
+        assertEquals(4, sorter.sort(records, 4, 1));
+        assertEquals(3, sorter.sort(records, 3, 0));
+    }
+
+
+    /**
+     * test a stable store is sorted on the ids within equal keys
+     */
+    public void testStable() {
+        RecordStore stable = new RecordStore(16, true);
+        long[] ids = { 5, -3, 1L << 40, 2, -3, 0, Long.MIN_VALUE, 7 };
+        double[] keys = { 1.0, 1.0, 1.0, -1.0, 1.0, -1.0, 1.0, 0.0 };
+        for (int i = 0; i < ids.length; i++) {
+            stable.set(i, ids[i], keys[i]);
+        }
+        int first = sorter.sort(stable, 0, ids.length);
+        for (int i = 1; i < ids.length; i++) {
+            assertTrue(stable.compare(first + i - 1, first + i) <= 0);
+        }
+        assertEquals(0, stable.getId(first));
+        assertEquals(Long.MIN_VALUE, stable.getId(first + 3));
+        assertEquals(1L << 40, stable.getId(first + 7));
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Hook folding records of equal keys while they are written in key order.
+ * Runs, merge steps and the sorted output all pass their records through
+ * it, so duplicates are dropped or aggregated as early as run generation
+ * and later passes move less data. A combiner is applied again to records
+ * already combined, so it has to be associative.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.13.22
+ *
+ */
+public interface RecordCombiner {
+
+    /** Keep one record of every key, dropping the duplicates **/
+    public static final RecordCombiner DISTINCT = (key, keptId, id) -> keptId;
+    /** Keep one record of every key with the sum of the ids, as counts **/
+    public static final RecordCombiner SUM = (key, keptId, id) -> keptId
+        + id;
+
+    /**
+     * Combine a record into the record of the same key written before it
+     *
+     * @param key
+     *            The key of both records
+     * @param keptId
+     *            The id of the record written before
+     * @param id
+     *            The id of the record to fold in
+     * @return The id of the combined record
+     */
+    public long combine(double key, long keptId, long id);
+}
@@ -0,0 +1,140 @@
+/**
+ * MinHeap structure specialized to the primitive record stores, source code
+ * from OpenDSA - heap sort. The heap positions are the record indexes of the
+ * store, so sifting moves primitive keys and ids, or the normalized keys of
+ * a record layout, instead of objects.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.22.22
+ */
+public class RecordHeap {
+
+    private RecordOrder store; // The records of the heap
+    private int base; // Store index of the heap root
+    private int n; // Number of things now in heap
+    private long comparisons; // Key comparisons of the sifts
+
+    /**
+     * Constructor supporting preloading of heap contents
+     *
+     * @param store
+     *            Heap data store
+     * @param num
+     *            Number of records inside the heap
+     */
+    public RecordHeap(RecordOrder store, int num) {
+        this(store, 0, num);
+    }
+
+
+    /**
+     * Constructor of a heap over a slice of the store
+     *
+     * @param store
+     *            Heap data store
+     * @param base
+     *            The store index of the first heap position
+     * @param num
+     *            Number of records inside the heap
+     */
+    public RecordHeap(RecordOrder store, int base, int num) {
+        this.store = store;
+        this.base = base;
+        n = num;
+        buildheap();
+    }
+
+
+    /**
+     * Return current size of the heap
+     *
+     * @return size of heap
+     */
+    public int heapsize() {
+        return n;
+    }
+
+
+    /**
+     * Set the size of heap
+     *
+     * @param newSize
+     *            The new size of heap
+     */
+    public void setHeapsize(int newSize) {
+        n = newSize;
+    }
+
+
+    /**
+     * Get the record store of the heap
+     *
+     * @return The record store
+     */
+    public RecordOrder getStore() {
+        return store;
+    }
+
+
+    /**
+     * Get the key comparisons made by the heap so far
+     *
+     * @return The number of comparisons
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+
+    /**
+     * Heapify contents of Heap
+     */
+    public void buildheap() {
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftdown(i);
+        }
+    }
+
+
+    /**
+     * Put element in its correct place
+     *
+     * @param pos
+     *            The position of the element
+     */
+    public void siftdown(int pos) {
+        if ((pos < 0) || (pos >= n)) {
+            return;
+        } // Illegal position
+        while (pos < n / 2) {
+            int j = 2 * pos + 1;
+            if (j < (n - 1)) {
+                comparisons++;
+                if (store.compare(base + j, base + j + 1) > 0) {
+                    j++; // j is now index of child with smaller value
+                }
+            }
+            comparisons++;
+            if (store.compare(base + pos, base + j) <= 0) {
+                return;
+            }
+            store.swap(base + pos, base + j);
+            pos = j; // Move down
+        }
+    }
+
+
+    /**
+     * Remove the minimum record, the top element
+     *
+     * @return The store index now holding the minimum record, -1 if empty
+     */
+    public int removemin() {
+        if (n == 0) {
+            return -1;
+        } // Removing from empty heap
+        store.swap(base, base + --n); // Swap minimum with last value
+        siftdown(0); // Put new heap root val in correct place
+        return base + n;
+    }
+}
@@ -0,0 +1,83 @@
+import student.TestCase;
+
+/**
+ * Test of the primitive record heap
+ *
+ * @author Wenjun Han
+ * @version 4.22.22
+ */
+public class RecordHeapTest extends TestCase {
+
+    private RecordStore store;
+    private RecordHeap heap;
+
+    /**
+     * set up the heap and test buildheap()
+     */
+    public void setUp() {
+        double[] keys = { 5, 3, 9, 1, 7, 2, 8, 6, 4, 10 };
+        store = new RecordStore(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            store.set(i, i, keys[i]);
+        }
+        heap = new RecordHeap(store, keys.length);
+    }
+
+
+    /**
+     * test heapsize() and getStore()
+     */
+    public void testHeapsize() {
+        assertEquals(10, heap.heapsize());
+        heap.setHeapsize(3);
+        assertEquals(3, heap.heapsize());
+        assertSame(store, heap.getStore());
+    }
+
+
+    /**
+     * test removemin() returns the records in order
+     */
+    public void testRemovemin() {
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, store.getKey(heap.removemin()), 0.0);
+        }
+        assertEquals(-1, heap.removemin());
+    }
+
+
+    /**
+     * test siftdown() after replacing the root
+     */
+    public void testSiftdown() {
+        long built = heap.getComparisons();
+        assertTrue(built > 0);
+        heap.siftdown(-1);
+        heap.siftdown(12);
+        assertEquals(built, heap.getComparisons());
+        assertEquals(1, store.getKey(0), 0.0);
+        store.set(0, 20, 11);
+        heap.siftdown(0);
+        assertEquals(2, store.getKey(0), 0.0);
+        // the new root sinks past two levels, two comparisons on each
+        assertTrue(heap.getComparisons() >= built + 4);
+    }
+
+
+    /**
+     * test a heap over the last records of the store
+     */
+    public void testSlice() {
+        RecordStore slices = new RecordStore(6);
+        double[] keys = { 9, 8, 6, 4, 5, 7 };
+        for (int i = 0; i < keys.length; i++) {
+            slices.set(i, i, keys[i]);
+        }
+        RecordHeap slice = new RecordHeap(slices, 2, 4);
+        assertEquals(4, slices.getKey(2), 0.0);
+        assertEquals(5, slice.removemin());
+        assertEquals(4, slices.getKey(5), 0.0);
+        assertEquals(5, slices.getKey(2), 0.0);
+        assertEquals(9, slices.getKey(0), 0.0);
+    }
+}
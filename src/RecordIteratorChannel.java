@@ -0,0 +1,70 @@
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+
+/**
+ * Readable channel over an iterator of records, so records produced in
+ * memory go through the same block source as records read from a stream
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.2.22
+ *
+ */
+public class RecordIteratorChannel implements ReadableByteChannel {
+    private Iterator<Record> records;
+    private boolean open;
+
+    /**
+     * Constructor of the record iterator channel
+     *
+     * @param records
+     *            The records to read
+     */
+    public RecordIteratorChannel(Iterator<Record> records) {
+        this.records = records;
+        open = true;
+    }
+
+
+    /**
+     * Read the bytes of as many whole records as fit into a buffer
+     *
+     * @param dst
+     *            The buffer to fill
+     * @return The number of bytes read, -1 after the last record
+     */
+    @Override
+    public int read(ByteBuffer dst) {
+        if (!records.hasNext()) {
+            return -1;
+        }
+        int read = 0;
+        while (dst.remaining() >= FileReader.RECORD_SIZE && records
+            .hasNext()) {
+            dst.put(records.next().getCompleteRecord(), 0,
+                FileReader.RECORD_SIZE);
+            read += FileReader.RECORD_SIZE;
+        }
+        return read;
+    }
+
+
+    /**
+     * Check if the channel is open
+     *
+     * @return True until the channel is closed
+     */
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+
+    /**
+     * Close the channel, the iterator is left as it is
+     */
+    @Override
+    public void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Fixed width layout of the records of a file, declaring the width and the
+ * key fields. The key of a record is normalized into unsigned 64-bit words
+ * ordered like the key, so records of any layout compare word by word as
+ * primitives, one word for keys up to 8 bytes and two for the 10 byte
+ * gensort keys, without a comparator per layout.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.19.22
+ *
+ */
+public class RecordLayout {
+
+    /** The 16 byte records of the sort, an 8 byte id and a double key **/
+    public static final RecordLayout ID_DOUBLE = new RecordLayout(
+        FileReader.RECORD_SIZE, new KeyField(8, 8, KeyType.DOUBLE));
+    /** The 100 byte sortbenchmark records with a 10 byte binary key **/
+    public static final RecordLayout GENSORT = new RecordLayout(100,
+        new KeyField(0, 10, KeyType.BYTES));
+
+    private int width;
+    private KeyField[] keys;
+    private int keyWords;
+
+    /**
+     * Constructor of the record layout
+     *
+     * @param width
+     *            The bytes of every record
+     * @param keys
+     *            The key fields, most significant first
+     */
+    public RecordLayout(int width, KeyField... keys) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("Record layout needs a key");
+        }
+        int keyLength = 0;
+        for (KeyField key : keys) {
+            if (key.getOffset() + key.getLength() > width) {
+                throw new IllegalArgumentException("Key field at "
+                    + key.getOffset() + " is outside a record of " + width
+                    + " bytes");
+            }
+            keyLength += key.getLength();
+        }
+        this.width = width;
+        this.keys = keys.clone();
+        keyWords = (keyLength + Long.BYTES - 1) / Long.BYTES;
+    }
+
+
+    /**
+     * Get the bytes of every record
+     *
+     * @return The record width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+
+    /**
+     * Get the number of words of a normalized key
+     *
+     * @return The key words
+     */
+    public int getKeyWords() {
+        return keyWords;
+    }
+
+
+    /**
+     * Normalize the key of a record into unsigned words, comparing them
+     * with Long.compareUnsigned from the first word on gives the order of
+     * the keys. The bytes after the last key field are zero.
+     *
+     * @param record
+     *            The bytes holding the record
+     * @param offset
+     *            The position of the record
+     * @param words
+     *            The array the words are written to
+     * @param wordOffset
+     *            The position of the first word
+     */
+    public void normalize(
+        byte[] record,
+        int offset,
+        long[] words,
+        int wordOffset) {
+        long word = 0;
+        int filled = 0;
+        int w = wordOffset;
+        for (KeyField key : keys) {
+            int start = offset + key.getOffset();
+            int length = key.getLength();
+            long value = 0;
+            if (key.getType() != KeyType.BYTES) {
+                for (int i = 0; i < length; i++) {
+                    value = (value << 8) | (record[start + i] & 0xFF);
+                }
+                value = normalize(value, key.getType());
+            }
+            for (int i = 0; i < length; i++) {
+                // the bytes of a number go most significant first
+                int b = key.getType() == KeyType.BYTES
+                    ? record[start + i] & 0xFF
+                    : (int)(value >>> ((length - 1 - i) * 8)) & 0xFF;
+                word = (word << 8) | b;
+                if (++filled == Long.BYTES) {
+                    words[w++] = word;
+                    word = 0;
+                    filled = 0;
+                }
+            }
+        }
+        if (filled > 0) {
+            words[w] = word << ((Long.BYTES - filled) * 8);
+        }
+    }
+
+
+    /**
+     * Map a number to unsigned bits with the same order
+     *
+     * @param bits
+     *            The big-endian bits of the field
+     * @param type
+     *            The type of the field
+     * @return The order preserving unsigned bits, in the low bytes of the
+     *         field length
+     */
+    private static long normalize(long bits, KeyType type) {
+        switch (type) {
+            case DOUBLE:
+                return RadixSorter.normalize(Double.longBitsToDouble(bits));
+            case LONG:
+                return bits ^ Long.MIN_VALUE;
+            default:
+                return (bits ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.nio.ByteBuffer;
+import student.TestCase;
+
+/**
+ * Test of the record layout
+ *
+ * @author Wenjun Han
+ * @version 5.19.22
+ */
+public class RecordLayoutTest extends TestCase {
+
+    /**
+     * test the normalized keys of numbers keep their order
+     */
+    public void testNumbers() {
+        double[] doubles = { Double.NEGATIVE_INFINITY, -1.5, -0.0, 0.0, 2.0,
+            Double.POSITIVE_INFINITY };
+        long[] previous = null;
+        for (double key : doubles) {
+            long[] words = normalize(RecordLayout.ID_DOUBLE, ByteBuffer
+                .allocate(16).putLong(7).putDouble(key).array());
+            assertEquals(RadixSorter.normalize(key), words[0]);
+            assertOrdered(previous, words);
+            previous = words;
+        }
+        RecordLayout longs = new RecordLayout(8, new KeyField(0, 8,
+            KeyType.LONG));
+        RecordLayout ints = new RecordLayout(6, new KeyField(2, 4,
+            KeyType.INT));
+        long[] values = { Long.MIN_VALUE, -5, 0, 3, Long.MAX_VALUE };
+        long[] previousLong = null;
+        long[] previousInt = null;
+        for (long value : values) {
+            long[] words = normalize(longs, ByteBuffer.allocate(8).putLong(
+                value).array());
+            assertOrdered(previousLong, words);
+            previousLong = words;
+            words = normalize(ints, ByteBuffer.allocate(6).putShort(
+                (short)1).putInt((int)Math.max(Integer.MIN_VALUE, Math.min(
+                    Integer.MAX_VALUE, value))).array());
+            assertOrdered(previousInt, words);
+            previousInt = words;
+            // the 4 key bytes go first in the word
+            assertEquals(0, words[0] & 0xFFFFFFFFL);
+        }
+    }
+
+
+    /**
+     * test byte keys compare unsigned and composite keys field by field
+     */
+    public void testComposite() {
+        assertEquals(2, RecordLayout.GENSORT.getKeyWords());
+        assertEquals(100, RecordLayout.GENSORT.getWidth());
+        byte[] low = new byte[100];
+        byte[] high = new byte[100];
+        low[9] = 0x7F;
+        high[9] = (byte)0x80;
+        assertOrdered(normalize(RecordLayout.GENSORT, low), normalize(
+            RecordLayout.GENSORT, high));
+        // the int field is compared before the bytes after it
+        RecordLayout composite = new RecordLayout(12, new KeyField(8, 4,
+            KeyType.INT), new KeyField(0, 6, KeyType.BYTES));
+        assertEquals(2, composite.getKeyWords());
+        byte[] first = ByteBuffer.allocate(12).put(new byte[] { 9, 9, 9, 9,
+            9, 9 }).putShort((short)0).putInt(-1).array();
+        byte[] second = ByteBuffer.allocate(12).put(new byte[6]).putShort(
+            (short)0).putInt(1).array();
+        assertOrdered(normalize(composite, first), normalize(composite,
+            second));
+    }
+
+
+    /**
+     * test key fields that do not fit their type or the record
+     */
+    public void testInvalid() {
+        Exception thrown = null;
+        try {
+            new KeyField(0, 4, KeyType.DOUBLE);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            new RecordLayout(8, new KeyField(4, 8, KeyType.LONG));
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            new RecordLayout(8);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * Normalize the key of a record
+     *
+     * @param layout
+     *            The layout of the record
+     * @param record
+     *            The bytes of the record
+     * @return The key words
+     */
+    private long[] normalize(RecordLayout layout, byte[] record) {
+        long[] words = new long[layout.getKeyWords()];
+        layout.normalize(record, 0, words, 0);
+        return words;
+    }
+
+
+    /**
+     * Check normalized keys are in strictly ascending order
+     *
+     * @param first
+     *            The smaller key words, null for none
+     * @param second
+     *            The larger key words
+     */
+    private void assertOrdered(long[] first, long[] second) {
+        if (first == null) {
+            return;
+        }
+        int compare = 0;
+        for (int w = 0; w < first.length && compare == 0; w++) {
+            compare = Long.compareUnsigned(first[w], second[w]);
+        }
+        assertTrue(compare < 0);
+    }
+}
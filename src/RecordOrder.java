@@ -0,0 +1,35 @@
+/**
+ * Records held by index that the heap and the loser tree can order. The
+ * record store of the 16 byte records and the layout record store of any
+ * other layout are the only ones, so every call site sees at most two
+ * classes and the compiler inlines the comparison of each.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.19.22
+ *
+ */
+public interface RecordOrder {
+
+    /**
+     * Compare two records based on their keys
+     *
+     * @param first
+     *            The index of the first record
+     * @param second
+     *            The index of the second record
+     * @return A negative integer, zero, or a positive integer as the first
+     *         record is less than, equal to, or greater than the second
+     */
+    int compare(int first, int second);
+
+
+    /**
+     * Swap two records
+     *
+     * @param first
+     *            The index of the first record
+     * @param second
+     *            The index of the second record
+     */
+    void swap(int first, int second);
+}
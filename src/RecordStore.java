@@ -0,0 +1,255 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Primitive storage of records, keeping the keys and the ids in two parallel
+ * arrays instead of one Record object per record, so the heap and the merge
+ * compare keys without allocating and every record only costs its 16 bytes
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.22.22
+ *
+ */
+public class RecordStore implements RecordOrder {
+    private double[] keys;
+    private long[] ids;
+    private boolean stable;
+
+    /**
+     * Constructor of the record store
+     *
+     * @param capacity
+     *            The number of records the store can hold
+     */
+    public RecordStore(int capacity) {
+        this(capacity, false);
+    }
+
+
+    /**
+     * Constructor of the record store
+     *
+     * @param capacity
+     *            The number of records the store can hold
+     * @param stable
+     *            True to order the records of equal keys by their ids
+     */
+    public RecordStore(int capacity, boolean stable) {
+        keys = new double[capacity];
+        ids = new long[capacity];
+        this.stable = stable;
+    }
+
+
+    /**
+     * Get the number of records the store can hold
+     *
+     * @return The capacity of the store
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+
+    /**
+     * Grow the store to hold at least a number of records, keeping the
+     * records already stored
+     *
+     * @param capacity
+     *            The number of records the store should hold
+     */
+    public void grow(int capacity) {
+        if (capacity > keys.length) {
+            keys = Arrays.copyOf(keys, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+    }
+
+
+    /**
+     * Check if the records of equal keys are ordered by their ids
+     *
+     * @return True for a stable order
+     */
+    public boolean isStable() {
+        return stable;
+    }
+
+
+    /**
+     * Get the key of a record
+     *
+     * @param index
+     *            The record index
+     * @return The key of the record
+     */
+    public double getKey(int index) {
+        return keys[index];
+    }
+
+
+    /**
+     * Get the id of a record
+     *
+     * @param index
+     *            The record index
+     * @return The id of the record
+     */
+    public long getId(int index) {
+        return ids[index];
+    }
+
+
+    /**
+     * Set the content of a record
+     *
+     * @param index
+     *            The record index
+     * @param id
+     *            The id of the record
+     * @param key
+     *            The key of the record
+     */
+    public void set(int index, long id, double key) {
+        ids[index] = id;
+        keys[index] = key;
+    }
+
+
+    /**
+     * Copy a record to another index
+     *
+     * @param from
+     *            The index of the source record
+     * @param to
+     *            The index of the destination
+     */
+    public void copy(int from, int to) {
+        ids[to] = ids[from];
+        keys[to] = keys[from];
+    }
+
+
+    /**
+     * Swap two records
+     *
+     * @param first
+     *            The index of the first record
+     * @param second
+     *            The index of the second record
+     */
+    @Override
+    public void swap(int first, int second) {
+        long tempId = ids[first];
+        ids[first] = ids[second];
+        ids[second] = tempId;
+        double tempKey = keys[first];
+        keys[first] = keys[second];
+        keys[second] = tempKey;
+    }
+
+
+    /**
+     * Compare two records based on their keys, then their ids when stable
+     *
+     * @param first
+     *            The index of the first record
+     * @param second
+     *            The index of the second record
+     * @return A negative integer, zero, or a positive integer as the first
+     *         record is less than, equal to, or greater than the second
+     */
+    @Override
+    public int compare(int first, int second) {
+        int compare = Double.compare(keys[first], keys[second]);
+        // the ids are only looked at for a tie
+        return compare != 0 || !stable
+            ? compare
+            : Long.compare(ids[first], ids[second]);
+    }
+
+
+    /**
+     * Compare a record not held by the store with a record of the store
+     *
+     * @param id
+     *            The id of the first record
+     * @param key
+     *            The key of the first record
+     * @param index
+     *            The index of the second record
+     * @return A negative integer, zero, or a positive integer as the first
+     *         record is less than, equal to, or greater than the second
+     */
+    public int compare(long id, double key, int index) {
+        return compare(id, key, ids[index], keys[index]);
+    }
+
+
+    /**
+     * Compare two records not held by the store in the order of the store
+     *
+     * @param firstId
+     *            The id of the first record
+     * @param firstKey
+     *            The key of the first record
+     * @param secondId
+     *            The id of the second record
+     * @param secondKey
+     *            The key of the second record
+     * @return A negative integer, zero, or a positive integer as the first
+     *         record is less than, equal to, or greater than the second
+     */
+    public int compare(
+        long firstId,
+        double firstKey,
+        long secondId,
+        double secondKey) {
+        int compare = Double.compare(firstKey, secondKey);
+        return compare != 0 || !stable
+            ? compare
+            : Long.compare(firstId, secondId);
+    }
+
+
+    /**
+     * Decode the next record of a buffer into the store
+     *
+     * @param index
+     *            The record index
+     * @param buffer
+     *            The buffer positioned at the record
+     */
+    public void read(int index, ByteBuffer buffer) {
+        ids[index] = buffer.getLong();
+        keys[index] = buffer.getDouble();
+    }
+
+
+    /**
+     * Encode a record of the store into a buffer
+     *
+     * @param index
+     *            The record index
+     * @param buffer
+     *            The buffer with room for the record
+     */
+    public void write(int index, ByteBuffer buffer) {
+        buffer.putLong(ids[index]);
+        buffer.putDouble(keys[index]);
+    }
+
+
+    /**
+     * Get a record of the store as a Record object
+     *
+     * @param index
+     *            The record index
+     * @return A new record holding the same bytes
+     */
+    public Record getRecord(int index) {
+        ByteBuffer buffer = ByteBuffer.allocate(FileReader.RECORD_SIZE);
+        write(index, buffer);
+        return new Record(buffer.array());
+    }
+}
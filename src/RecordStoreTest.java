@@ -0,0 +1,102 @@
+import java.nio.ByteBuffer;
+import student.TestCase;
+
+/**
+ * Test of the primitive record store
+ *
+ * @author Wenjun Han
+ * @version 4.22.22
+ */
+public class RecordStoreTest extends TestCase {
+
+    private RecordStore store;
+
+    /**
+     * set up a store of three records
+     */
+    public void setUp() {
+        store = new RecordStore(3);
+        store.set(0, 7, 1.0);
+        store.set(1, 8, -2.5);
+        store.set(2, 9, 1.0);
+    }
+
+
+    /**
+     * test getters and capacity
+     */
+    public void testGetter() {
+        assertEquals(3, store.capacity());
+        assertEquals(7, store.getId(0));
+        assertEquals(-2.5, store.getKey(1), 0.0);
+    }
+
+
+    /**
+     * test growing keeps the stored records
+     */
+    public void testGrow() {
+        store.grow(2);
+        assertEquals(3, store.capacity());
+        store.grow(8);
+        assertEquals(8, store.capacity());
+        assertEquals(9, store.getId(2));
+        assertEquals(1.0, store.getKey(2), 0.0);
+        store.set(7, 10, 3.5);
+        assertEquals(10, store.getId(7));
+    }
+
+
+    /**
+     * test compare, copy and swap
+     */
+    public void testCompareCopySwap() {
+        assertTrue(store.compare(0, 1) > 0);
+        assertTrue(store.compare(1, 0) < 0);
+        assertEquals(0, store.compare(0, 2));
+        store.swap(0, 1);
+        assertEquals(8, store.getId(0));
+        assertEquals(1.0, store.getKey(1), 0.0);
+        store.copy(0, 2);
+        assertEquals(8, store.getId(2));
+        assertEquals(-2.5, store.getKey(2), 0.0);
+    }
+
+
+    /**
+     * test reading and writing records through buffers
+     */
+    public void testReadWrite() {
+        ByteBuffer buffer = ByteBuffer.allocate(FileReader.RECORD_SIZE * 2);
+        store.write(0, buffer);
+        store.write(1, buffer);
+        buffer.flip();
+        store.read(2, buffer);
+        assertEquals(7, store.getId(2));
+        store.read(2, buffer);
+        assertEquals(-2.5, store.getKey(2), 0.0);
+        assertEquals("8 -2.5", store.getRecord(2).toString());
+    }
+
+
+    /**
+     * test a stable store breaks ties of the keys on the ids
+     */
+    public void testStable() {
+        RecordStore stable = new RecordStore(3, true);
+        assertFalse(store.isStable());
+        assertTrue(stable.isStable());
+        stable.set(0, 7, 1.0);
+        stable.set(1, -4, 1.0);
+        stable.set(2, 9, -2.5);
+        assertTrue(stable.compare(0, 1) > 0);
+        assertTrue(stable.compare(2, 1) < 0);
+        assertEquals(0, stable.compare(7, 1.0, 0));
+        assertTrue(stable.compare(8, 1.0, 0) > 0);
+        assertTrue(stable.compare(8, 0.5, 0) < 0);
+        // without ties the ids do not count
+        assertEquals(0, store.compare(8, 1.0, 0));
+        assertTrue(store.compare(3, 1.0, 2, 1.0) == 0);
+        assertTrue(stable.compare(3, 1.0, 2, 1.0) > 0);
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Block-compressed format of the runs. Every block of records becomes one
+ * frame with a header of its raw length and its payload length, so a frame
+ * is decoded without the frames before it. Inside a frame the key bits are
+ * mapped to unsigned integers ordered like the keys, and every record stores
+ * the varint of its key delta and the zigzag varint of its id delta. A block
+ * that does not shrink is stored raw, so a frame is never larger than its
+ * block plus the header.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.4.22
+ *
+ */
+public class RunCodec {
+    /** Bytes of the frame header **/
+    public static final int HEADER_SIZE = 8;
+    /** Most bytes one record can take inside a compressed payload **/
+    public static final int MAX_RECORD_BYTES = 20;
+
+    /**
+     * Get the size of a frame buffer holding any block of a block size
+     *
+     * @param blockSize
+     *            The bytes of a raw block
+     * @return The bytes a frame buffer needs
+     */
+    public static int frameCapacity(int blockSize) {
+        return HEADER_SIZE + blockSize + MAX_RECORD_BYTES;
+    }
+
+
+    /**
+     * Encode the remaining records of a raw block into a frame
+     *
+     * @param block
+     *            The raw records, consumed by the encoding
+     * @param frame
+     *            The frame buffer, flipped to hold the frame afterwards
+     */
+    public static void encode(ByteBuffer block, ByteBuffer frame) {
+        int rawLength = block.remaining();
+        int start = block.position();
+        frame.clear();
+        frame.position(HEADER_SIZE);
+        long previousKey = 0;
+        long previousId = 0;
+        while (block.hasRemaining()
+            && frame.position() - HEADER_SIZE < rawLength) {
+            long id = block.getLong();
+            long key = bits(block.getDouble());
+            putVarint(frame, key - previousKey);
+            putVarint(frame, (id - previousId) << 1 ^ (id - previousId) >> 63);
+            previousKey = key;
+            previousId = id;
+        }
+        int payloadLength = frame.position() - HEADER_SIZE;
+        if (block.hasRemaining() || payloadLength >= rawLength) {
+            // the block does not shrink, keep it raw
+            block.position(start);
+            frame.position(HEADER_SIZE);
+            frame.put(block);
+            payloadLength = rawLength;
+        }
+        frame.putInt(0, rawLength);
+        frame.putInt(4, payloadLength);
+        frame.flip();
+    }
+
+
+    /**
+     * Get the length of the frame at the position of a buffer
+     *
+     * @param frame
+     *            The buffer positioned at a frame header
+     * @return The bytes of the frame including its header
+     */
+    public static int frameLength(ByteBuffer frame) {
+        return HEADER_SIZE + frame.getInt(frame.position() + 4);
+    }
+
+
+    /**
+     * Decode the frame at the position of a buffer into the record store
+     *
+     * @param frame
+     *            The buffer positioned at a frame, positioned after it
+     *            afterwards
+     * @param records
+     *            The record store
+     * @param index
+     *            The index of the first decoded record
+     * @param capacity
+     *            The most records the store can take from the index
+     * @return The number of records decoded
+     * @throws IOException
+     *             Throws when the frame is corrupt or larger than the room
+     */
+    public static int decode(
+        ByteBuffer frame,
+        RecordStore records,
+        int index,
+        int capacity)
+        throws IOException {
+        int rawLength = frame.getInt();
+        int payloadLength = frame.getInt();
+        int recordNum = rawLength / FileReader.RECORD_SIZE;
+        if (rawLength % FileReader.RECORD_SIZE != 0 || recordNum > capacity
+            || payloadLength < 0 || payloadLength > frame.remaining()) {
+            throw new IOException("Corrupt run frame of " + rawLength
+                + " raw bytes in " + payloadLength + " bytes");
+        }
+        if (payloadLength == rawLength) {
+            for (int i = 0; i < recordNum; i++) {
+                records.read(index + i, frame);
+            }
+            return recordNum;
+        }
+        long key = 0;
+        long id = 0;
+        for (int i = 0; i < recordNum; i++) {
+            key += getVarint(frame);
+            long delta = getVarint(frame);
+            id += delta >>> 1 ^ -(delta & 1);
+            records.set(index + i, id, key(key));
+        }
+        return recordNum;
+    }
+
+
+    /**
+     * Map the raw bits of a key to an unsigned integer ordered like the key
+     *
+     * @param key
+     *            The key
+     * @return The unsigned bits
+     */
+    private static long bits(double key) {
+        long bits = Double.doubleToRawLongBits(key);
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+
+    /**
+     * Map unsigned bits back to the key
+     *
+     * @param bits
+     *            The unsigned bits
+     * @return The key with the same raw bits as encoded
+     */
+    private static double key(long bits) {
+        return Double.longBitsToDouble(bits < 0
+            ? bits ^ Long.MIN_VALUE
+            : ~bits);
+    }
+
+
+    /**
+     * Put an unsigned varint, seven bits per byte
+     *
+     * @param buffer
+     *            The buffer
+     * @param value
+     *            The unsigned value
+     */
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte)value);
+    }
+
+
+    /**
+     * Get an unsigned varint
+     *
+     * @param buffer
+     *            The buffer
+     * @return The unsigned value
+     * @throws IOException
+     *             Throws when the varint is longer than a long
+     */
+    private static long getVarint(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint in a run frame");
+    }
+}
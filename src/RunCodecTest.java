@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Test of the run codec
+ *
+ * @author Wenjun Han
+ * @version 5.4.22
+ */
+public class RunCodecTest extends TestCase {
+
+    private ByteBuffer frame;
+    private RecordStore records;
+
+    /**
+     * set up a frame buffer of 64 records
+     */
+    public void setUp() {
+        frame = ByteBuffer.allocate(RunCodec.frameCapacity(1024));
+        records = new RecordStore(64);
+    }
+
+
+    /**
+     * test close sorted keys shrink and decode to the same records
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCompress() throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 64; i++) {
+            block.putLong(1000 + i).putDouble(-32.0 + i);
+        }
+        block.flip();
+        RunCodec.encode(block, frame);
+        assertFalse(block.hasRemaining());
+        assertTrue(frame.remaining() < 1024 * 3 / 4);
+        assertEquals(frame.remaining(), RunCodec.frameLength(frame));
+        assertEquals(64, RunCodec.decode(frame, records, 0, 64));
+        assertFalse(frame.hasRemaining());
+        for (int i = 0; i < 64; i++) {
+            assertEquals(1000 + i, records.getId(i));
+            assertEquals(-32.0 + i, records.getKey(i), 0.0);
+        }
+    }
+
+
+    /**
+     * test random records are kept raw with the exact key bits
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testRaw() throws IOException {
+        Random random = new Random(3);
+        ByteBuffer block = ByteBuffer.allocate(48);
+        long nan = 0x7ff8000000000123L;
+        block.putLong(random.nextLong()).putDouble(Double.longBitsToDouble(
+            nan));
+        block.putLong(random.nextLong()).putDouble(-1e300);
+        block.putLong(random.nextLong()).putDouble(1e300);
+        block.flip();
+        RunCodec.encode(block, frame);
+        assertEquals(RunCodec.HEADER_SIZE + 48, frame.remaining());
+        assertEquals(3, RunCodec.decode(frame, records, 5, 3));
+        assertEquals(nan, Double.doubleToRawLongBits(records.getKey(5)));
+        assertEquals(1e300, records.getKey(7), 0.0);
+    }
+
+
+    /**
+     * test frames too large for the room or corrupt
+     */
+    public void testCorrupt() {
+        ByteBuffer block = ByteBuffer.allocate(64);
+        block.position(64);
+        block.flip();
+        RunCodec.encode(block, frame);
+        Exception thrown = null;
+        try {
+            RunCodec.decode(frame, records, 0, 3);
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        frame.clear();
+        frame.putInt(17).putInt(4).flip();
+        thrown = null;
+        try {
+            RunCodec.decode(frame, records, 0, 64);
+        }
+        catch (IOException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+}
@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Replacement selection over one region of the input. The generator owns a
+ * slice of the record store as its heap, reads its input blocks through a
+ * block reader and writes its runs through a block writer, so several
+ * generators over disjoint regions can run on different threads.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.27.22
+ *
+ */
+public class RunGenerator implements IoTask<RunIndex> {
+    private RecordStore records;
+    private int base;
+    private int capacity;
+    private int preloaded;
+    private BlockSource reader;
+    private BlockWriter writer;
+    private ByteBuffer outputBuffer;
+    private long limit;
+    private RecordCombiner combiner;
+    private KeySample sample;
+    private SortMetrics metrics;
+
+    /**
+     * Constructor of the run generator
+     *
+     * @param records
+     *            The record store holding the heap slice
+     * @param base
+     *            The index of the first heap record inside the store
+     * @param capacity
+     *            The number of records of the heap slice
+     * @param preloaded
+     *            The number of records already loaded into the slice from
+     *            the start of the region
+     * @param reader
+     *            The source of the region after the preloaded records
+     * @param writer
+     *            The writer of the runs, starting at the run file position of
+     *            the region
+     * @param outputBuffer
+     *            The output buffer of one block
+     */
+    public RunGenerator(
+        RecordStore records,
+        int base,
+        int capacity,
+        int preloaded,
+        BlockSource reader,
+        BlockWriter writer,
+        ByteBuffer outputBuffer) {
+        this.records = records;
+        this.base = base;
+        this.capacity = capacity;
+        this.preloaded = preloaded;
+        this.reader = reader;
+        this.writer = writer;
+        this.outputBuffer = outputBuffer;
+        limit = Long.MAX_VALUE;
+    }
+
+
+    /**
+     * Set the most records written by a run, the rest of a run is dropped
+     *
+     * @param newLimit
+     *            The most records of a run
+     */
+    public void setLimit(long newLimit) {
+        this.limit = newLimit;
+    }
+
+
+    /**
+     * Set the combiner folding records of equal keys inside a run
+     *
+     * @param newCombiner
+     *            The combiner, null to keep every record
+     */
+    public void setCombiner(RecordCombiner newCombiner) {
+        this.combiner = newCombiner;
+    }
+
+
+    /**
+     * Set the sample offered the keys of the runs while they are written
+     *
+     * @param newSample
+     *            The key sample, null to sample nothing
+     */
+    public void setSample(KeySample newSample) {
+        this.sample = newSample;
+    }
+
+
+    /**
+     * Set the metrics counting the key comparisons of the heap
+     *
+     * @param newMetrics
+     *            The sort metrics, null to count nothing
+     */
+    public void setMetrics(SortMetrics newMetrics) {
+        this.metrics = newMetrics;
+    }
+
+
+    /**
+     * Move the input through the heap, writing one run per heap turnover.
+     * Loads already in ascending order are written as natural runs instead.
+     *
+     * @return The runs written, in file order, with their key ranges
+     * @throws IOException
+     *             Throws if any wrong with I/O
+     */
+    @Override
+    public RunIndex call() throws IOException {
+        RunIndex run = new RunIndex();
+        ByteBuffer inputBuffer = reader.next();
+        RunOutput output = new RunOutput(writer, outputBuffer, combiner,
+            limit);
+        output.setSample(sample);
+        NaturalRunWriter natural = new NaturalRunWriter(records, reader,
+            writer, output);
+        int heapLength = preloaded;
+        boolean ascending = NaturalRunWriter.isAscending(records, base,
+            preloaded);
+        while (true) {
+            // fill the rest of the heap slice from the region
+            while (heapLength < capacity && (inputBuffer.hasRemaining()
+                || reader.hasNext())) {
+                if (!inputBuffer.hasRemaining()) {
+                    inputBuffer = reader.next();
+                    continue;
+                }
+                records.read(base + heapLength, inputBuffer);
+                ascending = ascending && (heapLength == 0 || records.compare(
+                    base + heapLength - 1, base + heapLength) <= 0);
+                heapLength++;
+            }
+            if (heapLength == 0 || !ascending) {
+                break;
+            }
+            // a presorted load skips the heap until the input descends
+            natural.write(run, base, heapLength, inputBuffer);
+            inputBuffer = natural.getInputBuffer();
+            heapLength = 0;
+        }
+        if (heapLength == 0) {
+            writer.flush();
+            return run;
+        }
+        RecordHeap minHeap = new RecordHeap(records, base, heapLength);
+
+        int endHeapRecord = 0;
+        long comparisons = 0;
+        long runStart = writer.getPosition();
+        while (minHeap.heapsize() > 0) {
+            // for each run
+            SortRunEvent event = new SortRunEvent();
+            event.begin();
+            while (minHeap.heapsize() > 0) {
+                // check if input buffer empty, read new input buffer
+                if (!inputBuffer.hasRemaining() && reader.hasNext()) {
+                    // the last block of the file may be partial
+                    inputBuffer = reader.next();
+                }
+                if (inputBuffer.hasRemaining()) {
+                    // read the data into the heap
+
+                    long newId = inputBuffer.getLong();
+                    double newKey = inputBuffer.getDouble();
+                    output.write(records, base);
+                    comparisons++;
+                    if (records.compare(newId, newKey, base) > 0) {
+                        // put the data into heap
+                        records.set(base, newId, newKey);
+                        minHeap.siftdown(0);
+                    }
+                    else {
+                        // put the data into back of the heap
+                        if (minHeap.heapsize() > 0) {
+                            int currentHeapSize = minHeap.heapsize();
+                            minHeap.setHeapsize(--currentHeapSize);
+                            records.copy(base + currentHeapSize, base);
+                            records.set(base + currentHeapSize, newId,
+                                newKey);
+                            minHeap.siftdown(0);
+                        }
+                        endHeapRecord++;
+                    }
+                }
+                else {
+                    output.write(records, minHeap.removemin());
+                }
+
+            }
+            // re-construct the min heap
+            if (endHeapRecord > 0) {
+                for (int i = heapLength - endHeapRecord, j =
+                    0; i < heapLength; i++, j++) {
+                    records.copy(base + i, base + j);
+                }
+                minHeap.setHeapsize(endHeapRecord);
+                minHeap.buildheap();
+            }
+            // record a new run, a compressed run is shorter than its records
+            long recordNum = output.getCount();
+            output.endRun();
+            run.add(runStart, writer.getPosition() - runStart, output
+                .getFirstKey(), output.getLastKey());
+            event.record(run, recordNum);
+            runStart = writer.getPosition();
+            endHeapRecord = 0;
+        }
+        writer.flush();
+        if (metrics != null) {
+            metrics.addComparisons(comparisons + minHeap.getComparisons());
+        }
+        return run;
+    }
+}
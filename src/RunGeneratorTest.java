@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the run generator
+ *
+ * @author Wenjun Han
+ * @version 4.27.22
+ */
+public class RunGeneratorTest extends TestCase {
+
+    private RandomAccessFile input;
+    private RandomAccessFile runFile;
+
+    /**
+     * set up an input of 8 records
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("generatorTest.bin"));
+        Files.deleteIfExists(Paths.get("generatorRun.bin"));
+        input = new RandomAccessFile("generatorTest.bin", "rw");
+        runFile = new RandomAccessFile("generatorRun.bin", "rw");
+        double[] keys = { 5, 3, 9, 1, 7, 2, 8, 6 };
+        for (int i = 0; i < keys.length; i++) {
+            input.writeLong(i);
+            input.writeDouble(keys[i]);
+        }
+    }
+
+
+    /**
+     * test a heap of 2 records placed at the end of the store
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testGenerateRuns() throws IOException {
+        RecordStore store = new RecordStore(4);
+        BlockReader reader = new BlockReader(new StreamBlockFile(input), 0,
+            128, 32, false);
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(runFile), 16,
+            32, false);
+        RunGenerator generator = new RunGenerator(store, 2, 2, 0, reader,
+            writer, ByteBuffer.allocate(32));
+        RunIndex runs = generator.call();
+        // runs of 3 5 9 | 1 2 7 8 | 6
+        assertEquals(3, runs.size());
+        assertEquals(16, runs.getStart(0));
+        assertEquals(48, runs.getLength(0));
+        assertEquals(3.0, runs.getMinKey(0), 0.0);
+        assertEquals(9.0, runs.getMaxKey(0), 0.0);
+        assertEquals(64, runs.getStart(1));
+        assertEquals(64, runs.getLength(1));
+        assertEquals(1.0, runs.getMinKey(1), 0.0);
+        assertEquals(8.0, runs.getMaxKey(1), 0.0);
+        assertEquals(16, runs.getLength(2));
+        assertEquals(6.0, runs.getMinKey(2), 0.0);
+        assertEquals(6.0, runs.getMaxKey(2), 0.0);
+        assertEquals(144, runFile.length());
+        runFile.seek(64);
+        assertEquals(3, runFile.readLong());
+        assertEquals(1.0, runFile.readDouble(), 0.0);
+        input.close();
+        runFile.close();
+        Files.deleteIfExists(Paths.get("generatorTest.bin"));
+        Files.deleteIfExists(Paths.get("generatorRun.bin"));
+    }
+
+
+    /**
+     * test ascending loads are written as natural runs
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testNaturalRuns() throws IOException {
+        input.setLength(0);
+        double[] keys = { 1, 2, 3, 4, 5, 0, 6, 7 };
+        for (int i = 0; i < keys.length; i++) {
+            input.writeLong(i);
+            input.writeDouble(keys[i]);
+        }
+        RecordStore store = new RecordStore(4);
+        BlockReader reader = new BlockReader(new StreamBlockFile(input), 0,
+            128, 32, false);
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(runFile), 16,
+            32, false);
+        RunGenerator generator = new RunGenerator(store, 2, 2, 0, reader,
+            writer, ByteBuffer.allocate(32));
+        RunIndex runs = generator.call();
+        // runs of 1 2 3 4 5 | 0 6 7, the descent ends the first one
+        assertEquals(2, runs.size());
+        assertEquals(16, runs.getStart(0));
+        assertEquals(80, runs.getLength(0));
+        assertEquals(5.0, runs.getMaxKey(0), 0.0);
+        assertEquals(96, runs.getStart(1));
+        assertEquals(48, runs.getLength(1));
+        assertEquals(0.0, runs.getMinKey(1), 0.0);
+        assertEquals(7.0, runs.getMaxKey(1), 0.0);
+        runFile.seek(80);
+        assertEquals(4, runFile.readLong());
+        assertEquals(5.0, runFile.readDouble(), 0.0);
+        assertEquals(5, runFile.readLong());
+        input.close();
+        runFile.close();
+        Files.deleteIfExists(Paths.get("generatorTest.bin"));
+        Files.deleteIfExists(Paths.get("generatorRun.bin"));
+    }
+}
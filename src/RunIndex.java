@@ -0,0 +1,225 @@
+import java.util.Arrays;
+
+/**
+ * Index of the runs of a run file, keeping the start, the length and the
+ * smallest and largest key of every run in parallel primitive arrays so any
+ * run is reached in constant time. Unknown key bounds cover the whole order
+ * of Double.compare, from negative infinity to NaN.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.9.22
+ *
+ */
+public class RunIndex {
+    private long[] starts;
+    private long[] lengths;
+    private double[] minKeys;
+    private double[] maxKeys;
+    private int size;
+
+    /**
+     * Constructor of an empty run index
+     */
+    public RunIndex() {
+        this(16);
+    }
+
+
+    /**
+     * Constructor of an empty run index
+     *
+     * @param capacity
+     *            The number of runs held before growing
+     */
+    public RunIndex(int capacity) {
+        int initial = Math.max(1, capacity);
+        starts = new long[initial];
+        lengths = new long[initial];
+        minKeys = new double[initial];
+        maxKeys = new double[initial];
+    }
+
+
+    /**
+     * Get the number of runs
+     *
+     * @return The number of runs
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Add a run with unknown key bounds
+     *
+     * @param start
+     *            The position of the run
+     * @param length
+     *            The bytes of the run
+     */
+    public void add(long start, long length) {
+        add(start, length, Double.NEGATIVE_INFINITY, Double.NaN);
+    }
+
+
+    /**
+     * Add a run
+     *
+     * @param start
+     *            The position of the run
+     * @param length
+     *            The bytes of the run
+     * @param minKey
+     *            The smallest key of the run
+     * @param maxKey
+     *            The largest key of the run
+     */
+    public void add(long start, long length, double minKey, double maxKey) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            minKeys = Arrays.copyOf(minKeys, capacity);
+            maxKeys = Arrays.copyOf(maxKeys, capacity);
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        minKeys[size] = minKey;
+        maxKeys[size] = maxKey;
+        size++;
+    }
+
+
+    /**
+     * Add a copy of a run of another index
+     *
+     * @param other
+     *            The other index
+     * @param run
+     *            The run of the other index
+     */
+    public void add(RunIndex other, int run) {
+        add(other.starts[run], other.lengths[run], other.minKeys[run],
+            other.maxKeys[run]);
+    }
+
+
+    /**
+     * Add copies of all the runs of another index
+     *
+     * @param other
+     *            The other index
+     */
+    public void addAll(RunIndex other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other, i);
+        }
+    }
+
+
+    /**
+     * Get the position of a run
+     *
+     * @param run
+     *            The run
+     * @return The start of the run
+     */
+    public long getStart(int run) {
+        return starts[run];
+    }
+
+
+    /**
+     * Get the position after a run
+     *
+     * @param run
+     *            The run
+     * @return The end of the run
+     */
+    public long getEnd(int run) {
+        return starts[run] + lengths[run];
+    }
+
+
+    /**
+     * Get the bytes of a run
+     *
+     * @param run
+     *            The run
+     * @return The length of the run
+     */
+    public long getLength(int run) {
+        return lengths[run];
+    }
+
+
+    /**
+     * Get the smallest key of a run
+     *
+     * @param run
+     *            The run
+     * @return The smallest key, negative infinity if unknown
+     */
+    public double getMinKey(int run) {
+        return minKeys[run];
+    }
+
+
+    /**
+     * Get the largest key of a run
+     *
+     * @param run
+     *            The run
+     * @return The largest key, NaN if unknown
+     */
+    public double getMaxKey(int run) {
+        return maxKeys[run];
+    }
+
+
+    /**
+     * Get the bytes of all the runs
+     *
+     * @return The total length
+     */
+    public long totalLength() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += lengths[i];
+        }
+        return total;
+    }
+
+
+    /**
+     * Move the start of a run after the bytes consumed from it
+     *
+     * @param run
+     *            The run
+     * @param bytes
+     *            The bytes consumed from the start of the run
+     */
+    public void consume(int run, long bytes) {
+        starts[run] += bytes;
+        lengths[run] -= bytes;
+    }
+
+
+    /**
+     * Get a copy of some consecutive runs
+     *
+     * @param from
+     *            The first run
+     * @param to
+     *            The run after the last one
+     * @return A new index of the runs
+     */
+    public RunIndex slice(int from, int to) {
+        RunIndex slice = new RunIndex(to - from);
+        for (int i = from; i < to; i++) {
+            slice.add(this, i);
+        }
+        return slice;
+    }
+}
@@ -0,0 +1,69 @@
+import student.TestCase;
+
+/**
+ * Test of the run index
+ *
+ * @author Wenjun Han
+ * @version 5.9.22
+ */
+public class RunIndexTest extends TestCase {
+
+    private RunIndex runs;
+
+    /**
+     * set up an index of 3 runs growing past its capacity
+     */
+    public void setUp() {
+        runs = new RunIndex(1);
+        runs.add(0, 64, 1, 9);
+        runs.add(64, 48);
+        runs.add(112, 32, -2, 5);
+    }
+
+
+    /**
+     * test the getters of the runs
+     */
+    public void testGetter() {
+        assertEquals(3, runs.size());
+        assertEquals(64, runs.getStart(1));
+        assertEquals(112, runs.getEnd(1));
+        assertEquals(32, runs.getLength(2));
+        assertEquals(1.0, runs.getMinKey(0), 0.0);
+        assertEquals(9.0, runs.getMaxKey(0), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, runs.getMinKey(1), 0.0);
+        assertTrue(Double.isNaN(runs.getMaxKey(1)));
+        assertEquals(144, runs.totalLength());
+    }
+
+
+    /**
+     * test consuming a run moves its start
+     */
+    public void testConsume() {
+        runs.consume(0, 16);
+        assertEquals(16, runs.getStart(0));
+        assertEquals(48, runs.getLength(0));
+        assertEquals(64, runs.getEnd(0));
+        assertEquals(128, runs.totalLength());
+    }
+
+
+    /**
+     * test slices and copies are independent of the index
+     */
+    public void testSlice() {
+        RunIndex slice = runs.slice(1, 3);
+        assertEquals(2, slice.size());
+        assertEquals(64, slice.getStart(0));
+        assertEquals(-2.0, slice.getMinKey(1), 0.0);
+        slice.consume(0, 48);
+        assertEquals(48, runs.getLength(1));
+        RunIndex copy = new RunIndex();
+        copy.addAll(runs);
+        copy.add(slice, 1);
+        assertEquals(4, copy.size());
+        assertEquals(112, copy.getStart(3));
+        assertEquals(5.0, copy.getMaxKey(3), 0.0);
+    }
+}
@@ -0,0 +1,412 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The manifest of a run file, persisted after every phase of a sort so a
+ * restarted sort can continue from the last completed phase. It holds the
+ * settings the runs were written with, the number of generated runs and
+ * the index of every run written so far: the generated runs followed by
+ * the merged run of every completed merge step. The merge plan only
+ * depends on the generated run lengths and the fan-in, so the number of
+ * completed steps is enough to pick up the plan again. The input is told
+ * apart by its canonical path and a checksum of its first and last blocks,
+ * only the path once the last pass started writing over it.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.10.22
+ *
+ */
+public class RunManifest {
+
+    /** The manifest next to the run file of the controller **/
+    public static final Path DEFAULT_PATH = Paths.get("runFile.manifest");
+    /** Mark of the start of a manifest **/
+    public static final int MAGIC = 0x52554e4d;
+    /** Version of the manifest layout **/
+    public static final int VERSION = 5;
+
+    private long inputLength;
+    private int blockSize;
+    private int fanIn;
+    private boolean compress;
+    private long limit;
+    private boolean combined;
+    private boolean stable;
+    private int runNum;
+    private long runFileLength;
+    private RunIndex runs;
+    private String inputPath;
+    private long inputChecksum;
+    private boolean outputStarted;
+
+    /**
+     * Constructor of the run manifest
+     *
+     * @param inputLength
+     *            The bytes of the input file
+     * @param blockSize
+     *            The block size the runs were written with
+     * @param fanIn
+     *            The fan-in the merge steps are planned with
+     * @param compress
+     *            True if the runs are compressed frames
+     * @param limit
+     *            The most records of every run
+     * @param combined
+     *            True if the records of equal keys are combined, the
+     *            combiner itself is expected to stay the same
+     * @param stable
+     *            True if the records of equal keys are ordered by their ids
+     * @param runNum
+     *            The number of runs written by the run generation
+     * @param runFileLength
+     *            The bytes of the run file holding every run
+     * @param runs
+     *            The generated runs followed by the merged run of every
+     *            completed merge step
+     */
+    public RunManifest(
+        long inputLength,
+        int blockSize,
+        int fanIn,
+        boolean compress,
+        long limit,
+        boolean combined,
+        boolean stable,
+        int runNum,
+        long runFileLength,
+        RunIndex runs) {
+        this.inputLength = inputLength;
+        this.blockSize = blockSize;
+        this.fanIn = fanIn;
+        this.compress = compress;
+        this.limit = limit;
+        this.combined = combined;
+        this.stable = stable;
+        this.runNum = runNum;
+        this.runFileLength = runFileLength;
+        this.runs = runs;
+        inputPath = "";
+    }
+
+
+    /**
+     * Set the identity of the input the runs were generated from
+     *
+     * @param newInputPath
+     *            The canonical path of the input, empty when not known
+     * @param newInputChecksum
+     *            The checksum of the input before it was written to
+     * @param newOutputStarted
+     *            True once the last pass started writing over the input
+     */
+    public void setInput(
+        String newInputPath,
+        long newInputChecksum,
+        boolean newOutputStarted) {
+        this.inputPath = newInputPath;
+        this.inputChecksum = newInputChecksum;
+        this.outputStarted = newOutputStarted;
+    }
+
+
+    /**
+     * Get the checksum of the input before it was written to
+     *
+     * @return The input checksum
+     */
+    public long getInputChecksum() {
+        return inputChecksum;
+    }
+
+
+    /**
+     * Check if the last pass started writing over the input
+     *
+     * @return True if the input no longer holds its checksum
+     */
+    public boolean isOutputStarted() {
+        return outputStarted;
+    }
+
+
+    /**
+     * Get the bytes of the input file
+     *
+     * @return The input length
+     */
+    public long getInputLength() {
+        return inputLength;
+    }
+
+
+    /**
+     * Get the number of runs written by the run generation
+     *
+     * @return The number of generated runs
+     */
+    public int getRunNum() {
+        return runNum;
+    }
+
+
+    /**
+     * Get the number of merge steps completed
+     *
+     * @return The number of completed steps
+     */
+    public int getCompletedSteps() {
+        return runs.size() - runNum;
+    }
+
+
+    /**
+     * Get the bytes of the run file holding every run
+     *
+     * @return The run file length
+     */
+    public long getRunFileLength() {
+        return runFileLength;
+    }
+
+
+    /**
+     * Get the index of the runs
+     *
+     * @return The generated runs followed by the merged runs
+     */
+    public RunIndex getRuns() {
+        return runs;
+    }
+
+
+    /**
+     * Check if the manifest was written by a sort of the same input with
+     * the same settings
+     *
+     * @param newInputLength
+     *            The bytes of the input file
+     * @param newBlockSize
+     *            The block size of the sort
+     * @param newFanIn
+     *            The merge fan-in of the sort
+     * @param newCompress
+     *            True if the sort compresses its runs
+     * @param newLimit
+     *            The most records kept by the sort
+     * @param newCombined
+     *            True if the sort combines the records of equal keys
+     * @param newStable
+     *            True if the sort orders the records of equal keys by id
+     * @return True if the runs can be merged by the sort
+     */
+    public boolean matches(
+        long newInputLength,
+        int newBlockSize,
+        int newFanIn,
+        boolean newCompress,
+        long newLimit,
+        boolean newCombined,
+        boolean newStable) {
+        return inputLength == newInputLength && blockSize == newBlockSize
+            && fanIn == newFanIn && compress == newCompress
+            && limit == newLimit && combined == newCombined
+            && stable == newStable;
+    }
+
+
+    /**
+     * Check if the manifest was written by a sort of the same input. The
+     * checksum is only skipped when the last pass of a sort of the same
+     * known path started writing over the input.
+     *
+     * @param newInputPath
+     *            The canonical path of the input, empty when not known
+     * @param newInputChecksum
+     *            The checksum of the input as it is now
+     * @return True if the runs hold the records of the input
+     */
+    public boolean sameInput(String newInputPath, long newInputChecksum) {
+        return inputPath.equals(newInputPath) && (inputChecksum
+            == newInputChecksum || (outputStarted && !inputPath.isEmpty()));
+    }
+
+
+    /**
+     * Compute the checksum of the first and the last block of an input
+     *
+     * @param input
+     *            The input file
+     * @param blockSize
+     *            The bytes of a block
+     * @return The CRC32 of the two blocks
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public static long checksum(BlockFile input, int blockSize)
+        throws IOException {
+        CRC32 crc = new CRC32();
+        long length = input.length();
+        int blockLength = (int)Math.min(blockSize, length);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[blockLength]);
+        crc.update(input.read(0, blockLength, buffer));
+        crc.update(input.read(length - blockLength, blockLength, buffer));
+        return crc.getValue();
+    }
+
+
+    /**
+     * Write the manifest, replacing the old one only once the new one is
+     * complete
+     *
+     * @param path
+     *            The path of the manifest
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void write(Path path) throws IOException {
+        Path temp = Paths.get(path.toString() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            write(file);
+            file.getFD().sync();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Write the manifest to a stream
+     *
+     * @param stream
+     *            The stream, left open
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void write(OutputStream stream) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+            new BufferedOutputStream(stream), crc));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(inputLength);
+        out.writeInt(blockSize);
+        out.writeInt(fanIn);
+        out.writeBoolean(compress);
+        out.writeLong(limit);
+        out.writeBoolean(combined);
+        out.writeBoolean(stable);
+        out.writeInt(runNum);
+        out.writeLong(runFileLength);
+        out.writeUTF(inputPath);
+        out.writeLong(inputChecksum);
+        out.writeBoolean(outputStarted);
+        out.writeInt(runs.size());
+        for (int i = 0; i < runs.size(); i++) {
+            out.writeLong(runs.getStart(i));
+            out.writeLong(runs.getLength(i));
+            out.writeDouble(runs.getMinKey(i));
+            out.writeDouble(runs.getMaxKey(i));
+        }
+        // the checksum is not part of itself
+        out.flush();
+        new DataOutputStream(stream).writeLong(crc.getValue());
+        stream.flush();
+    }
+
+
+    /**
+     * Read a manifest
+     *
+     * @param path
+     *            The path of the manifest
+     * @return The manifest, null if there is none or it is damaged
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public static RunManifest read(Path path) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files
+            .newInputStream(path))) {
+            return read(file);
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Read a manifest from a stream
+     *
+     * @param stream
+     *            The stream, left open
+     * @return The manifest, null if the stream ends before it or it is
+     *         damaged
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public static RunManifest read(InputStream stream) throws IOException {
+        CRC32 crc = new CRC32();
+        try {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(
+                stream, crc));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long inputLength = in.readLong();
+            int blockSize = in.readInt();
+            int fanIn = in.readInt();
+            boolean compress = in.readBoolean();
+            long limit = in.readLong();
+            boolean combined = in.readBoolean();
+            boolean stable = in.readBoolean();
+            int runNum = in.readInt();
+            long runFileLength = in.readLong();
+            String inputPath = in.readUTF();
+            long inputChecksum = in.readLong();
+            boolean outputStarted = in.readBoolean();
+            int size = in.readInt();
+            if (runNum < 0 || size < runNum) {
+                return null;
+            }
+            RunIndex runs = new RunIndex();
+            for (int i = 0; i < size; i++) {
+                long start = in.readLong();
+                long length = in.readLong();
+                runs.add(start, length, in.readDouble(), in.readDouble());
+                if (start < 0 || length < 0 || start
+                    + length > runFileLength) {
+                    return null;
+                }
+            }
+            long checksum = crc.getValue();
+            if (new DataInputStream(stream).readLong() != checksum) {
+                return null;
+            }
+            RunManifest manifest = new RunManifest(inputLength, blockSize,
+                fanIn, compress, limit, combined, stable, runNum,
+                runFileLength, runs);
+            manifest.setInput(inputPath, inputChecksum, outputStarted);
+            return manifest;
+        }
+        catch (EOFException e) {
+            return null;
+        }
+    }
+}
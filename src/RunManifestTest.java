@@ -0,0 +1,153 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the run manifest
+ *
+ * @author Wenjun Han
+ * @version 5.10.22
+ */
+public class RunManifestTest extends TestCase {
+
+    private Path path;
+    private RunManifest manifest;
+
+    /**
+     * set up a manifest of 3 generated runs and one merged run
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        path = Paths.get("manifestTest.manifest");
+        Files.deleteIfExists(path);
+        RunIndex runs = new RunIndex();
+        runs.add(0, 64, 1, 9);
+        runs.add(64, 48, 2, 8);
+        runs.add(112, 32);
+        runs.add(144, 80, 2, 9);
+        manifest = new RunManifest(144, 8192, 2, true, Long.MAX_VALUE,
+            false, true, 3, 224, runs);
+    }
+
+
+    /**
+     * test the manifest reads back as written
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testReadWrite() throws IOException {
+        assertNull(RunManifest.read(path));
+        manifest.write(path);
+        RunManifest read = RunManifest.read(path);
+        assertNotNull(read);
+        assertEquals(144, read.getInputLength());
+        assertEquals(3, read.getRunNum());
+        assertEquals(1, read.getCompletedSteps());
+        assertEquals(224, read.getRunFileLength());
+        assertEquals(4, read.getRuns().size());
+        assertEquals(112, read.getRuns().getStart(2));
+        assertEquals(Double.NEGATIVE_INFINITY, read.getRuns().getMinKey(2),
+            0.0);
+        assertEquals(9.0, read.getRuns().getMaxKey(3), 0.0);
+        long all = Long.MAX_VALUE;
+        assertTrue(read.matches(144, 8192, 2, true, all, false, true));
+        assertFalse(read.matches(160, 8192, 2, true, all, false, true));
+        assertFalse(read.matches(144, 8192, 4, true, all, false, true));
+        assertFalse(read.matches(144, 8192, 2, false, all, false, true));
+        assertFalse(read.matches(144, 8192, 2, true, 100, false, true));
+        assertFalse(read.matches(144, 8192, 2, true, all, true, true));
+        assertFalse(read.matches(144, 8192, 2, true, all, false, false));
+        Files.deleteIfExists(path);
+    }
+
+
+    /**
+     * test a damaged or cut manifest is not used
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testDamaged() throws IOException {
+        manifest.write(path);
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        file.seek(40);
+        int flipped = file.readByte() ^ 1;
+        file.seek(40);
+        file.writeByte(flipped);
+        assertNull(RunManifest.read(path));
+        file.setLength(20);
+        assertNull(RunManifest.read(path));
+        file.close();
+        Files.deleteIfExists(path);
+    }
+
+
+    /**
+     * test the manifest passes through a stream, as it does between the
+     * sort workers
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testStream() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        manifest.write(stream);
+        byte[] bytes = stream.toByteArray();
+        RunManifest read = RunManifest.read(new ByteArrayInputStream(bytes));
+        assertNotNull(read);
+        assertEquals(4, read.getRuns().size());
+        assertEquals(224, read.getRunFileLength());
+        assertNull(RunManifest.read(new ByteArrayInputStream(new byte[0])));
+        assertNull(RunManifest.read(new ByteArrayInputStream(bytes, 0,
+            bytes.length - 1)));
+    }
+
+
+    /**
+     * test the input is told apart by its path and checksum, only by its
+     * path once the last pass writes over it
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testInput() throws IOException {
+        manifest.setInput("/data/a.bin", 42, false);
+        manifest.write(path);
+        RunManifest read = RunManifest.read(path);
+        assertEquals(42, read.getInputChecksum());
+        assertFalse(read.isOutputStarted());
+        assertTrue(read.sameInput("/data/a.bin", 42));
+        assertFalse(read.sameInput("/data/a.bin", 43));
+        assertFalse(read.sameInput("/data/b.bin", 42));
+        read.setInput("/data/a.bin", 42, true);
+        assertTrue(read.sameInput("/data/a.bin", 43));
+        assertFalse(read.sameInput("/data/b.bin", 42));
+        // without a path the checksum always counts
+        read.setInput("", 42, true);
+        assertFalse(read.sameInput("", 43));
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(Paths.get("manifestTest.bin"));
+        RandomAccessFile file = new RandomAccessFile("manifestTest.bin",
+            "rw");
+        file.write(new byte[100]);
+        BlockFile blocks = new StreamBlockFile(file);
+        long checksum = RunManifest.checksum(blocks, 32);
+        file.seek(50);
+        file.write(1);
+        // the middle of the input is not part of the checksum
+        assertEquals(checksum, RunManifest.checksum(blocks, 32));
+        file.seek(99);
+        file.write(1);
+        assertFalse(checksum == RunManifest.checksum(blocks, 32));
+        file.close();
+        Files.deleteIfExists(Paths.get("manifestTest.bin"));
+    }
+}
@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Merge of a group of sorted runs into one sorted run. Every run gets one
+ * block of a slice of the record store, the loser tree picks the smallest
+ * head record among the blocks, and a block is read again from the run file
+ * once all of its records have been written. Compressed runs are read one
+ * frame at a time.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.29.22
+ *
+ */
+public class RunMerger implements IoTask<Long> {
+    private RecordStore records;
+    private int base;
+    private int blockRecordNum;
+    private BlockFile runFile;
+    private RunIndex runs;
+    private BlockWriter writer;
+    private ByteBuffer outputBuffer;
+    private ByteBuffer readBuffer;
+    private boolean compressed;
+    private int[] frameLengths;
+    private long limit;
+    private RecordCombiner combiner;
+    private RunOutput output;
+    private SortMetrics metrics;
+
+    /**
+     * Constructor of the run merger
+     *
+     * @param records
+     *            The record store holding the merge blocks
+     * @param base
+     *            The index of the first merge block inside the store
+     * @param blockRecordNum
+     *            The number of records of each merge block
+     * @param runFile
+     *            The file holding the runs
+     * @param runs
+     *            The runs to merge, consumed while merging
+     * @param writer
+     *            The writer of the merged run
+     * @param outputBuffer
+     *            The output buffer of one block
+     */
+    public RunMerger(
+        RecordStore records,
+        int base,
+        int blockRecordNum,
+        BlockFile runFile,
+        RunIndex runs,
+        BlockWriter writer,
+        ByteBuffer outputBuffer) {
+        this(records, base, blockRecordNum, runFile, runs, writer,
+            outputBuffer, false);
+    }
+
+
+    /**
+     * Constructor of the run merger
+     *
+     * @param records
+     *            The record store holding the merge blocks
+     * @param base
+     *            The index of the first merge block inside the store
+     * @param blockRecordNum
+     *            The number of records of each merge block, at least the
+     *            records of a frame when compressed
+     * @param runFile
+     *            The file holding the runs
+     * @param runs
+     *            The runs to merge, consumed while merging
+     * @param writer
+     *            The writer of the merged run
+     * @param outputBuffer
+     *            The output buffer of one block
+     * @param compressed
+     *            True if the runs are written as compressed frames
+     */
+    public RunMerger(
+        RecordStore records,
+        int base,
+        int blockRecordNum,
+        BlockFile runFile,
+        RunIndex runs,
+        BlockWriter writer,
+        ByteBuffer outputBuffer,
+        boolean compressed) {
+        this.records = records;
+        this.base = base;
+        this.blockRecordNum = blockRecordNum;
+        this.runFile = runFile;
+        this.runs = runs;
+        this.writer = writer;
+        this.outputBuffer = outputBuffer;
+        this.compressed = compressed;
+        int blockSize = blockRecordNum * FileReader.RECORD_SIZE;
+        // a frame is read with the header of the next one
+        readBuffer = ByteBuffer.wrap(new byte[compressed
+            ? RunCodec.frameCapacity(blockSize) + RunCodec.HEADER_SIZE
+            : blockSize]);
+        limit = Long.MAX_VALUE;
+    }
+
+
+    /**
+     * Set the most records of the merged run, the merge stops once they are
+     * written
+     *
+     * @param newLimit
+     *            The most records of the merged run
+     */
+    public void setLimit(long newLimit) {
+        this.limit = newLimit;
+    }
+
+
+    /**
+     * Set the combiner folding records of equal keys into the merged run
+     *
+     * @param newCombiner
+     *            The combiner, null to keep every record
+     */
+    public void setCombiner(RecordCombiner newCombiner) {
+        this.combiner = newCombiner;
+    }
+
+
+    /**
+     * Set the output the merged run is written through, such as the shards
+     * of the last pass, instead of the writer. Its limit and combiner are
+     * used instead of the ones of the merger.
+     *
+     * @param newOutput
+     *            The output of the merged run
+     */
+    public void setOutput(RunOutput newOutput) {
+        this.output = newOutput;
+    }
+
+
+    /**
+     * Set the metrics counting the bytes read, the time waited for them and
+     * the key comparisons
+     *
+     * @param newMetrics
+     *            The sort metrics, null to count nothing
+     */
+    public void setMetrics(SortMetrics newMetrics) {
+        this.metrics = newMetrics;
+    }
+
+
+    /**
+     * Merge the runs
+     *
+     * @return The number of record bytes merged
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public Long call() throws IOException {
+        int runNum = runs.size();
+        // record the block index
+        int[] recordEndIndex = new int[runNum];
+        boolean[] runReadFinish = new boolean[runNum];
+        int[] runRecord = new int[runNum];
+        frameLengths = new int[runNum];
+        for (int i = 0; i < runNum; i++) {
+            runRecord[i] = base + blockRecordNum * i;
+            if (!readSingleBlock(recordEndIndex, i)) {
+                runReadFinish[i] = true;
+            }
+        }
+        LoserTree loserTree = new LoserTree(records, runRecord,
+            runReadFinish, runNum);
+        RunOutput out = output != null
+            ? output
+            : new RunOutput(writer, outputBuffer, combiner, limit);
+        long runLength = 0;
+        // while not all the runs are completed
+        while (!loserTree.isEmpty()) {
+            // the tree winner holds the minimum head record
+            int minRecordRunNum = loserTree.winner();
+            if (out.isFull() && !out.folds(records.getKey(
+                runRecord[minRecordRunNum]))) {
+                break;
+            }
+            runLength += FileReader.RECORD_SIZE;
+            // output the min record to buffer
+            out.write(records, runRecord[minRecordRunNum]);
+
+            // when finish the comparison of the block
+            if (runRecord[minRecordRunNum] == recordEndIndex[minRecordRunNum]) {
+                // read next block if data still available
+                if (readSingleBlock(recordEndIndex, minRecordRunNum)) {
+                    runRecord[minRecordRunNum] = base + minRecordRunNum
+                        * blockRecordNum;
+                }
+                else {
+                    runReadFinish[minRecordRunNum] = true;
+                }
+            }
+            else {
+                runRecord[minRecordRunNum]++;
+            }
+            // replay the matches of the run with its new head
+            loserTree.replay(minRecordRunNum);
+        }
+        // output rest of the data from buffer to file
+        out.endRun();
+        outputBuffer = out.getBuffer();
+        if (metrics != null) {
+            metrics.addComparisons(loserTree.getComparisons());
+        }
+        return runLength;
+    }
+
+
+    /**
+     * Get the output buffer to keep filling after the merge, the buffer
+     * given to the constructor may be held by the writer
+     *
+     * @return The empty output buffer
+     */
+    public ByteBuffer getOutputBuffer() {
+        return outputBuffer;
+    }
+
+
+    /**
+     * Read the next block of a run into its merge block. A compressed run
+     * reads exactly its next frame together with the header of the one
+     * after it, so the following read knows its length.
+     *
+     * @param recordEndIndex
+     *            The end index of the merge blocks
+     * @param runIdx
+     *            The run index
+     * @return True if a block was read, false if the run is finished
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private boolean readSingleBlock(int[] recordEndIndex, int runIdx)
+        throws IOException {
+        long remaining = runs.getLength(runIdx);
+        if (remaining == 0) {
+            return false;
+        }
+        // read in by block and load the records to the record memory
+        BlockReadEvent event = new BlockReadEvent();
+        event.begin();
+        long begin = metrics == null ? 0 : System.nanoTime();
+        long bytesRead = 0;
+        int readLength = (int)Math.min(readBuffer.capacity(), remaining);
+        if (compressed) {
+            if (frameLengths[runIdx] == 0) {
+                // only the header of the first frame of a run is known
+                frameLengths[runIdx] = RunCodec.frameLength(runFile.read(runs
+                    .getStart(runIdx), RunCodec.HEADER_SIZE, readBuffer));
+                bytesRead += RunCodec.HEADER_SIZE;
+            }
+            readLength = (int)Math.min(frameLengths[runIdx]
+                + RunCodec.HEADER_SIZE, remaining);
+        }
+        ByteBuffer block = runFile.read(runs.getStart(runIdx), readLength,
+            readBuffer);
+        bytesRead += readLength;
+        if (metrics != null) {
+            metrics.addStall(System.nanoTime() - begin);
+        }
+        int first = base + runIdx * blockRecordNum;
+        int last = first + readLength / FileReader.RECORD_SIZE;
+        int blockLength = readLength;
+        if (compressed) {
+            // only the frame is consumed, the header after it is kept
+            blockLength = frameLengths[runIdx];
+            int frameStart = block.position();
+            last = first + RunCodec.decode(block, records, first,
+                blockRecordNum);
+            block.position(frameStart + blockLength);
+            frameLengths[runIdx] = readLength > blockLength
+                ? RunCodec.frameLength(block)
+                : 0;
+        }
+        else {
+            for (int j = first; j < last; j++) {
+                records.read(j, block);
+            }
+        }
+        recordEndIndex[runIdx] = last - 1;
+        if (metrics != null) {
+            metrics.addRead(bytesRead);
+        }
+        event.record(runIdx, runs.getStart(runIdx), bytesRead);
+        // modify run information
+        runs.consume(runIdx, blockLength);
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the run merger
+ *
+ * @author Wenjun Han
+ * @version 4.29.22
+ */
+public class RunMergerTest extends TestCase {
+
+    private RandomAccessFile runFile;
+    private RandomAccessFile output;
+
+    /**
+     * set up a run file of three sorted runs
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("mergerRun.bin"));
+        Files.deleteIfExists(Paths.get("mergerOut.bin"));
+        runFile = new RandomAccessFile("mergerRun.bin", "rw");
+        output = new RandomAccessFile("mergerOut.bin", "rw");
+        double[] keys = { 1, 4, 7, 9, 2, 3, 8, 0, 5, 6 };
+        for (int i = 0; i < keys.length; i++) {
+            runFile.writeLong(i);
+            runFile.writeDouble(keys[i]);
+        }
+    }
+
+
+    /**
+     * test merging runs with blocks of 2 records
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testMerge() throws IOException {
+        RunIndex runs = new RunIndex();
+        runs.add(0, 64);
+        runs.add(64, 48);
+        runs.add(112, 48);
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(output), 16,
+            48, false);
+        RunMerger merger = new RunMerger(new RecordStore(8), 2, 2,
+            new StreamBlockFile(runFile), runs, writer, ByteBuffer.allocate(
+                48));
+        assertEquals(160, (long)merger.call());
+        writer.flush();
+        assertEquals(0, merger.getOutputBuffer().position());
+        assertEquals(0, runs.getLength(0));
+        assertEquals(64, runs.getStart(0));
+        assertEquals(176, output.length());
+        output.seek(16);
+        for (int i = 0; i < 10; i++) {
+            output.readLong();
+            assertEquals(i, output.readDouble(), 0.0);
+        }
+        runFile.close();
+        output.close();
+        Files.deleteIfExists(Paths.get("mergerRun.bin"));
+        Files.deleteIfExists(Paths.get("mergerOut.bin"));
+    }
+
+
+    /**
+     * test merging compressed runs of one frame each
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCompressed() throws IOException {
+        runFile.setLength(0);
+        BlockWriter runWriter = new BlockWriter(new StreamBlockFile(runFile),
+            0, 64, false, true);
+        double[][] keys = { { 1, 4, 7, 9 }, { 2, 3, 8 }, { 0, 5, 6 } };
+        RunIndex runs = new RunIndex(keys.length);
+        for (int r = 0; r < keys.length; r++) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            for (double key : keys[r]) {
+                buffer.putLong(r).putDouble(key);
+            }
+            long start = runWriter.getPosition();
+            runWriter.write(buffer);
+            runs.add(start, runWriter.getPosition() - start);
+        }
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(output), 0,
+            48, false);
+        RunMerger merger = new RunMerger(new RecordStore(12), 0, 4,
+            new StreamBlockFile(runFile), runs, writer, ByteBuffer.allocate(
+                48), true);
+        assertEquals(160, (long)merger.call());
+        writer.flush();
+        output.seek(0);
+        for (int i = 0; i < 10; i++) {
+            output.readLong();
+            assertEquals(i, output.readDouble(), 0.0);
+        }
+        runFile.close();
+        output.close();
+        Files.deleteIfExists(Paths.get("mergerRun.bin"));
+        Files.deleteIfExists(Paths.get("mergerOut.bin"));
+    }
+
+
+    /**
+     * test compressed runs of several frames read only their frames and the
+     * header of the next one
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCompressedFrames() throws IOException {
+        runFile.setLength(0);
+        BlockWriter runWriter = new BlockWriter(new StreamBlockFile(runFile),
+            0, 32, false, true);
+        double[][] keys = { { 1, 4, 7, 9 }, { 2, 3, 8 }, { 0, 5, 6 } };
+        RunIndex runs = new RunIndex(keys.length);
+        for (int r = 0; r < keys.length; r++) {
+            long start = runWriter.getPosition();
+            ByteBuffer buffer = ByteBuffer.allocate(32);
+            for (double key : keys[r]) {
+                buffer.putLong(r).putDouble(key);
+                if (!buffer.hasRemaining()) {
+                    buffer = runWriter.write(buffer);
+                }
+            }
+            runWriter.write(buffer);
+            runs.add(start, runWriter.getPosition() - start);
+        }
+        long runBytes = runs.totalLength();
+        BlockWriter writer = new BlockWriter(new StreamBlockFile(output), 0,
+            48, false);
+        RunMerger merger = new RunMerger(new RecordStore(6), 0, 2,
+            new StreamBlockFile(runFile), runs, writer, ByteBuffer.allocate(
+                48), true);
+        SortMetrics metrics = new SortMetrics();
+        metrics.startPhase(SortPhase.MERGE);
+        merger.setMetrics(metrics);
+        assertEquals(160, (long)merger.call());
+        writer.flush();
+        // 6 frames, each read with the header after it, or of itself
+        assertEquals(runBytes + 6 * RunCodec.HEADER_SIZE, metrics
+            .getMergeBytesRead());
+        output.seek(0);
+        for (int i = 0; i < 10; i++) {
+            output.readLong();
+            assertEquals(i, output.readDouble(), 0.0);
+        }
+        runFile.close();
+        output.close();
+        Files.deleteIfExists(Paths.get("mergerRun.bin"));
+        Files.deleteIfExists(Paths.get("mergerOut.bin"));
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Message between the sort coordinator and a sort worker over the pipes of
+ * the worker: the runs a worker wrote, or the slices of the runs it is to
+ * merge, with the bytes of records they stand for. It is kept apart from
+ * the run manifest, so the layout of the resume file can change without
+ * breaking the workers.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.20.22
+ *
+ */
+public class RunMessage {
+
+    /** Mark of the start of a message **/
+    public static final int MAGIC = 0x52554e53;
+
+    private long length;
+    private RunIndex runs;
+
+    /**
+     * Constructor of the run message
+     *
+     * @param length
+     *            The bytes of records, the input range of generated runs or
+     *            the records of the runs to merge or merged
+     * @param runs
+     *            The runs
+     */
+    public RunMessage(long length, RunIndex runs) {
+        this.length = length;
+        this.runs = runs;
+    }
+
+
+    /**
+     * Get the bytes of records the runs stand for
+     *
+     * @return The length in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+
+    /**
+     * Get the runs
+     *
+     * @return The index of the runs
+     */
+    public RunIndex getRuns() {
+        return runs;
+    }
+
+
+    /**
+     * Write the message to a stream
+     *
+     * @param stream
+     *            The stream, left open
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            stream));
+        out.writeInt(MAGIC);
+        out.writeLong(length);
+        out.writeInt(runs.size());
+        for (int i = 0; i < runs.size(); i++) {
+            out.writeLong(runs.getStart(i));
+            out.writeLong(runs.getLength(i));
+            out.writeDouble(runs.getMinKey(i));
+            out.writeDouble(runs.getMaxKey(i));
+        }
+        out.flush();
+    }
+
+
+    /**
+     * Read a message from a stream
+     *
+     * @param stream
+     *            The stream, left open
+     * @return The message, null if the stream ends before it or holds
+     *         something else
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public static RunMessage read(InputStream stream) throws IOException {
+        try {
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            long length = in.readLong();
+            int size = in.readInt();
+            if (length < 0 || size < 0) {
+                return null;
+            }
+            RunIndex runs = new RunIndex();
+            for (int i = 0; i < size; i++) {
+                long start = in.readLong();
+                long runLength = in.readLong();
+                if (start < 0 || runLength < 0) {
+                    return null;
+                }
+                runs.add(start, runLength, in.readDouble(), in.readDouble());
+            }
+            return new RunMessage(length, runs);
+        }
+        catch (EOFException e) {
+            return null;
+        }
+    }
+}
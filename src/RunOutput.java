@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The output of sorted runs through a block writer. A record whose key is
+ * equal to the last record of the run is folded into it by the combiner
+ * while that record is still in the output buffer, and records past the
+ * limit of the run are dropped, so every writer of runs cuts and combines
+ * them the same way. The output can be split into key range shards, one
+ * writer each, moving on to the next shard once a key passes its splitter.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.13.22
+ *
+ */
+public class RunOutput {
+    private BlockWriter[] writers;
+    private double[] splitters;
+    private int shard;
+    private long[] shardStarts;
+    private long[] shardCounts;
+    private double[] shardFirstKeys;
+    private double[] shardLastKeys;
+    private ByteBuffer buffer;
+    private RecordCombiner combiner;
+    private long limit;
+    private long count;
+    private double firstKey;
+    private double lastKey;
+    private KeySample sample;
+
+    /**
+     * Constructor of the run output
+     *
+     * @param writer
+     *            The writer of the runs
+     * @param buffer
+     *            The empty output buffer of one block
+     * @param combiner
+     *            The combiner of equal keys, null to keep every record
+     * @param limit
+     *            The most records of a run
+     */
+    public RunOutput(
+        BlockWriter writer,
+        ByteBuffer buffer,
+        RecordCombiner combiner,
+        long limit) {
+        this(new BlockWriter[] { writer }, new double[0], buffer, combiner,
+            limit);
+    }
+
+
+    /**
+     * Constructor of the run output split into key range shards, a record
+     * goes to the first shard whose splitter is not smaller than its key
+     *
+     * @param writers
+     *            The writer of every shard
+     * @param splitters
+     *            The splitter keys in ascending order, one less than the
+     *            writers
+     * @param buffer
+     *            The empty output buffer of one block
+     * @param combiner
+     *            The combiner of equal keys, null to keep every record
+     * @param limit
+     *            The most records of a run, over all the shards
+     */
+    public RunOutput(
+        BlockWriter[] writers,
+        double[] splitters,
+        ByteBuffer buffer,
+        RecordCombiner combiner,
+        long limit) {
+        if (splitters.length != writers.length - 1) {
+            throw new IllegalArgumentException(splitters.length
+                + " splitters cannot split " + writers.length + " shards");
+        }
+        this.writers = writers;
+        this.splitters = splitters;
+        this.buffer = buffer;
+        this.combiner = combiner;
+        this.limit = limit;
+        shardStarts = new long[writers.length];
+        for (int i = 0; i < writers.length; i++) {
+            shardStarts[i] = writers[i].getPosition();
+        }
+        shardCounts = new long[writers.length];
+        shardFirstKeys = new double[writers.length];
+        shardLastKeys = new double[writers.length];
+    }
+
+
+    /**
+     * Set the sample offered every record written
+     *
+     * @param newSample
+     *            The key sample, null to sample nothing
+     */
+    public void setSample(KeySample newSample) {
+        this.sample = newSample;
+    }
+
+
+    /**
+     * Check if a record would be folded into the last record of the run
+     *
+     * @param key
+     *            The key of the record
+     * @return True if the record is combined instead of written
+     */
+    public boolean folds(double key) {
+        return combiner != null && count > 0 && Double.compare(key,
+            lastKey) == 0;
+    }
+
+
+    /**
+     * Check if the run holds its limit of records, so only records folded
+     * into the last one still count
+     *
+     * @return True if the run is full
+     */
+    public boolean isFull() {
+        return count >= limit;
+    }
+
+
+    /**
+     * Write a record of the store to the run
+     *
+     * @param records
+     *            The record store
+     * @param index
+     *            The index of the record
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void write(RecordStore records, int index) throws IOException {
+        write(records.getId(index), records.getKey(index));
+    }
+
+
+    /**
+     * Write a record to the run, the records come in key order
+     *
+     * @param id
+     *            The id of the record
+     * @param key
+     *            The key of the record
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void write(long id, double key) throws IOException {
+        if (folds(key)) {
+            // a full buffer is only written once a new key arrives, so the
+            // last record is still in it
+            int last = buffer.position() - FileReader.RECORD_SIZE;
+            buffer.putLong(last, combiner.combine(key, buffer.getLong(last),
+                id));
+            return;
+        }
+        if (count >= limit) {
+            return;
+        }
+        while (shard < splitters.length && Double.compare(key,
+            splitters[shard]) > 0) {
+            // the records of the shard end before the key
+            buffer = writers[shard++].write(buffer);
+        }
+        if (!buffer.hasRemaining()) {
+            buffer = writers[shard].write(buffer);
+        }
+        buffer.putLong(id);
+        buffer.putDouble(key);
+        if (count++ == 0) {
+            firstKey = key;
+        }
+        lastKey = key;
+        if (shardCounts[shard]++ == 0) {
+            shardFirstKeys[shard] = key;
+        }
+        shardLastKeys[shard] = key;
+        if (sample != null) {
+            sample.add(key);
+        }
+    }
+
+
+    /**
+     * End the run, writing the rest of the output buffer
+     *
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public void endRun() throws IOException {
+        buffer = writers[shard].write(buffer);
+        count = 0;
+    }
+
+
+    /**
+     * Get the number of records of the current run
+     *
+     * @return The records written since the run started
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Get the smallest key of the last run
+     *
+     * @return The first key written to the run
+     */
+    public double getFirstKey() {
+        return firstKey;
+    }
+
+
+    /**
+     * Get the largest key of the last run
+     *
+     * @return The last key written to the run
+     */
+    public double getLastKey() {
+        return lastKey;
+    }
+
+
+    /**
+     * Get the shards written since the output was created
+     *
+     * @return The start, length and key range of every shard inside its
+     *         file, an empty shard has no key range
+     */
+    public RunIndex getShardIndex() {
+        RunIndex shards = new RunIndex(writers.length);
+        for (int i = 0; i < writers.length; i++) {
+            long length = writers[i].getPosition() - shardStarts[i];
+            if (shardCounts[i] == 0) {
+                shards.add(shardStarts[i], length);
+            }
+            else {
+                shards.add(shardStarts[i], length, shardFirstKeys[i],
+                    shardLastKeys[i]);
+            }
+        }
+        return shards;
+    }
+
+
+    /**
+     * Get the output buffer to keep filling after the runs, the buffer
+     * given to the constructor may be held by the writer
+     *
+     * @return The empty output buffer after the end of a run
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+}
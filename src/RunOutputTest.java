@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the run output
+ *
+ * @author Wenjun Han
+ * @version 5.13.22
+ */
+public class RunOutputTest extends TestCase {
+
+    private RandomAccessFile file;
+    private BlockWriter writer;
+
+    /**
+     * set up a writer of blocks of 2 records
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("runOutputTest.bin"));
+        file = new RandomAccessFile("runOutputTest.bin", "rw");
+        writer = new BlockWriter(new StreamBlockFile(file), 0, 32, false);
+    }
+
+
+    /**
+     * Close and delete the output file
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void tearDown() throws IOException {
+        file.close();
+        Files.deleteIfExists(Paths.get("runOutputTest.bin"));
+    }
+
+
+    /**
+     * test records are written as they come without a combiner or limit
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testPlain() throws IOException {
+        RunOutput output = new RunOutput(writer, ByteBuffer.allocate(32),
+            null, Long.MAX_VALUE);
+        output.write(1, 2.0);
+        output.write(2, 2.0);
+        output.write(3, 5.0);
+        assertFalse(output.folds(5.0));
+        assertEquals(3, output.getCount());
+        output.endRun();
+        assertEquals(0, output.getCount());
+        assertEquals(0, output.getBuffer().position());
+        assertEquals(2.0, output.getFirstKey(), 0.0);
+        assertEquals(5.0, output.getLastKey(), 0.0);
+        assertEquals(48, writer.getPosition());
+        assertRecord(1, 2, 2.0);
+        assertRecord(2, 3, 5.0);
+    }
+
+
+    /**
+     * test equal keys are summed, also after the buffer filled up
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSum() throws IOException {
+        RunOutput output = new RunOutput(writer, ByteBuffer.allocate(32),
+            RecordCombiner.SUM, Long.MAX_VALUE);
+        output.write(1, 1.0);
+        output.write(2, 3.0);
+        // the buffer is full, the record of key 3 is still in it
+        assertTrue(output.folds(3.0));
+        output.write(4, 3.0);
+        output.write(8, 3.0);
+        output.write(5, 4.0);
+        output.endRun();
+        assertEquals(48, writer.getPosition());
+        assertRecord(0, 1, 1.0);
+        assertRecord(1, 14, 3.0);
+        assertRecord(2, 5, 4.0);
+        // a new run does not fold into the last one
+        assertFalse(output.folds(4.0));
+    }
+
+
+    /**
+     * test a limit drops new keys but still folds into the last one
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testLimit() throws IOException {
+        RunOutput output = new RunOutput(writer, ByteBuffer.allocate(32),
+            RecordCombiner.DISTINCT, 2);
+        output.write(7, 1.0);
+        output.write(8, 2.0);
+        assertTrue(output.isFull());
+        assertTrue(output.folds(2.0));
+        output.write(9, 2.0);
+        output.write(10, 6.0);
+        output.endRun();
+        assertEquals(32, writer.getPosition());
+        assertEquals(2.0, output.getLastKey(), 0.0);
+        assertRecord(0, 7, 1.0);
+        assertRecord(1, 8, 2.0);
+    }
+
+
+    /**
+     * test records split into shards with their key ranges
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testShards() throws IOException {
+        Files.deleteIfExists(Paths.get("runOutputShard.bin"));
+        RandomAccessFile second = new RandomAccessFile("runOutputShard.bin",
+            "rw");
+        BlockWriter[] writers = { writer, new BlockWriter(
+            new StreamBlockFile(second), 0, 32, false), new BlockWriter(
+                new StreamBlockFile(second), 0, 32, false) };
+        RunOutput output = new RunOutput(writers, new double[] { 2.0, 2.5 },
+            ByteBuffer.allocate(32), RecordCombiner.SUM, Long.MAX_VALUE);
+        KeySample sample = new KeySample(8, 1);
+        output.setSample(sample);
+        output.write(1, 1.0);
+        output.write(1, 2.0);
+        output.write(1, 2.0);
+        output.write(1, 6.0);
+        output.write(1, 7.0);
+        output.endRun();
+        assertEquals(4, sample.size());
+        RunIndex shards = output.getShardIndex();
+        assertEquals(3, shards.size());
+        assertEquals(32, shards.getLength(0));
+        assertEquals(1.0, shards.getMinKey(0), 0.0);
+        assertEquals(2.0, shards.getMaxKey(0), 0.0);
+        // no key falls between the splitters
+        assertEquals(0, shards.getLength(1));
+        assertEquals(32, shards.getLength(2));
+        assertEquals(6.0, shards.getMinKey(2), 0.0);
+        assertEquals(7.0, shards.getMaxKey(2), 0.0);
+        assertRecord(1, 2, 2.0);
+        second.seek(16);
+        assertEquals(1, second.readLong());
+        assertEquals(7.0, second.readDouble(), 0.0);
+        second.close();
+        Files.deleteIfExists(Paths.get("runOutputShard.bin"));
+        Exception thrown = null;
+        try {
+            new RunOutput(writers, new double[0], ByteBuffer.allocate(32),
+                null, Long.MAX_VALUE);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * Check a record of the output file
+     *
+     * @param index
+     *            The index of the record
+     * @param id
+     *            The expected id
+     * @param key
+     *            The expected key
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private void assertRecord(int index, long id, double key)
+        throws IOException {
+        file.seek((long)index * FileReader.RECORD_SIZE);
+        assertEquals(id, file.readLong());
+        assertEquals(key, file.readDouble(), 0.0);
+    }
+}
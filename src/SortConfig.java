@@ -0,0 +1,516 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * The configuration of an external sort, holding the memory budget of the
+ * heap, the block size of the buffers and the maximum number of runs merged
+ * in a single pass
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.21.22
+ *
+ */
+public class SortConfig {
+
+    /** Default maximum number of runs merged in one pass **/
+    public static final int DEFAULT_MAX_FAN_IN = 1024;
+    /** Share of the maximum JVM memory used by default for the heap **/
+    public static final int DEFAULT_MEMORY_DIVISOR = 4;
+    /** Default bytes of a file mapped at a time in mapped mode **/
+    public static final long DEFAULT_MAPPED_WINDOW = 1L << 26;
+    /** Smallest mapped window, windows are unmapped by the GC only **/
+    public static final long MIN_MAPPED_WINDOW = 1L << 20;
+
+    private long memoryBudget;
+    private int blockSize;
+    private int maxFanIn;
+    private IoMode ioMode;
+    private long mappedWindowSize;
+    private boolean asyncIo;
+    private int runThreads;
+    private int mergeThreads;
+    private SortEngine sortEngine;
+    private boolean compressRuns;
+    private long limit;
+    private RecordCombiner combiner;
+    private boolean stable;
+    private int shards;
+    private double[] splitKeys;
+    private SortMetrics metrics;
+
+    /**
+     * Constructor of the sort configuration sized from Runtime.maxMemory()
+     */
+    public SortConfig() {
+        this(Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_DIVISOR,
+            FileReader.BLOCK_SIZE, DEFAULT_MAX_FAN_IN);
+    }
+
+
+    /**
+     * Constructor of the sort configuration
+     *
+     * @param memoryBudget
+     *            Bytes of records held by the heap, rounded down to whole
+     *            blocks
+     * @param blockSize
+     *            Bytes of each buffer block, a multiple of the record size
+     * @param maxFanIn
+     *            Maximum number of runs merged in one pass, a smaller fan-in
+     *            adds merge steps before the last pass, see getMaxFanIn for
+     *            the disk they take
+     */
+    public SortConfig(long memoryBudget, int blockSize, int maxFanIn) {
+        if (blockSize < FileReader.RECORD_SIZE
+            || blockSize % FileReader.RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("Block size " + blockSize
+                + " is not a multiple of the record size");
+        }
+        if (maxFanIn < 2) {
+            throw new IllegalArgumentException("Fan-in " + maxFanIn
+                + " cannot merge runs");
+        }
+        // records are indexed by int, keep the heap inside an array
+        long maxBudget = (long)(Integer.MAX_VALUE - blockSize)
+            * FileReader.RECORD_SIZE;
+        long budget = Math.min(memoryBudget, maxBudget);
+        budget -= budget % blockSize;
+        if (budget < 2L * blockSize) {
+            throw new IllegalArgumentException("Memory budget "
+                + memoryBudget + " is smaller than two blocks");
+        }
+        this.memoryBudget = budget;
+        this.blockSize = blockSize;
+        this.maxFanIn = maxFanIn;
+        ioMode = IoMode.STREAM;
+        mappedWindowSize = DEFAULT_MAPPED_WINDOW;
+        asyncIo = true;
+        runThreads = 1;
+        mergeThreads = 1;
+        sortEngine = SortEngine.HEAP;
+        limit = Long.MAX_VALUE;
+        shards = 1;
+        metrics = new SortMetrics();
+    }
+
+
+    /**
+     * Get the memory budget of the heap
+     *
+     * @return The bytes of records held by the heap
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+
+    /**
+     * Get the block size of the buffers
+     *
+     * @return The bytes of each block
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+
+    /**
+     * Get the maximum number of runs merged in one pass. With more runs than
+     * the fan-in, merge steps write runs into the run file before the last
+     * pass. Uncompressed steps reuse the space of the runs merged before, so
+     * the run file stays within about twice the input. Compressed steps
+     * cannot tell their output length ahead and append, so the run file may
+     * reach the compressed input times one plus the number of merge levels.
+     *
+     * @return The maximum fan-in
+     */
+    public int getMaxFanIn() {
+        return maxFanIn;
+    }
+
+
+    /**
+     * Get the number of records held by the heap
+     *
+     * @return The number of heap records
+     */
+    public int getHeapRecordNum() {
+        return (int)(memoryBudget / FileReader.RECORD_SIZE);
+    }
+
+
+    /**
+     * Get the number of records inside one block
+     *
+     * @return The number of block records
+     */
+    public int getBlockRecordNum() {
+        return blockSize / FileReader.RECORD_SIZE;
+    }
+
+
+    /**
+     * Get the number of runs merged in one pass when the records memory
+     * holds the given number of records
+     *
+     * @param recordNum
+     *            The number of records available for the merge blocks
+     * @return The merge fan-in
+     */
+    public int getMergeFanIn(int recordNum) {
+        return Math.min(maxFanIn, recordNum / getBlockRecordNum());
+    }
+
+
+    /**
+     * Get the way blocks are moved between the files and memory
+     *
+     * @return The I/O mode
+     */
+    public IoMode getIoMode() {
+        return ioMode;
+    }
+
+
+    /**
+     * Set the way blocks are moved between the files and memory
+     *
+     * @param newIoMode
+     *            The new I/O mode
+     */
+    public void setIoMode(IoMode newIoMode) {
+        this.ioMode = newIoMode;
+    }
+
+
+    /**
+     * Get the bytes of a file mapped at a time in mapped mode
+     *
+     * @return The size of the mapped window
+     */
+    public long getMappedWindowSize() {
+        return mappedWindowSize;
+    }
+
+
+    /**
+     * Set the bytes of a file mapped at a time in mapped mode
+     *
+     * @param newWindowSize
+     *            The new size of the mapped window, at least one block and
+     *            the min mapped window, so a sort does not run out of maps
+     *            before the GC releases the old windows
+     */
+    public void setMappedWindowSize(long newWindowSize) {
+        if (newWindowSize < blockSize || newWindowSize < MIN_MAPPED_WINDOW) {
+            throw new IllegalArgumentException("Mapped window "
+                + newWindowSize + " is smaller than a block or "
+                + MIN_MAPPED_WINDOW + " bytes");
+        }
+        this.mappedWindowSize = newWindowSize;
+    }
+
+
+    /**
+     * Check if blocks are read ahead and written behind by background threads
+     *
+     * @return True if the I/O overlaps with the sorting
+     */
+    public boolean isAsyncIo() {
+        return asyncIo;
+    }
+
+
+    /**
+     * Set if blocks are read ahead and written behind by background threads
+     *
+     * @param newAsyncIo
+     *            True to overlap the I/O with the sorting
+     */
+    public void setAsyncIo(boolean newAsyncIo) {
+        this.asyncIo = newAsyncIo;
+    }
+
+
+    /**
+     * Get the number of threads generating runs over disjoint regions of the
+     * input
+     *
+     * @return The number of run generation threads
+     */
+    public int getRunThreads() {
+        return runThreads;
+    }
+
+
+    /**
+     * Set the number of threads generating runs, each thread gets an equal
+     * share of the memory budget as its heap
+     *
+     * @param newRunThreads
+     *            The new number of run generation threads, at least 1
+     */
+    public void setRunThreads(int newRunThreads) {
+        if (newRunThreads < 1) {
+            throw new IllegalArgumentException("Run threads " + newRunThreads
+                + " cannot generate runs");
+        }
+        this.runThreads = newRunThreads;
+    }
+
+
+    /**
+     * Get the number of threads merging key ranges in the last merge pass
+     *
+     * @return The number of merge threads
+     */
+    public int getMergeThreads() {
+        return mergeThreads;
+    }
+
+
+    /**
+     * Set the number of threads merging key ranges in the last merge pass,
+     * each thread gets an equal share of the memory budget for its blocks
+     *
+     * @param newMergeThreads
+     *            The new number of merge threads, at least 1
+     */
+    public void setMergeThreads(int newMergeThreads) {
+        if (newMergeThreads < 1) {
+            throw new IllegalArgumentException("Merge threads "
+                + newMergeThreads + " cannot merge runs");
+        }
+        this.mergeThreads = newMergeThreads;
+    }
+
+
+    /**
+     * Get the way records are sorted in memory
+     *
+     * @return The sort engine
+     */
+    public SortEngine getSortEngine() {
+        return sortEngine;
+    }
+
+
+    /**
+     * Set the way records are sorted in memory, the radix engine uses half
+     * of the memory as scratch so its runs are half as long
+     *
+     * @param newSortEngine
+     *            The new sort engine
+     */
+    public void setSortEngine(SortEngine newSortEngine) {
+        this.sortEngine = newSortEngine;
+    }
+
+
+    /**
+     * Check if the runs are written as compressed frames
+     *
+     * @return True if the runs are compressed
+     */
+    public boolean isCompressRuns() {
+        return compressRuns;
+    }
+
+
+    /**
+     * Set if the runs are written as compressed frames, trading the CPU of
+     * the encoding for less spill and merge traffic. The last merge pass
+     * then runs on one thread.
+     *
+     * @param newCompressRuns
+     *            True to compress the runs
+     */
+    public void setCompressRuns(boolean newCompressRuns) {
+        this.compressRuns = newCompressRuns;
+    }
+
+
+    /**
+     * Get the most records kept by the sort
+     *
+     * @return The limit, Long.MAX_VALUE when every record is kept
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+
+    /**
+     * Set the most records kept by the sort. Only the smallest records are
+     * written, a limit within the heap is selected in one scan of the input
+     * and a larger one cuts every run and merge at the limit.
+     *
+     * @param newLimit
+     *            The new limit, at least 1
+     */
+    public void setLimit(long newLimit) {
+        if (newLimit < 1) {
+            throw new IllegalArgumentException("Limit " + newLimit
+                + " keeps no records");
+        }
+        this.limit = newLimit;
+    }
+
+
+    /**
+     * Check if the limit of the sort fits the heap, so the records are
+     * selected in one scan instead of sorted
+     *
+     * @return True for a top-k selection
+     */
+    public boolean isTopK() {
+        // the selection keeps records, not keys, so it cannot combine
+        return limit <= getHeapRecordNum() && combiner == null;
+    }
+
+
+    /**
+     * Get the combiner of records with equal keys
+     *
+     * @return The combiner, null when every record is kept
+     */
+    public RecordCombiner getCombiner() {
+        return combiner;
+    }
+
+
+    /**
+     * Set the combiner of records with equal keys. The records of a key are
+     * folded into one as soon as they meet in a run, a merge step or the
+     * output, and the limit then counts the combined records.
+     *
+     * @param newCombiner
+     *            The new combiner, null to keep every record
+     */
+    public void setCombiner(RecordCombiner newCombiner) {
+        this.combiner = newCombiner;
+    }
+
+
+    /**
+     * Check if records of equal keys are ordered by their ids
+     *
+     * @return True for a stable sort
+     */
+    public boolean isStable() {
+        return stable;
+    }
+
+
+    /**
+     * Set whether records of equal keys are ordered by their ids, so the
+     * output is the same whatever the runs and merges the records went
+     * through
+     *
+     * @param newStable
+     *            True to break ties of the keys on the ids
+     */
+    public void setStable(boolean newStable) {
+        this.stable = newStable;
+    }
+
+
+    /**
+     * Get the number of key range shards the sorted file is written to
+     *
+     * @return The number of shards, 1 when the file is sorted in place
+     */
+    public int getShards() {
+        return shards;
+    }
+
+
+    /**
+     * Set the number of key range shards the sorted file is written to,
+     * with splitter keys sampled while the runs are generated
+     *
+     * @param newShards
+     *            The new number of shards, at least 1
+     */
+    public void setShards(int newShards) {
+        if (newShards < 1) {
+            throw new IllegalArgumentException(newShards
+                + " shards hold no records");
+        }
+        this.shards = newShards;
+        splitKeys = null;
+    }
+
+
+    /**
+     * Get the explicit splitter keys of the shards
+     *
+     * @return The splitter keys, null when they are sampled
+     */
+    public double[] getSplitKeys() {
+        return splitKeys;
+    }
+
+
+    /**
+     * Set the splitter keys of the shards, a record goes to the first shard
+     * whose splitter is not smaller than its key, the last shard takes the
+     * rest
+     *
+     * @param newSplitKeys
+     *            The splitter keys in ascending order
+     */
+    public void setSplitKeys(double[] newSplitKeys) {
+        for (int i = 1; i < newSplitKeys.length; i++) {
+            if (Double.compare(newSplitKeys[i - 1], newSplitKeys[i]) > 0) {
+                throw new IllegalArgumentException("Split keys "
+                    + newSplitKeys[i - 1] + " and " + newSplitKeys[i]
+                    + " are not in ascending order");
+            }
+        }
+        this.splitKeys = newSplitKeys;
+        shards = newSplitKeys.length + 1;
+    }
+
+
+    /**
+     * Get the metrics the sorts of the configuration add to
+     *
+     * @return The sort metrics
+     */
+    public SortMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Set the metrics the sorts of the configuration add to, such as the
+     * ones published for every sort of a process
+     *
+     * @param newMetrics
+     *            The sort metrics
+     */
+    public void setMetrics(SortMetrics newMetrics) {
+        if (newMetrics == null) {
+            throw new IllegalArgumentException("Sort metrics are required");
+        }
+        this.metrics = newMetrics;
+    }
+
+
+    /**
+     * Open a block file over a random access file using the I/O mode
+     *
+     * @param file
+     *            The random access file opened for read and write
+     * @return The block file
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public BlockFile open(RandomAccessFile file) throws IOException {
+        if (ioMode == IoMode.MAPPED) {
+            return new MappedBlockFile(file, mappedWindowSize);
+        }
+        return new StreamBlockFile(file);
+    }
+}
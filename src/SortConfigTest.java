@@ -0,0 +1,222 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the sort configuration
+ *
+ * @author Wenjun Han
+ * @version 4.21.22
+ */
+public class SortConfigTest extends TestCase {
+
+    private SortConfig config;
+
+    /**
+     * set up a configuration of 8 blocks
+     */
+    public void setUp() {
+        config = new SortConfig(FileReader.HEAP_SIZE + 100,
+            FileReader.BLOCK_SIZE, 4);
+    }
+
+
+    /**
+     * test getters and the rounding of the memory budget
+     */
+    public void testGetter() {
+        assertEquals(FileReader.HEAP_SIZE, config.getMemoryBudget());
+        assertEquals(FileReader.BLOCK_SIZE, config.getBlockSize());
+        assertEquals(4, config.getMaxFanIn());
+        assertEquals(FileReader.HEAP_RECORD_NUM, config.getHeapRecordNum());
+        assertEquals(512, config.getBlockRecordNum());
+        assertFalse(config.isStable());
+        config.setStable(true);
+        assertTrue(config.isStable());
+    }
+
+
+    /**
+     * test the merge fan-in is limited by memory and maximum fan-in
+     */
+    public void testMergeFanIn() {
+        assertEquals(4, config.getMergeFanIn(FileReader.HEAP_RECORD_NUM));
+        assertEquals(3, config.getMergeFanIn(512 * 3));
+        assertEquals(0, config.getMergeFanIn(100));
+    }
+
+
+    /**
+     * test the default configuration sized from the JVM memory
+     */
+    public void testDefault() {
+        SortConfig defaults = new SortConfig();
+        assertEquals(FileReader.BLOCK_SIZE, defaults.getBlockSize());
+        assertEquals(SortConfig.DEFAULT_MAX_FAN_IN, defaults.getMaxFanIn());
+        assertTrue(defaults.getMemoryBudget() >= 2 * FileReader.BLOCK_SIZE);
+        assertEquals(0, defaults.getMemoryBudget() % FileReader.BLOCK_SIZE);
+    }
+
+
+    /**
+     * test invalid configurations
+     */
+    public void testInvalid() {
+        Exception thrown = null;
+        try {
+            new SortConfig(FileReader.HEAP_SIZE, 100, 8);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            new SortConfig(FileReader.BLOCK_SIZE, FileReader.BLOCK_SIZE, 8);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            new SortConfig(FileReader.HEAP_SIZE, FileReader.BLOCK_SIZE, 1);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test every configuration has metrics, which can be shared
+     */
+    public void testMetrics() {
+        assertNotNull(config.getMetrics());
+        SortMetrics shared = new SortMetrics();
+        config.setMetrics(shared);
+        assertSame(shared, config.getMetrics());
+        Exception thrown = null;
+        try {
+            config.setMetrics(null);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test the I/O mode selects the block file
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testIoMode() throws IOException {
+        assertEquals(IoMode.STREAM, config.getIoMode());
+        assertEquals(SortEngine.HEAP, config.getSortEngine());
+        assertEquals(Long.MAX_VALUE, config.getLimit());
+        assertFalse(config.isTopK());
+        config.setLimit(FileReader.HEAP_RECORD_NUM);
+        assertTrue(config.isTopK());
+        assertNull(config.getCombiner());
+        config.setCombiner(RecordCombiner.DISTINCT);
+        assertEquals(RecordCombiner.DISTINCT, config.getCombiner());
+        assertFalse(config.isTopK());
+        config.setCombiner(null);
+        assertEquals(1, config.getShards());
+        assertNull(config.getSplitKeys());
+        config.setSplitKeys(new double[] { 1, 1, 5 });
+        assertEquals(4, config.getShards());
+        config.setShards(3);
+        assertEquals(3, config.getShards());
+        assertNull(config.getSplitKeys());
+        config.setLimit(FileReader.HEAP_RECORD_NUM + 1);
+        assertFalse(config.isTopK());
+        assertFalse(config.isCompressRuns());
+        config.setCompressRuns(true);
+        assertTrue(config.isCompressRuns());
+        config.setSortEngine(SortEngine.RADIX);
+        assertEquals(SortEngine.RADIX, config.getSortEngine());
+        assertEquals(1, config.getMergeThreads());
+        config.setMergeThreads(2);
+        assertEquals(2, config.getMergeThreads());
+        assertEquals(1, config.getRunThreads());
+        config.setRunThreads(4);
+        assertEquals(4, config.getRunThreads());
+        assertTrue(config.isAsyncIo());
+        config.setAsyncIo(false);
+        assertFalse(config.isAsyncIo());
+        assertEquals(SortConfig.DEFAULT_MAPPED_WINDOW, config
+            .getMappedWindowSize());
+        RandomAccessFile file = new RandomAccessFile("configTest.bin", "rw");
+        assertTrue(config.open(file) instanceof StreamBlockFile);
+        config.setIoMode(IoMode.MAPPED);
+        config.setMappedWindowSize(SortConfig.MIN_MAPPED_WINDOW);
+        assertEquals(SortConfig.MIN_MAPPED_WINDOW, config
+            .getMappedWindowSize());
+        assertTrue(config.open(file) instanceof MappedBlockFile);
+        file.close();
+        Files.deleteIfExists(Paths.get("configTest.bin"));
+        Exception thrown = null;
+        try {
+            config.setMappedWindowSize(100);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            config.setMappedWindowSize(FileReader.HEAP_SIZE);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            config.setRunThreads(0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            config.setLimit(0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            config.setMergeThreads(0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            config.setShards(0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            config.setSplitKeys(new double[] { 2, 1 });
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+}
@@ -1,8 +1,17 @@
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The external sort controller for the project input and output
@@ -12,12 +21,22 @@ import java.nio.file.Paths;
  *
  */
 public class SortController {
-    private Record[] records;
-    private MinHeap<Record> minHeap;
-    private ByteBuffer inputBuffer;
+    private RecordStore records;
     private ByteBuffer outputBuffer;
     private RandomAccessFile file;
-    private LinkedList<RunTracker> run;
+    private RunIndex run;
+    private int runNum;
+    private boolean persistRuns;
+    private String inputPath;
+    private long inputChecksum;
+    private boolean outputStarted;
+    private RunIndex savedRuns;
+    private SortConfig config;
+    private int fanIn;
+    private long mergeBytesSaved;
+    private KeySample sample;
+    private SortMetrics metrics;
+    private int mergePass;
 
     /**
      * The constructor of the sort controller
@@ -25,28 +44,76 @@ public class SortController {
      * @param records
      *            The input records
      * @param inputBuffer
-     *            The input buffer
+     *            The input buffer, the block readers hold their own
      * @param outputBuffer
      *            The output buffer
      * @param file
      *            The file
      */
     public SortController(
-        Record[] records,
+        RecordStore records,
         ByteBuffer inputBuffer,
         ByteBuffer outputBuffer,
         RandomAccessFile file) {
+        this(records, inputBuffer, outputBuffer, file, new SortConfig(
+            (long)records.capacity() * FileReader.RECORD_SIZE,
+            FileReader.BLOCK_SIZE, SortConfig.DEFAULT_MAX_FAN_IN));
+    }
+
+
+    /**
+     * The constructor of the sort controller
+     * 
+     * @param records
+     *            The input records
+     * @param inputBuffer
+     *            The input buffer, the block readers hold their own
+     * @param outputBuffer
+     *            The output buffer
+     * @param file
+     *            The file
+     * @param config
+     *            The block size and maximum fan-in of the sort
+     */
+    public SortController(
+        RecordStore records,
+        ByteBuffer inputBuffer,
+        ByteBuffer outputBuffer,
+        RandomAccessFile file,
+        SortConfig config) {
+        this.config = config;
+        metrics = config.getMetrics();
+        // the merge blocks share the records memory of the heap
+        fanIn = config.getMergeFanIn(records.capacity());
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Records memory of "
+                + records.capacity() + " records cannot hold two merge blocks");
+        }
         this.records = records;
-        minHeap = new MinHeap<>(records, records.length, records.length);
-        this.inputBuffer = inputBuffer;
         this.outputBuffer = outputBuffer;
         this.file = file;
-        run = new LinkedList<>();
+        run = new RunIndex();
+        inputPath = "";
     }
 
 
     /**
-     * The replacement selection
+     * Set the path of the file, so a manifest left by a sort of another
+     * file is never resumed
+     * 
+     * @param fileName
+     *            Name of the file
+     * @throws IOException
+     *             Throws if the path cannot be resolved
+     */
+    public void setInputPath(String fileName) throws IOException {
+        inputPath = new File(fileName).getCanonicalPath();
+    }
+
+
+    /**
+     * The replacement selection, or load-sort-store runs with the radix
+     * engine
      * 
      * @return runFile
      *         The runFile that temporarily store sort data
@@ -54,177 +121,652 @@ public class SortController {
      *             Throws if any wrong with I/O
      */
     public RandomAccessFile replacementSelection() throws IOException {
+        metrics.startPhase(SortPhase.RUNS);
+        try {
+            return generateRuns();
+        }
+        finally {
+            metrics.endPhase();
+        }
+    }
+
+
+    /**
+     * Generate the runs of the file into the run file
+     * 
+     * @return The run file, empty when the file is presorted
+     * @throws IOException
+     *             Throws if any wrong with I/O
+     */
+    private RandomAccessFile generateRuns() throws IOException {
+        Files.deleteIfExists(RunManifest.DEFAULT_PATH);
         Files.deleteIfExists(Paths.get("runFile.bin"));
         // initialization for run file and parameters
         RandomAccessFile runFile = new RandomAccessFile("runFile.bin", "rw");
+        inputChecksum = RunManifest.checksum(config.open(file), config
+            .getBlockSize());
+        outputStarted = false;
         long fileLength = file.length();
-        byte[] output = new byte[FileReader.BLOCK_SIZE];
-        byte[] input = new byte[FileReader.BLOCK_SIZE];
-        byte[] tempInput = new byte[FileReader.RECORD_SIZE];
-        byte[] tempOutput = new byte[FileReader.RECORD_SIZE];
-        // prepare the first buffer
-        file.seek(FileReader.HEAP_SIZE);
-        file.read(input);
-        inputBuffer = ByteBuffer.wrap(input);
-        input = new byte[FileReader.BLOCK_SIZE];
-
-        RunTracker runtracker = new RunTracker(0, 0);
-        int endHeapRecord = 0;
-        long runStart = 0;
-        long runLength = 0;
-        while (minHeap.heapsize() > 0) {
-            // for each run
-            while (minHeap.heapsize() > 0) {
-                // check if output buffer full
-                if (!outputBuffer.hasRemaining()) {
-                    // write the content to the file
-                    outputBuffer.flip();
-                    outputBuffer.get(output);
-                    runFile.write(output);
-                    // clear the buffer and set position to 0
-                    output = new byte[FileReader.BLOCK_SIZE];
-                    outputBuffer.rewind();
-                    outputBuffer.clear();
-                }
-                // check if input buffer empty, read new input buffer
-                if (!inputBuffer.hasRemaining() && file
-                    .getFilePointer() < fileLength) {
-                    file.read(input);
-                    inputBuffer = ByteBuffer.wrap(input);
-                }
-                if (inputBuffer.hasRemaining()) {
-                    // read the data into the heap
-                    runLength += FileReader.RECORD_SIZE;
-
-                    inputBuffer.get(tempInput);
-                    Record newInput = new Record(tempInput);
-                    tempInput = new byte[FileReader.RECORD_SIZE];
-                    Record newOutput = minHeap.getHeap()[0];
-                    outputBuffer.putLong(newOutput.getId());
-                    outputBuffer.putDouble(newOutput.getKey());
-
-                    if (newInput.compareTo(newOutput) > 0) {
-                        // put the data into heap
-                        minHeap.getHeap()[0] = newInput;
-                        minHeap.siftdown(0);
-                    }
-                    else {
-                        // put the data into back of the heap
-                        if (minHeap.heapsize() > 0) {
-                            int currentHeapSize = minHeap.heapsize();
-                            minHeap.setHeapsize(--currentHeapSize);
-                            Record temp = minHeap.getHeap()[currentHeapSize];
-                            minHeap.getHeap()[currentHeapSize] = minHeap
-                                .getHeap()[0];
-                            minHeap.getHeap()[0] = temp;
-                            minHeap.getHeap()[currentHeapSize] = newInput;
-                            minHeap.siftdown(0);
-                        }
-                        endHeapRecord++;
-                    }
+        boolean radix = config.getSortEngine() == SortEngine.RADIX;
+        // a radix slice keeps its scratch records after the loaded ones
+        int slot = radix ? 2 : 1;
+        int threads = (int)Math.max(1, Math.min(config.getRunThreads(),
+            Math.min(records.capacity() / slot, fileLength
+                / FileReader.RECORD_SIZE)));
+        long recordNum = fileLength / FileReader.RECORD_SIZE;
+        // a presorted file is its own output, one scan proves it, unless
+        // its duplicates are to be combined
+        if (config.getCombiner() == null && isPresorted((int)Math.min(records
+            .capacity() / slot, recordNum), recordNum)) {
+            runNum = 0;
+            persistRuns = true;
+            saveManifest(runFile, run);
+            return runFile;
+        }
+        // every region is written to the same place of the run file, a
+        // compressed frame takes at most one and a half of its records
+        boolean compress = config.isCompressRuns();
+        runFile.setLength(compress ? fileLength + fileLength / 2 : fileLength);
+        long regionRecordNum = (recordNum + threads - 1) / threads;
+        int sliceCapacity = records.capacity() / threads;
+        List<IoTask<RunIndex>> generators = new ArrayList<>();
+        KeySample[] samples = new KeySample[threads];
+        BlockReader[] readers = new BlockReader[threads];
+        BlockWriter[] writers = new BlockWriter[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                long regionStart = Math.min(i * regionRecordNum, recordNum)
+                    * FileReader.RECORD_SIZE;
+                long regionEnd = i == threads - 1
+                    ? fileLength
+                    : Math.min((i + 1) * regionRecordNum, recordNum)
+                        * FileReader.RECORD_SIZE;
+                // the first slice of the store already holds the file start
+                int preloaded = i == 0
+                    ? (int)Math.min(sliceCapacity / slot, regionEnd
+                        / FileReader.RECORD_SIZE)
+                    : 0;
+                // the next input block is read while the heap consumes this
+                // one, full output blocks are written while the heap fills
+                // the next one
+                readers[i] = new BlockReader(config.open(file), regionStart
+                    + (long)preloaded * FileReader.RECORD_SIZE, regionEnd,
+                    config.getBlockSize(), config.isAsyncIo());
+                writers[i] = new BlockWriter(config.open(runFile), compress
+                    ? regionStart + regionStart / 2
+                    : regionStart, config.getBlockSize(), config.isAsyncIo(),
+                    compress);
+                readers[i].setMetrics(metrics);
+                writers[i].setMetrics(metrics);
+                metrics.addRead((long)preloaded * FileReader.RECORD_SIZE);
+                ByteBuffer regionOutput = i == 0
+                    ? outputBuffer
+                    : ByteBuffer.wrap(new byte[config.getBlockSize()]);
+                samples[i] = createSample(recordNum);
+                if (radix) {
+                    RadixRunGenerator generator = new RadixRunGenerator(
+                        records, i * sliceCapacity, sliceCapacity, preloaded,
+                        readers[i], writers[i], regionOutput);
+                    generator.setLimit(config.getLimit());
+                    generator.setCombiner(config.getCombiner());
+                    generator.setSample(samples[i]);
+                    generators.add(generator);
                 }
                 else {
-                    runLength += FileReader.RECORD_SIZE;
-                    Record singleOutput = minHeap.removemin();
-                    outputBuffer.putLong(singleOutput.getId());
-                    outputBuffer.putDouble(singleOutput.getKey());
+                    RunGenerator generator = new RunGenerator(records, i
+                        * sliceCapacity, sliceCapacity, preloaded, readers[i],
+                        writers[i], regionOutput);
+                    generator.setLimit(config.getLimit());
+                    generator.setCombiner(config.getCombiner());
+                    generator.setSample(samples[i]);
+                    generator.setMetrics(metrics);
+                    generators.add(generator);
                 }
-
             }
-            // re-construct the min heap
-            if (endHeapRecord > 0) {
-                int heapLength = minHeap.getHeap().length;
-                for (int i = heapLength - endHeapRecord, j =
-                    0; i < heapLength; i++, j++) {
-                    minHeap.getHeap()[j] = minHeap.getHeap()[i];
+            if (threads == 1) {
+                run.addAll(generators.get(0).call());
+            }
+            else {
+                generateRunsParallel(generators);
+            }
+        }
+        finally {
+            for (int i = 0; i < threads; i++) {
+                if (readers[i] != null) {
+                    readers[i].close();
+                }
+                if (writers[i] != null) {
+                    writers[i].close();
                 }
-                minHeap.setHeapsize(endHeapRecord);
-                minHeap.buildheap();
             }
-            // record a new run
-            runtracker = new RunTracker(runStart, runLength);
-
-            int outputIdx = outputBuffer.position();
-            outputBuffer.flip();
-            for (int i = 0; i < outputIdx; i += 16) {
-                outputBuffer.position(i);
-                outputBuffer.get(tempOutput);
-                runFile.write(tempOutput);
+        }
+        runNum = run.size();
+        metrics.addRuns(run);
+        if (samples[0] != null) {
+            sample = new KeySample(0, 1);
+            for (KeySample regionSample : samples) {
+                sample.addAll(regionSample);
             }
-            outputBuffer.rewind();
-            outputBuffer.clear();
+        }
+        persistRuns = true;
+        saveManifest(runFile, run);
+        return runFile;
+    }
+
+
+    /**
+     * Create the sample of the keys of a region when the shards of the
+     * output are split by sampled keys
+     * 
+     * @param recordNum
+     *            The number of records of the file
+     * @return The sample of the region, null if no keys are sampled
+     */
+    private KeySample createSample(long recordNum) {
+        if (config.getShards() == 1 || config.getSplitKeys() != null) {
+            return null;
+        }
+        int sampleNum = config.getShards() * MergePartitioner.SAMPLES_PER_PART;
+        return new KeySample(sampleNum + 1, Math.max(1, recordNum
+            / sampleNum));
+    }
+
 
-            run.append(runtracker);
-            runStart += runLength;
-            runLength = 0;
-            endHeapRecord = 0;
+    /**
+     * Pick up the runs of an interrupted sort of the same file from the
+     * manifest next to the run file, dropping anything written after the
+     * last completed phase
+     * 
+     * @return The run file to merge, null if there is no usable manifest
+     *         and the runs have to be generated again
+     * @throws IOException
+     *             Throws if any wrong with I/O
+     */
+    public RandomAccessFile resume() throws IOException {
+        RunManifest manifest = RunManifest.read(RunManifest.DEFAULT_PATH);
+        if (manifest == null || !manifest.matches(file.length(), config
+            .getBlockSize(), fanIn, config.isCompressRuns(), config
+                .getLimit(), config.getCombiner() != null, config.isStable())
+            || !manifest.sameInput(inputPath, RunManifest.checksum(config
+                .open(file), config.getBlockSize()))
+            || !Files.exists(Paths.get("runFile.bin"))) {
+            return null;
+        }
+        RandomAccessFile runFile = new RandomAccessFile("runFile.bin", "rw");
+        if (runFile.length() < manifest.getRunFileLength()) {
+            runFile.close();
+            return null;
         }
+        // a merge step cut short leaves a partial run after the last one
+        runFile.setLength(manifest.getRunFileLength());
+        run = manifest.getRuns();
+        runNum = manifest.getRunNum();
+        inputChecksum = manifest.getInputChecksum();
+        outputStarted = manifest.isOutputStarted();
+        savedRuns = run;
+        persistRuns = true;
         return runFile;
     }
 
 
     /**
-     * Multi-way merge sorted file
+     * Persist the runs written so far when the run file is the one of the
+     * controller, after the run file reaches the disk
+     * 
+     * @param runFile
+     *            The run file
+     * @param runs
+     *            The generated runs followed by the merged runs
+     * @throws IOException
+     *             Throws if any wrong with I/O
+     */
+    private void saveManifest(RandomAccessFile runFile, RunIndex runs)
+        throws IOException {
+        if (!persistRuns) {
+            return;
+        }
+        // the writers forced their mapped windows when flushed, the channel
+        // only forces the data written through it
+        runFile.getChannel().force(true);
+        RunManifest manifest = new RunManifest(file.length(), config
+            .getBlockSize(), fanIn, config.isCompressRuns(), config
+                .getLimit(), config.getCombiner() != null, config.isStable(),
+            runNum, runFile.length(), runs);
+        manifest.setInput(inputPath, inputChecksum, outputStarted);
+        manifest.write(RunManifest.DEFAULT_PATH);
+        savedRuns = runs;
+    }
+
+
+    /**
+     * Check if the file is sorted already. The scan only starts when the
+     * records loaded from the start of the file are in order, and stops at
+     * the first descending record.
+     * 
+     * @param loaded
+     *            The number of records of the file start held by the store
+     * @param recordNum
+     *            The number of records of the file
+     * @return True if no record is smaller than the one before it
+     * @throws IOException
+     *             Throws if any wrong with I/O
+     */
+    private boolean isPresorted(int loaded, long recordNum)
+        throws IOException {
+        if (loaded == 0 || !NaturalRunWriter.isAscending(records, 0, loaded)) {
+            return false;
+        }
+        long lastId = records.getId(loaded - 1);
+        double lastKey = records.getKey(loaded - 1);
+        BlockReader reader = new BlockReader(config.open(file), (long)loaded
+            * FileReader.RECORD_SIZE, recordNum * FileReader.RECORD_SIZE,
+            config.getBlockSize(), config.isAsyncIo());
+        reader.setMetrics(metrics);
+        metrics.addRead((long)loaded * FileReader.RECORD_SIZE);
+        try {
+            while (reader.hasNext()) {
+                ByteBuffer block = reader.next();
+                while (block.hasRemaining()) {
+                    long id = block.getLong();
+                    double key = block.getDouble();
+                    if (records.compare(id, key, lastId, lastKey) < 0) {
+                        return false;
+                    }
+                    lastId = id;
+                    lastKey = key;
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return true;
+    }
+
+
+    /**
+     * Run every generator on its own thread and collect the runs in region
+     * order
+     * 
+     * @param generators
+     *            The generators of the regions
+     * @throws IOException
+     *             Throws if any wrong with I/O
+     */
+    private void generateRunsParallel(
+        List<IoTask<RunIndex>> generators)
+        throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(generators
+            .size());
+        try {
+            List<Future<RunIndex>> results = new ArrayList<>();
+            for (IoTask<RunIndex> generator : generators) {
+                results.add(executor.submit(generator));
+            }
+            for (Future<RunIndex> result : results) {
+                run.addAll(result.get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted generating runs");
+        }
+        catch (ExecutionException e) {
+            throw IoTask.unwrap(e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Multi-way merge sorted file, a limited or combined sort keeps only
+     * the records it wrote in the file
      * 
      * @param runFile
      *            The run file with blocks of sorted data
      * @throws IOException
      */
     public void multiwayMerge(RandomAccessFile runFile) throws IOException {
-        // delete if the merge file exists
-        Files.deleteIfExists(Paths.get("mergeTempFile.bin"));
-        RandomAccessFile mergeTempFile = new RandomAccessFile(
-            "mergeTempFile.bin", "rw");
-        boolean finalRunComplete = false;
-        LinkedList<RunTracker> mergeRun = run;
-        if (mergeRun.length() == 1) {
-            mergeRun = mergeHelper(runFile, mergeTempFile, mergeRun);
-        }
-        // merge to file
-        while (!finalRunComplete) {
-            if (mergeRun.length() == 1) {
-                // cover the file as result
-                transferDataToFile(mergeTempFile, file);
-                mergeTempFile.close();
-                runFile.close();
-                finalRunComplete = true;
-                Files.deleteIfExists(Paths.get("runFile.bin"));
-                Files.deleteIfExists(Paths.get("mergeTempFile.bin"));
+        long written = multiwayMerge(runFile, run, runNum, config.open(file));
+        if (config.getLimit() < file.length() / FileReader.RECORD_SIZE) {
+            file.setLength(config.getLimit() * FileReader.RECORD_SIZE);
+        }
+        if (written < file.length()) {
+            file.setLength(written);
+        }
+        runFile.close();
+        Files.deleteIfExists(RunManifest.DEFAULT_PATH);
+        Files.deleteIfExists(Paths.get("runFile.bin"));
+    }
+
+
+    /**
+     * Multi-way merge sorted file into key range shards instead of the file
+     * itself, the last pass writing every shard in key order
+     * 
+     * @param runFile
+     *            The run file with blocks of sorted data
+     * @param shards
+     *            The files of the shards in key order, each one cut to the
+     *            records of its shard
+     * @return The length and key range of every shard
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public RunIndex multiwayMerge(
+        RandomAccessFile runFile,
+        RandomAccessFile[] shards)
+        throws IOException {
+        metrics.startPhase(SortPhase.MERGE);
+        try {
+            boolean compress = config.isCompressRuns();
+            BlockFile source = config.open(runFile);
+            RunIndex mergeRun = run;
+            if (runNum > fanIn) {
+                mergeRun = mergePlanned(runFile, run, runNum, compress);
+            }
+            else if (run.size() == 0) {
+                // a presorted file is the one run of its shards
+                source = config.open(file);
+                mergeRun = new RunIndex(1);
+                mergeRun.add(0, file.length());
+                compress = false;
+            }
+            double[] splitters = config.getSplitKeys() != null
+                ? config.getSplitKeys()
+                : splitters(source, mergeRun, compress, shards.length);
+            BlockWriter[] writers = new BlockWriter[shards.length];
+            RunIndex shardIndex;
+            try {
+                for (int i = 0; i < shards.length; i++) {
+                    writers[i] = new BlockWriter(config.open(shards[i]), 0,
+                        config.getBlockSize(), config.isAsyncIo());
+                    writers[i].setMetrics(metrics);
+                }
+                RunOutput output = new RunOutput(writers, splitters,
+                    ByteBuffer.wrap(new byte[config.getBlockSize()]), config
+                        .getCombiner(), config.getLimit());
+                MergePassEvent event = new MergePassEvent();
+                event.begin();
+                RunMerger merger = new RunMerger(records, 0, config
+                    .getBlockRecordNum(), source, mergeRun, null, null,
+                    compress);
+                merger.setOutput(output);
+                merger.setMetrics(metrics);
+                merger.call();
+                metrics.addMergePass();
+                for (BlockWriter writer : writers) {
+                    writer.flush();
+                }
+                shardIndex = output.getShardIndex();
+                // one pass writes every shard from its start
+                event.record(mergePass++, mergeRun, 0, mergeRun
+                    .totalLength(), shardIndex.totalLength());
+            }
+            finally {
+                for (BlockWriter writer : writers) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                }
+            }
+            for (int i = 0; i < shards.length; i++) {
+                shards[i].setLength(shardIndex.getLength(i));
+            }
+            runFile.close();
+            Files.deleteIfExists(RunManifest.DEFAULT_PATH);
+            Files.deleteIfExists(Paths.get("runFile.bin"));
+            return shardIndex;
+        }
+        finally {
+            metrics.endPhase();
+        }
+    }
+
+
+    /**
+     * Pick the splitter keys of the shards, from the sample of the run
+     * generation when there is one, else from the runs themselves
+     * 
+     * @param source
+     *            The file of the runs
+     * @param runs
+     *            The runs of the last pass
+     * @param compress
+     *            True if the runs are compressed frames
+     * @param parts
+     *            The number of shards
+     * @return The parts - 1 splitter keys in ascending order
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private double[] splitters(
+        BlockFile source,
+        RunIndex runs,
+        boolean compress,
+        int parts)
+        throws IOException {
+        if (sample != null && sample.size() > 0) {
+            return sample.splitters(parts);
+        }
+        if (!compress) {
+            // a resumed or presorted sort has no sample, the runs are
+            // sampled instead
+            return new MergePartitioner(source, runs).splitters(parts);
+        }
+        // compressed runs cannot be read at a record, the keys are spread
+        // evenly over the key range of the runs
+        double minKey = Double.POSITIVE_INFINITY;
+        double maxKey = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < runs.size(); i++) {
+            minKey = Math.min(minKey, runs.getMinKey(i));
+            maxKey = Math.max(maxKey, runs.getMaxKey(i));
+        }
+        double[] splitters = new double[parts - 1];
+        for (int j = 1; j < parts; j++) {
+            splitters[j - 1] = minKey + (maxKey - minKey) * j / parts;
+        }
+        return splitters;
+    }
 
+
+    /**
+     * Multi-way merge runs into an output. While there are more runs than
+     * the fan-in, the planned steps merge the shortest runs and append the
+     * merged run to the run file, then one pass merges the rest into the
+     * output.
+     * 
+     * @param runFile
+     *            The run file with blocks of sorted data
+     * @param runs
+     *            The runs of the run file
+     * @param output
+     *            The destination of the sorted records
+     * @return The bytes written to the output
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public long multiwayMerge(
+        RandomAccessFile runFile,
+        RunIndex runs,
+        BlockFile output)
+        throws IOException {
+        return multiwayMerge(runFile, runs, runs.size(), output);
+    }
+
+
+    /**
+     * Run the merge steps planned from the run lengths until the runs fit
+     * one pass, leaving the last pass to the caller
+     * 
+     * @param runFile
+     *            The run file, every merged run is appended to it
+     * @param runs
+     *            The runs of the run file
+     * @return The runs left for the last pass, at most the fan-in
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public RunIndex mergeSteps(RandomAccessFile runFile, RunIndex runs)
+        throws IOException {
+        metrics.startPhase(SortPhase.MERGE);
+        try {
+            if (runs.size() <= fanIn) {
+                return runs;
             }
-            else {
-                // merge data from file
-                mergeRun = mergeHelper(runFile, mergeTempFile, mergeRun);
-                transferDataToFile(mergeTempFile, runFile);
-                // repeat the process of merging
-                mergeTempFile.seek(0);
-                runFile.seek(0);
+            return mergePlanned(runFile, runs, runs.size(), config
+                .isCompressRuns());
+        }
+        finally {
+            metrics.endPhase();
+        }
+    }
+
+
+    /**
+     * Multi-way merge runs into an output, skipping the merge steps already
+     * completed
+     * 
+     * @param runFile
+     *            The run file with blocks of sorted data
+     * @param runs
+     *            The generated runs followed by the merged run of every
+     *            completed step
+     * @param generated
+     *            The number of generated runs
+     * @param output
+     *            The destination of the sorted records
+     * @return The bytes written to the output, the whole file when it is
+     *         presorted
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private long multiwayMerge(
+        RandomAccessFile runFile,
+        RunIndex runs,
+        int generated,
+        BlockFile output)
+        throws IOException {
+        metrics.startPhase(SortPhase.MERGE);
+        try {
+            RunIndex mergeRun = runs;
+            boolean compress = config.isCompressRuns();
+            if (generated > fanIn) {
+                mergeRun = mergePlanned(runFile, runs, generated, compress);
+            }
+            if (mergeRun.size() == 0) {
+                // a presorted file has no runs to merge
+                return file.length();
+            }
+            if (file != null && output.getFile() == file && !outputStarted) {
+                // from here on the file no longer holds its checksum, a
+                // stream sort has no file and writes to a channel
+                outputStarted = true;
+                saveManifest(runFile, savedRuns);
             }
+            BlockFile source = config.open(runFile);
+            if (mergeRun.size() == 1 && !compress) {
+                // a single run is sorted and combined already, its blocks are
+                // copied as is
+                copyRun(source, mergeRun, output);
+                return mergeRun.getLength(0);
+            }
+            // the last pass writes straight into the output, a channel only
+            // takes its blocks in order, compressed runs cannot be split by
+            // record positions, a limit cuts the merge order, not the parts,
+            // and equal keys of two parts would not be combined
+            if (config.getMergeThreads() > 1 && output.getFile() != null
+                && !compress && config.getLimit() == Long.MAX_VALUE && config
+                    .getCombiner() == null) {
+                parallelMerge(source, mergeRun, output.getFile());
+                return mergeRun.totalLength();
+            }
+            return mergeHelper(source, output, 0, mergeRun, false).getLength(0);
         }
+        finally {
+            metrics.endPhase();
+        }
+    }
+
+
+    /**
+     * Get the bytes the merge plan saved over merging the runs in list
+     * order, one full pass at a time
+     * 
+     * @return The bytes not written and read again, 0 before a merge of
+     *         more runs than the fan-in
+     */
+    public long getMergeBytesSaved() {
+        return mergeBytesSaved;
     }
 
 
     /**
-     * Transfer data from one file to another file
+     * Run the merge steps planned from the run lengths until the runs left
+     * fit one pass
      * 
-     * @param sourceFile
-     *            The data source file
-     * @param targetFile
-     *            The data target destination
+     * @param runFile
+     *            The run file, every merged run is written over the runs
+     *            merged before it when it fits, else appended
+     * @param runs
+     *            The generated runs followed by the merged run of every
+     *            completed step
+     * @param generated
+     *            The number of generated runs
+     * @param compress
+     *            True if the runs are written as compressed frames
+     * @return The runs left for the last pass
      * @throws IOException
      *             Throws when anything wrong with I/O
      */
-    private void transferDataToFile(
-        RandomAccessFile sourceFile,
-        RandomAccessFile targetFile)
+    private RunIndex mergePlanned(
+        RandomAccessFile runFile,
+        RunIndex runs,
+        int generated,
+        boolean compress)
         throws IOException {
-        sourceFile.seek(0);
-        targetFile.seek(0);
-        byte[] dataBlock = new byte[FileReader.BLOCK_SIZE];
-        while (sourceFile.getFilePointer() < sourceFile.length()) {
-            sourceFile.read(dataBlock);
-            targetFile.write(dataBlock);
+        long[] runLengths = new long[generated];
+        for (int i = 0; i < generated; i++) {
+            runLengths[i] = runs.getLength(i);
+        }
+        MergePlanner planner = new MergePlanner(runLengths, fanIn);
+        mergeBytesSaved = planner.getBytesSaved();
+        int[][] steps = planner.getSteps();
+        // the merged run of step s gets the id generated + s
+        RunIndex allRuns = new RunIndex(generated + steps.length);
+        allRuns.addAll(runs);
+        boolean[] merged = new boolean[generated + steps.length];
+        for (int s = 0; s < steps.length; s++) {
+            RunIndex group = new RunIndex(steps[s].length);
+            for (int id : steps[s]) {
+                group.add(allRuns, id);
+            }
+            // a step completed before the sort was resumed is skipped
+            if (generated + s == allRuns.size()) {
+                // the step reads the file as it is and writes into the
+                // space of the runs merged by the earlier steps, or after
+                // the end; a compressed output may outgrow its inputs
+                BlockFile source = config.open(runFile);
+                long start = compress
+                    ? source.length()
+                    : freeSpace(allRuns, merged, group.totalLength());
+                allRuns.addAll(mergeHelper(source, config.open(runFile),
+                    start, group, compress));
+                saveManifest(runFile, allRuns);
+            }
+            for (int id : steps[s]) {
+                merged[id] = true;
+            }
         }
+        RunIndex left = new RunIndex(fanIn);
+        for (int i = 0; i < allRuns.size(); i++) {
+            if (!merged[i]) {
+                left.add(allRuns, i);
+            }
+        }
+        return left;
     }
 
 
@@ -232,194 +774,234 @@ public class SortController {
      * Helper method of merging multi-runs data
      * 
      * @param runFile
-     *            The run file
-     * @param mergeTempFile
-     *            A temp file to store merging data
-     * @return A list of merging information
+     *            The run file to read
+     * @param target
+     *            The file the merged runs are written to
+     * @param start
+     *            The position of the first merged run
+     * @param mergeRun
+     *            The runs to merge, fan-in of them at a time in index order
+     * @param compressOutput
+     *            True to write the merged runs as compressed frames
+     * @return The index of the merged runs
      * @throws IOException
      *             Throws when anything wrong with I/O
      */
-    private LinkedList<RunTracker> mergeHelper(
-        RandomAccessFile runFile,
-        RandomAccessFile mergeTempFile,
-        LinkedList<RunTracker> mergeRun)
+    private RunIndex mergeHelper(
+        BlockFile runFile,
+        BlockFile target,
+        long start,
+        RunIndex mergeRun,
+        boolean compressOutput)
         throws IOException {
 
-        LinkedList<RunTracker> mergeInfo = new LinkedList<>();
-        // record the block index
-        int[] recordEndIndex = new int[8];
-        int blockRecordNum = FileReader.BLOCK_SIZE / FileReader.RECORD_SIZE;
-        ByteBuffer mergeOutputBuffer = ByteBuffer.wrap(
-            new byte[FileReader.BLOCK_SIZE]);
-        mergeOutputBuffer.rewind();
-        mergeOutputBuffer.clear();
-        byte[] output = new byte[FileReader.BLOCK_SIZE];
-        byte[] tempOutput = new byte[FileReader.RECORD_SIZE];
-        long runStart = 0;
-        long runLength = 0;
-
-        while (mergeRun.length() > 0) {
-            int runNum = readBlocks(runFile, recordEndIndex, mergeRun);
-            int runFinishNum = 0;
-            int minRecordRunNum = 0;
-            // finish reading blocks
-            boolean[] runReadFinish = new boolean[runNum];
-            int[] runRecord = new int[runNum];
-            for (int i = 0; i < runNum; i++) {
-                runRecord[i] = blockRecordNum * i;
-            }
-            // while not all the runs are completed
-            while (runFinishNum < runNum) {
-
-                // output to file if buffer is full
-                if (!mergeOutputBuffer.hasRemaining()) {
-                    mergeOutputBuffer.flip();
-                    mergeOutputBuffer.get(output);
-                    mergeTempFile.write(output);
-                    // clear the buffer and set position to 0
-                    output = new byte[FileReader.BLOCK_SIZE];
-                    mergeOutputBuffer.rewind();
-                    mergeOutputBuffer.clear();
-                }
-                // compare all block record find minimum record
-                // create a largest record for comparison
-                runLength += FileReader.RECORD_SIZE;
-                ByteBuffer minBuffer = ByteBuffer.wrap(
-                    new byte[FileReader.RECORD_SIZE]);
-                minBuffer.putLong(0, 100);
-                minBuffer.putDouble(FileReader.RECORD_SIZE / 2,
-                    Double.POSITIVE_INFINITY);
-                minBuffer.rewind();
-                Record minRecord = new Record(minBuffer.array());
-                // loop through the run's block to compare
-                for (int i = 0; i < runRecord.length; i++) {
-                    if (runReadFinish[i]) {
-                        continue;
+        RunIndex mergeInfo = new RunIndex(mergeRun.size() / fanIn + 1);
+        BlockWriter writer = new BlockWriter(target, start, config
+            .getBlockSize(), config.isAsyncIo(), compressOutput);
+        writer.setMetrics(metrics);
+        ByteBuffer mergeOutputBuffer = ByteBuffer.wrap(new byte[config
+            .getBlockSize()]);
+        long runStart = start;
+        try {
+            for (int g = 0; g < mergeRun.size(); g += fanIn) {
+                // merge the next fan-in runs of the index
+                RunIndex group = mergeRun.slice(g, Math.min(g + fanIn,
+                    mergeRun.size()));
+                double minKey = group.getMinKey(0);
+                double maxKey = group.getMaxKey(0);
+                for (int i = 1; i < group.size(); i++) {
+                    if (Double.compare(group.getMinKey(i), minKey) < 0) {
+                        minKey = group.getMinKey(i);
                     }
-                    Record currRecord = records[runRecord[i]];
-                    if (currRecord.compareTo(minRecord) < 0) {
-                        minRecord = currRecord;
-                        minRecordRunNum = i;
+                    if (Double.compare(group.getMaxKey(i), maxKey) > 0) {
+                        maxKey = group.getMaxKey(i);
                     }
                 }
-                // output the min record to buffer
-                mergeOutputBuffer.putLong(minRecord.getId());
-                mergeOutputBuffer.putDouble(minRecord.getKey());
-
-                // when finish the comparison of the block
-                if (runRecord[minRecordRunNum] == 
-                    recordEndIndex[minRecordRunNum]) {
-                    mergeRun.moveToPos(minRecordRunNum);
-                    RunTracker minRun = mergeRun.getValue();
-                    // read next block if data still available
-                    if (minRun.getLength() > 0) {
-                        readSingleBlock(runFile, recordEndIndex,
-                            minRecordRunNum, mergeRun);
-                        runRecord[minRecordRunNum] = minRecordRunNum
-                            * blockRecordNum;
-                    }
-                    else {
-                        runReadFinish[minRecordRunNum] = true;
-                        runFinishNum++;
-                    }
-                }
-                else {
-                    runRecord[minRecordRunNum]++;
-                }
+                MergePassEvent event = new MergePassEvent();
+                event.begin();
+                long groupLength = group.totalLength();
+                RunMerger merger = new RunMerger(records, 0, config
+                    .getBlockRecordNum(), runFile, group, writer,
+                    mergeOutputBuffer, config.isCompressRuns());
+                merger.setLimit(config.getLimit());
+                merger.setCombiner(config.getCombiner());
+                merger.setMetrics(metrics);
+                merger.call();
+                metrics.addMergePass();
+                mergeOutputBuffer = merger.getOutputBuffer();
+
+                // update the merged run information for future merge
+                mergeInfo.add(runStart, writer.getPosition() - runStart,
+                    minKey, maxKey);
+                event.record(mergePass++, group, runStart, groupLength, writer
+                    .getPosition() - runStart);
+                runStart = writer.getPosition();
             }
-            // output rest of the data from buffer to file
-            int outputIdx = mergeOutputBuffer.position();
-            mergeOutputBuffer.flip();
-            for (int i = 0; i < outputIdx; i += 16) {
-                mergeOutputBuffer.position(i);
-                mergeOutputBuffer.get(tempOutput);
-                mergeTempFile.write(tempOutput);
-                tempOutput = new byte[FileReader.RECORD_SIZE];
-            }
-            mergeOutputBuffer.rewind();
-            mergeOutputBuffer.clear();
-            // remove completed run information from run list
-            int countRemoved = 0;
-            mergeRun.moveToStart();
-            while (countRemoved < runNum) {
-                mergeRun.remove();
-                countRemoved++;
-            }
-
-            // update the merged run information for future merge
-            mergeInfo.append(new RunTracker(runStart, runLength));
-            runStart += runLength;
-            runLength = 0;
+            writer.flush();
+        }
+        finally {
+            writer.close();
         }
         return mergeInfo;
     }
 
 
     /**
-     * Read blocks of records from runFile for merging data
+     * Find the first position of the run file where a number of bytes fit
+     * without overwriting a run still to be merged, the space of the runs
+     * already merged is written again
+     *
+     * @param runs
+     *            The generated runs followed by the merged runs
+     * @param merged
+     *            True for the runs already merged by a step
+     * @param length
+     *            The bytes to write
+     * @return The position to write the bytes
+     */
+    private static long freeSpace(
+        RunIndex runs,
+        boolean[] merged,
+        long length) {
+        long[] starts = new long[runs.size()];
+        long[] ends = new long[runs.size()];
+        int live = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            if (!merged[i] && runs.getLength(i) > 0) {
+                starts[live] = runs.getStart(i);
+                ends[live++] = runs.getEnd(i);
+            }
+        }
+        // the runs never overlap, so their starts and ends sort alike
+        Arrays.sort(starts, 0, live);
+        Arrays.sort(ends, 0, live);
+        long position = 0;
+        for (int i = 0; i < live; i++) {
+            if (starts[i] - position >= length) {
+                return position;
+            }
+            position = Math.max(position, ends[i]);
+        }
+        return position;
+    }
+
+
+    /**
+     * Copy the blocks of a single uncompressed run to the start of the
+     * output
      * 
      * @param runFile
-     *            The created run file
-     * @param recordEndIndex
-     *            The end index of the 8 blocks
-     * @return The run index
+     *            The run file
+     * @param runs
+     *            The index of the run
+     * @param output
+     *            The destination of the sorted records
      * @throws IOException
      *             Throws when anything wrong with I/O
      */
-    private int readBlocks(
-        RandomAccessFile runFile,
-        int[] recordEndIndex,
-        LinkedList<RunTracker> runList)
+    private void copyRun(BlockFile runFile, RunIndex runs, BlockFile output)
         throws IOException {
-        int index;
-        int runSize = Math.min(runList.length(), 8);
-        // Maximally we can put 8 blocks of data into the heap
-        for (index = 0; index < runSize; index++) {
-            readSingleBlock(runFile, recordEndIndex, index, runList);
+        BlockReader reader = new BlockReader(runFile, runs.getStart(0), runs
+            .getEnd(0), config.getBlockSize(), config.isAsyncIo());
+        BlockWriter writer = new BlockWriter(output, 0, config.getBlockSize(),
+            config.isAsyncIo());
+        reader.setMetrics(metrics);
+        writer.setMetrics(metrics);
+        ByteBuffer copyBuffer = ByteBuffer.wrap(new byte[config
+            .getBlockSize()]);
+        try {
+            while (reader.hasNext()) {
+                copyBuffer.put(reader.next());
+                copyBuffer = writer.write(copyBuffer);
+            }
+            writer.flush();
+        }
+        finally {
+            reader.close();
+            writer.close();
         }
-        return index;
     }
 
 
     /**
-     * A helper method for readBlocks
+     * Merge the last runs on several threads, each thread merging one key
+     * range of every run straight into its place in the file
      * 
      * @param runFile
      *            The run file
-     * @param recordEndIndex
-     *            The end index of the 8 blocks
-     * @param runIdx
-     *            The run index
+     * @param runs
+     *            The runs to merge, at most fan-in of them
+     * @param output
+     *            The file of the sorted records
      * @throws IOException
      *             Throws when anything wrong with I/O
      */
-    private void readSingleBlock(
-        RandomAccessFile runFile,
-        int[] recordEndIndex,
-        int runIdx,
-        LinkedList<RunTracker> runList)
+    private void parallelMerge(
+        BlockFile runFile,
+        RunIndex runs,
+        RandomAccessFile output)
         throws IOException {
-        runList.moveToPos(runIdx);
-        RunTracker currentRun = runList.getValue();
-        int blockRecordNum = FileReader.BLOCK_SIZE / FileReader.RECORD_SIZE;
-        // read in by block
-        for (int j = runIdx * blockRecordNum; j < (runIdx + 1)
-            * blockRecordNum; j++) {
-            // load the records to Record memory
-            if (currentRun.getLength() == 0) {
-                break;
-            }
-            long runFilePos = currentRun.getStart();
-            byte[] runSingleRecord = new byte[FileReader.RECORD_SIZE];
-            runFile.seek(runFilePos);
-            runFile.read(runSingleRecord);
-            Record newRec = new Record(runSingleRecord);
-            records[j] = newRec;
-            recordEndIndex[runIdx] = j;
-            // modify run information
-            currentRun.setStart(currentRun.getStart() + FileReader.RECORD_SIZE);
-            currentRun.setLength(currentRun.getLength()
-                - FileReader.RECORD_SIZE);
+        // every part needs one record per run in its share of the memory
+        int parts = Math.max(1, Math.min(config.getMergeThreads(), records
+            .capacity() / runs.size()));
+        int sliceCapacity = records.capacity() / parts;
+        int blockRecordNum = Math.min(config.getBlockRecordNum(),
+            sliceCapacity / runs.size());
+        MergePartitioner partitioner = new MergePartitioner(runFile, runs);
+        long[][] bounds = partitioner.bounds(partitioner.splitters(parts));
+
+        ExecutorService executor = Executors.newFixedThreadPool(parts);
+        BlockWriter[] writers = new BlockWriter[parts];
+        RunMerger[] mergers = new RunMerger[parts];
+        MergePassEvent event = new MergePassEvent();
+        event.begin();
+        try {
+            // open every part before any of them writes to the file
+            long outputPos = 0;
+            for (int p = 0; p < parts; p++) {
+                RunIndex slices = new RunIndex(runs.size());
+                for (int r = 0; r < runs.size(); r++) {
+                    slices.add(bounds[p][r], bounds[p + 1][r] - bounds[p][r],
+                        runs.getMinKey(r), runs.getMaxKey(r));
+                }
+                // the part starts after the records of the smaller parts
+                writers[p] = new BlockWriter(config.open(output), outputPos,
+                    config.getBlockSize(), false);
+                outputPos += slices.totalLength();
+                mergers[p] = new RunMerger(records, p * sliceCapacity,
+                    blockRecordNum, config.open(runFile.getFile()), slices,
+                    writers[p], ByteBuffer.wrap(new byte[config
+                        .getBlockSize()]));
+                writers[p].setMetrics(metrics);
+                mergers[p].setMetrics(metrics);
+            }
+            List<Future<Long>> results = new ArrayList<>();
+            for (RunMerger merger : mergers) {
+                results.add(executor.submit(merger));
+            }
+            for (int p = 0; p < parts; p++) {
+                results.get(p).get();
+                writers[p].flush();
+            }
+            metrics.addMergePass();
+            // the parts are one pass, written from the start of the file
+            event.record(mergePass++, runs, 0, runs.totalLength(),
+                outputPos);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted merging parts");
+        }
+        catch (ExecutionException e) {
+            throw IoTask.unwrap(e);
+        }
+        finally {
+            executor.shutdownNow();
+            for (BlockWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
         }
     }
 
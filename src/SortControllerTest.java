@@ -1,6 +1,16 @@
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import student.TestCase;
 
 /**
@@ -15,7 +25,8 @@ public class SortControllerTest extends TestCase {
     private SortController controller;
 
     /**
-     * set up for tests
+     * set up for tests, an unsorted input of 16 blocks since every test
+     * sorts its input in place
      * 
      * @throws IOException
      *             Throws if anything going wrong with I/O.
@@ -25,14 +36,33 @@ public class SortControllerTest extends TestCase {
             new byte[FileReader.BLOCK_SIZE]);
         ByteBuffer outputBuffer = ByteBuffer.wrap(
             new byte[FileReader.BLOCK_SIZE]);
-        file = new RandomAccessFile("sampleInput16.bin", "rw");
-        Record[] records = FileReader.buildRecords(0, file, FileReader.HEAP_SIZE
-            / FileReader.RECORD_SIZE);
+        Files.deleteIfExists(Paths.get("controllerTest.bin"));
+        file = new RandomAccessFile("controllerTest.bin", "rw");
+        Random random = new Random(7);
+        ByteBuffer input = ByteBuffer.allocate(16 * FileReader.BLOCK_SIZE);
+        while (input.hasRemaining()) {
+            input.putLong(random.nextLong()).putDouble(random.nextDouble());
+        }
+        file.write(input.array());
+        RecordStore records = FileReader.buildRecords(0, file,
+            FileReader.HEAP_SIZE / FileReader.RECORD_SIZE);
         controller = new SortController(records, inputBuffer, outputBuffer,
             file);
     }
 
 
+    /**
+     * close and delete the input
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void tearDown() throws IOException {
+        file.close();
+        Files.deleteIfExists(Paths.get("controllerTest.bin"));
+    }
+
+
     /**
      * test replacement selection & multi-way merge method
      * 
@@ -47,4 +77,777 @@ public class SortControllerTest extends TestCase {
         assertNotNull(file);
         assertTrue(file.getFilePointer() > 0);
     }
+
+
+    /**
+     * test replacement selection & multi-way merge through mapped files
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testMappedMode() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        config.setIoMode(IoMode.MAPPED);
+        config.setMappedWindowSize(SortConfig.MIN_MAPPED_WINDOW);
+        // the run writers of the regions map the same run file
+        config.setRunThreads(4);
+        long length = file.length();
+        int recordNum = (int)(length / FileReader.RECORD_SIZE);
+        double[] sortedKeys = new double[recordNum];
+        Map<Long, Double> keysById = new HashMap<>();
+        file.seek(0);
+        for (int i = 0; i < recordNum; i++) {
+            long id = file.readLong();
+            sortedKeys[i] = file.readDouble();
+            keysById.put(id, sortedKeys[i]);
+        }
+        Arrays.sort(sortedKeys);
+        controller = new SortController(FileReader.buildRecords(0, file,
+            FileReader.HEAP_RECORD_NUM), ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), ByteBuffer.wrap(
+                    new byte[FileReader.BLOCK_SIZE]), file, config);
+        RandomAccessFile runFile = controller.replacementSelection();
+        assertEquals(length, runFile.length());
+        controller.multiwayMerge(runFile);
+        assertEquals(length, file.length());
+        // every record of the input is written once, in key order
+        file.seek(0);
+        for (int i = 0; i < recordNum; i++) {
+            long id = file.readLong();
+            double key = file.readDouble();
+            assertEquals(sortedKeys[i], key, 0.0);
+            assertEquals(key, keysById.remove(id), 0.0);
+        }
+        assertTrue(keysById.isEmpty());
+    }
+
+
+    /**
+     * test run generation on several threads
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testParallelRuns() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        config.setRunThreads(4);
+        long length = file.length();
+        controller = new SortController(FileReader.buildRecords(0, file,
+            FileReader.HEAP_RECORD_NUM), ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), ByteBuffer.wrap(
+                    new byte[FileReader.BLOCK_SIZE]), file, config);
+        RandomAccessFile runFile = controller.replacementSelection();
+        assertEquals(length, runFile.length());
+        controller.multiwayMerge(runFile);
+        assertEquals(length, file.length());
+        file.seek(0);
+        double previous = Double.NEGATIVE_INFINITY;
+        for (long i = 0; i < length; i += FileReader.RECORD_SIZE) {
+            file.readLong();
+            double key = file.readDouble();
+            assertTrue(Double.compare(previous, key) <= 0);
+            previous = key;
+        }
+    }
+
+
+    /**
+     * test the last merge pass on several threads
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testParallelMerge() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        config.setMergeThreads(3);
+        long length = file.length();
+        controller = new SortController(FileReader.buildRecords(0, file,
+            FileReader.HEAP_RECORD_NUM), ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), ByteBuffer.wrap(
+                    new byte[FileReader.BLOCK_SIZE]), file, config);
+        controller.multiwayMerge(controller.replacementSelection());
+        assertEquals(length, file.length());
+        file.seek(0);
+        double previous = Double.NEGATIVE_INFINITY;
+        for (long i = 0; i < length; i += FileReader.RECORD_SIZE) {
+            file.readLong();
+            double key = file.readDouble();
+            assertTrue(Double.compare(previous, key) <= 0);
+            previous = key;
+        }
+    }
+
+
+    /**
+     * test radix sorted runs on two threads
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testRadixRuns() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        config.setSortEngine(SortEngine.RADIX);
+        config.setRunThreads(2);
+        long length = file.length();
+        controller = new SortController(FileReader.buildRecords(0, file,
+            FileReader.HEAP_RECORD_NUM), ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), ByteBuffer.wrap(
+                    new byte[FileReader.BLOCK_SIZE]), file, config);
+        controller.multiwayMerge(controller.replacementSelection());
+        assertEquals(length, file.length());
+        file.seek(0);
+        double previous = Double.NEGATIVE_INFINITY;
+        for (long i = 0; i < length; i += FileReader.RECORD_SIZE) {
+            file.readLong();
+            double key = file.readDouble();
+            assertTrue(Double.compare(previous, key) <= 0);
+            previous = key;
+        }
+    }
+
+
+    /**
+     * test compressed runs from two threads merged in several passes
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCompressedRuns() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        config.setCompressRuns(true);
+        config.setRunThreads(2);
+        config.setMergeThreads(2);
+        long length = file.length();
+        controller = new SortController(FileReader.buildRecords(0, file,
+            FileReader.HEAP_RECORD_NUM), ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), ByteBuffer.wrap(
+                    new byte[FileReader.BLOCK_SIZE]), file, config);
+        controller.multiwayMerge(controller.replacementSelection());
+        assertEquals(length, file.length());
+        file.seek(0);
+        double previous = Double.NEGATIVE_INFINITY;
+        for (long i = 0; i < length; i += FileReader.RECORD_SIZE) {
+            file.readLong();
+            double key = file.readDouble();
+            assertTrue(Double.compare(previous, key) <= 0);
+            previous = key;
+        }
+    }
+
+
+    /**
+     * test the merge plan of random runs from a memory of two blocks
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testMergePlan() throws IOException {
+        Files.deleteIfExists(Paths.get("planTest.bin"));
+        RandomAccessFile input = new RandomAccessFile("planTest.bin", "rw");
+        Random random = new Random(13);
+        for (int i = 0; i < 10000; i++) {
+            input.writeLong(i);
+            input.writeDouble(random.nextDouble());
+        }
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        controller = new SortController(FileReader.buildRecords(0, input,
+            config.getHeapRecordNum()), ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), ByteBuffer.wrap(
+                    new byte[FileReader.BLOCK_SIZE]), input, config);
+        assertEquals(0, controller.getMergeBytesSaved());
+        controller.multiwayMerge(controller.replacementSelection());
+        // the short last run is not merged again by every pass
+        assertTrue(controller.getMergeBytesSaved() > 0);
+        assertEquals(160000, input.length());
+        input.seek(0);
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 10000; i++) {
+            input.readLong();
+            double key = input.readDouble();
+            assertTrue(Double.compare(previous, key) <= 0);
+            previous = key;
+        }
+        input.close();
+        Files.deleteIfExists(Paths.get("planTest.bin"));
+    }
+
+
+    /**
+     * test a sort interrupted after its runs continues from the manifest
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testResume() throws IOException {
+        Files.deleteIfExists(Paths.get("resumeTest.bin"));
+        RandomAccessFile input = new RandomAccessFile("resumeTest.bin", "rw");
+        Random random = new Random(17);
+        for (int i = 0; i < 10000; i++) {
+            input.writeLong(i);
+            input.writeDouble(random.nextDouble());
+        }
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        controller = new SortController(FileReader.buildRecords(0, input,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), input, config);
+        assertNull(controller.resume());
+        RandomAccessFile runFile = controller.replacementSelection();
+        assertTrue(Files.exists(RunManifest.DEFAULT_PATH));
+        // the process dies half way through writing a merged run
+        runFile.seek(runFile.length());
+        runFile.writeLong(-1);
+        runFile.close();
+
+        controller = new SortController(new RecordStore(config
+            .getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), input, config);
+        runFile = controller.resume();
+        assertNotNull(runFile);
+        controller.multiwayMerge(runFile);
+        assertFalse(Files.exists(RunManifest.DEFAULT_PATH));
+        assertEquals(160000, input.length());
+        input.seek(0);
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 10000; i++) {
+            input.readLong();
+            double key = input.readDouble();
+            assertTrue(Double.compare(previous, key) <= 0);
+            previous = key;
+        }
+        input.close();
+        Files.deleteIfExists(Paths.get("resumeTest.bin"));
+    }
+
+
+    /**
+     * test a limit larger than the heap cuts the runs and the merges
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testLimit() throws IOException {
+        Files.deleteIfExists(Paths.get("limitTest.bin"));
+        RandomAccessFile input = new RandomAccessFile("limitTest.bin", "rw");
+        Random random = new Random(19);
+        double[] keys = new double[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextDouble();
+            input.writeLong(i);
+            input.writeDouble(keys[i]);
+        }
+        Arrays.sort(keys);
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        config.setLimit(1500);
+        controller = new SortController(FileReader.buildRecords(0, input,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), input, config);
+        controller.multiwayMerge(controller.replacementSelection());
+        assertEquals(1500 * FileReader.RECORD_SIZE, input.length());
+        input.seek(0);
+        for (int i = 0; i < 1500; i++) {
+            input.readLong();
+            assertEquals(keys[i], input.readDouble(), 0.0);
+        }
+        input.close();
+        Files.deleteIfExists(Paths.get("limitTest.bin"));
+    }
+
+
+    /**
+     * test duplicate keys combined through the runs and merge steps
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCombiner() throws IOException {
+        long[] counts = new long[500];
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        config.setCombiner(RecordCombiner.SUM);
+        RandomAccessFile input = writeCounted(counts);
+        controller = new SortController(FileReader.buildRecords(0, input,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), input, config);
+        controller.multiwayMerge(controller.replacementSelection());
+        assertEquals(counts.length * FileReader.RECORD_SIZE, input.length());
+        input.seek(0);
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(counts[i], input.readLong());
+            assertEquals(i, input.readDouble(), 0.0);
+        }
+        input.close();
+        // only the first keys are kept by a limited distinct sort
+        config.setCombiner(RecordCombiner.DISTINCT);
+        config.setLimit(100);
+        config.setSortEngine(SortEngine.RADIX);
+        config.setCompressRuns(true);
+        input = writeCounted(counts);
+        controller = new SortController(FileReader.buildRecords(0, input,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), input, config);
+        controller.multiwayMerge(controller.replacementSelection());
+        assertEquals(100 * FileReader.RECORD_SIZE, input.length());
+        input.seek(0);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1, input.readLong());
+            assertEquals(i, input.readDouble(), 0.0);
+        }
+        input.close();
+        Files.deleteIfExists(Paths.get("combinerTest.bin"));
+    }
+
+
+    /**
+     * test the metrics count the runs, the merges and the bytes of every
+     * phase
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testMetrics() throws IOException {
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        long length = file.length();
+        controller = new SortController(FileReader.buildRecords(0, file,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file, config);
+        controller.multiwayMerge(controller.replacementSelection());
+        SortMetrics metrics = config.getMetrics();
+        long runs = metrics.getRunsProduced();
+        assertTrue(runs > 2);
+        assertEquals(length / runs, metrics.getAverageRunLength());
+        assertEquals(length, metrics.getRunBytesRead());
+        assertEquals(length, metrics.getRunBytesWritten());
+        // two runs at a time take one merge less than the runs
+        assertEquals(runs - 1, metrics.getMergePasses());
+        assertTrue(metrics.getMergeBytesWritten() > length);
+        assertEquals(metrics.getMergeBytesWritten(), metrics
+            .getMergeBytesRead());
+        assertTrue(metrics.getComparisons() > 0);
+        assertTrue(metrics.getStallTimeMillis() >= 0);
+        assertTrue(metrics.getRunTimeMillis() + metrics
+            .getMergeTimeMillis() >= 0);
+    }
+
+
+    /**
+     * test a flight recording of a sort holds its runs, merge passes and
+     * block reads and writes
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testEvents() throws IOException {
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        controller = new SortController(FileReader.buildRecords(0, file,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file, config);
+        Path dump = Paths.get("eventsTest.jfr");
+        Recording recording = new Recording();
+        for (String event : new String[] { "externalsort.Run",
+            "externalsort.MergePass", "externalsort.BlockRead",
+            "externalsort.BlockWrite" }) {
+            recording.enable(event).withoutThreshold();
+        }
+        recording.start();
+        controller.multiwayMerge(controller.replacementSelection());
+        recording.stop();
+        recording.dump(dump);
+        recording.close();
+        Map<String, Integer> counts = new HashMap<>();
+        long runBytes = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            String name = event.getEventType().getName();
+            counts.merge(name, 1, Integer::sum);
+            if (name.equals("externalsort.Run")) {
+                runBytes += event.getLong("bytes");
+            }
+        }
+        Files.deleteIfExists(dump);
+        SortMetrics metrics = config.getMetrics();
+        assertEquals(metrics.getRunsProduced(), (long)counts.get(
+            "externalsort.Run"));
+        assertEquals(file.length(), runBytes);
+        assertEquals(metrics.getMergePasses(), (long)counts.get(
+            "externalsort.MergePass"));
+        assertTrue(counts.get("externalsort.BlockRead") > 0);
+        assertTrue(counts.get("externalsort.BlockWrite") > 0);
+    }
+
+
+    /**
+     * test the last pass on several threads is recorded as one merge pass
+     * and write-behind blocks are timed on the thread writing them
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testParallelEvents() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        config.setMergeThreads(3);
+        controller = new SortController(FileReader.buildRecords(0, file,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file, config);
+        Path dump = Paths.get("eventsTest.jfr");
+        Recording recording = new Recording();
+        recording.enable("externalsort.MergePass").withoutThreshold();
+        recording.enable("externalsort.BlockWrite").withoutThreshold();
+        recording.start();
+        controller.multiwayMerge(controller.replacementSelection());
+        recording.stop();
+        recording.dump(dump);
+        recording.close();
+        int passes = 0;
+        long written = 0;
+        boolean background = false;
+        String caller = Thread.currentThread().getName();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            if (event.getEventType().getName().equals(
+                "externalsort.MergePass")) {
+                passes++;
+                written += event.getLong("bytesWritten");
+            }
+            else if (!caller.equals(event.getThread().getJavaName())) {
+                background = true;
+            }
+        }
+        Files.deleteIfExists(dump);
+        // the runs fit one pass, the last one
+        assertEquals(1, config.getMetrics().getMergePasses());
+        assertEquals(1, passes);
+        assertEquals(file.length(), written);
+        assertTrue(background);
+    }
+
+
+    /**
+     * test the last pass writes key range shards, split by sampled keys,
+     * by explicit keys, from compressed runs and from a presorted file
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testShards() throws IOException {
+        double[] keys = new double[(int)(file.length()
+            / FileReader.RECORD_SIZE)];
+        file.seek(0);
+        for (int i = 0; i < keys.length; i++) {
+            file.readLong();
+            keys[i] = file.readDouble();
+        }
+        Arrays.sort(keys);
+        RandomAccessFile[] shards = new RandomAccessFile[4];
+        for (int i = 0; i < shards.length; i++) {
+            Files.deleteIfExists(Paths.get(FileReader.shardName(
+                "controllerTest.bin", i)));
+            shards[i] = new RandomAccessFile(FileReader.shardName(
+                "controllerTest.bin", i), "rw");
+        }
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        config.setShards(4);
+        RunIndex index = shardSort(config, shards);
+        assertShards(shards, index, keys);
+        // every shard holds about a quarter of the records
+        for (int i = 0; i < shards.length; i++) {
+            assertTrue(index.getLength(i) > file.length() / 8);
+        }
+        config.setSplitKeys(new double[] { 0.1, 0.2, 0.9 });
+        config.setCompressRuns(true);
+        index = shardSort(config, shards);
+        assertShards(shards, index, keys);
+        assertTrue(index.getMaxKey(0) <= 0.1);
+        assertTrue(index.getMinKey(3) > 0.9);
+        // the sorted file is the one run of its shards
+        controller.multiwayMerge(controller.replacementSelection());
+        config.setShards(4);
+        config.setCompressRuns(false);
+        index = shardSort(config, shards);
+        assertShards(shards, index, keys);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].close();
+            Files.deleteIfExists(Paths.get(FileReader.shardName(
+                "controllerTest.bin", i)));
+        }
+    }
+
+
+    /**
+     * Sort the input file into shards
+     * 
+     * @param config
+     *            The configuration of the sort
+     * @param shards
+     *            The shard files
+     * @return The length and key range of every shard
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private RunIndex shardSort(SortConfig config, RandomAccessFile[] shards)
+        throws IOException {
+        SortController sharded = new SortController(FileReader.buildRecords(
+            0, file, config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file, config);
+        return sharded.multiwayMerge(sharded.replacementSelection(), shards);
+    }
+
+
+    /**
+     * Check the shards hold the sorted keys in key order
+     * 
+     * @param shards
+     *            The shard files
+     * @param index
+     *            The length and key range of every shard
+     * @param keys
+     *            The sorted keys of the input
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private void assertShards(
+        RandomAccessFile[] shards,
+        RunIndex index,
+        double[] keys)
+        throws IOException {
+        assertEquals(shards.length, index.size());
+        assertEquals(file.length(), index.totalLength());
+        int k = 0;
+        for (int i = 0; i < shards.length; i++) {
+            assertEquals(index.getLength(i), shards[i].length());
+            shards[i].seek(0);
+            for (long p = 0; p < shards[i].length(); p +=
+                FileReader.RECORD_SIZE) {
+                shards[i].readLong();
+                double key = shards[i].readDouble();
+                assertEquals(keys[k++], key, 0.0);
+                assertTrue(key >= index.getMinKey(i));
+                assertTrue(key <= index.getMaxKey(i));
+            }
+        }
+    }
+
+
+    /**
+     * Write 10000 records of id 1 and small integer keys
+     * 
+     * @param counts
+     *            The number of records of every key, counted while written
+     * @return The file of the records
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private RandomAccessFile writeCounted(long[] counts) throws IOException {
+        Files.deleteIfExists(Paths.get("combinerTest.bin"));
+        RandomAccessFile input = new RandomAccessFile("combinerTest.bin",
+            "rw");
+        Arrays.fill(counts, 0);
+        Random random = new Random(23);
+        for (int i = 0; i < 10000; i++) {
+            int key = random.nextInt(counts.length);
+            counts[key]++;
+            input.writeLong(1);
+            input.writeDouble(key);
+        }
+        return input;
+    }
+
+
+    /**
+     * test a sorted input is proven sorted by one scan without runs
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testPresorted() throws IOException {
+        long length = file.length();
+        controller.multiwayMerge(controller.replacementSelection());
+        byte[] sorted = new byte[(int)length];
+        file.seek(0);
+        file.readFully(sorted);
+        controller = new SortController(FileReader.buildRecords(0, file,
+            FileReader.HEAP_RECORD_NUM), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file);
+        RandomAccessFile runFile = controller.replacementSelection();
+        assertEquals(0, runFile.length());
+        controller.multiwayMerge(runFile);
+        byte[] again = new byte[(int)length];
+        file.seek(0);
+        file.readFully(again);
+        assertTrue(Arrays.equals(sorted, again));
+    }
+
+
+    /**
+     * test a stable sort orders equal keys by id through runs and merge
+     * passes of both engines, and the sorted file is then presorted
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testStable() throws IOException {
+        long length = file.length();
+        Random random = new Random(12);
+        ByteBuffer input = ByteBuffer.allocate((int)length);
+        while (input.hasRemaining()) {
+            input.putLong(random.nextInt(1000)).putDouble(random.nextInt(8));
+        }
+        for (SortEngine engine : SortEngine.values()) {
+            file.seek(0);
+            file.write(input.array());
+            SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+                FileReader.BLOCK_SIZE, 2);
+            config.setSortEngine(engine);
+            config.setStable(true);
+            new FileReader(config).readFile("controllerTest.bin");
+            assertEquals(length, file.length());
+            file.seek(0);
+            long previousId = Long.MIN_VALUE;
+            double previous = Double.NEGATIVE_INFINITY;
+            for (long i = 0; i < length; i += FileReader.RECORD_SIZE) {
+                long id = file.readLong();
+                double key = file.readDouble();
+                int compare = Double.compare(previous, key);
+                assertTrue(compare < 0 || (compare == 0
+                    && previousId <= id));
+                previousId = id;
+                previous = key;
+            }
+        }
+        byte[] sorted = new byte[(int)length];
+        file.seek(0);
+        file.readFully(sorted);
+        controller = new SortController(FileReader.buildRecords(0,
+            new StreamBlockFile(file), FileReader.HEAP_RECORD_NUM,
+            FileReader.HEAP_RECORD_NUM, true), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file);
+        assertEquals(0, controller.replacementSelection().length());
+    }
+
+
+    /**
+     * test the runs of an interrupted sort are not merged over another file
+     * of the same length
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testResumeOtherInput() throws IOException {
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        controller = new SortController(FileReader.buildRecords(0, file,
+            config.getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file, config);
+        controller.setInputPath("controllerTest.bin");
+        // the sort of the file dies after its runs
+        controller.replacementSelection().close();
+        assertTrue(Files.exists(RunManifest.DEFAULT_PATH));
+
+        long length = file.length();
+        Random random = new Random(21);
+        ByteBuffer other = ByteBuffer.allocate((int)length);
+        double[] keys = new double[(int)(length / FileReader.RECORD_SIZE)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(100);
+            other.putLong(i).putDouble(keys[i]);
+        }
+        file.seek(0);
+        file.write(other.array());
+        controller = new SortController(new RecordStore(config
+            .getHeapRecordNum()), null, ByteBuffer.wrap(
+                new byte[FileReader.BLOCK_SIZE]), file, config);
+        controller.setInputPath("controllerTest.bin");
+        assertNull(controller.resume());
+        new FileReader(config).readFile("controllerTest.bin");
+        assertFalse(Files.exists(RunManifest.DEFAULT_PATH));
+        Arrays.sort(keys);
+        file.seek(0);
+        for (double key : keys) {
+            file.readLong();
+            assertEquals(key, file.readDouble(), 0.0);
+        }
+    }
+
+
+    /**
+     * test a radix sort of a file between half and all of the budget, too
+     * large to sort in memory with the scratch copy
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testRadixHalfBudget() throws IOException {
+        SortConfig config = new SortConfig(3 * 512, 512, 8);
+        config.setSortEngine(SortEngine.RADIX);
+        for (int recordNum = 49; recordNum <= 63; recordNum += 7) {
+            file.setLength(0);
+            file.seek(0);
+            for (int i = 0; i < recordNum; i++) {
+                file.writeLong(i);
+                file.writeDouble(recordNum - i);
+            }
+            new FileReader(config).readFile("controllerTest.bin");
+            assertEquals(recordNum * FileReader.RECORD_SIZE, file.length());
+            file.seek(0);
+            for (int i = 1; i <= recordNum; i++) {
+                file.readLong();
+                assertEquals(i, file.readDouble(), 0.0);
+            }
+        }
+    }
+
+
+    /**
+     * test the merge steps write their runs into the space of the runs
+     * merged before instead of growing the run file by every level
+     * 
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testMergeSpace() throws IOException {
+        Files.deleteIfExists(Paths.get("spaceTest.bin"));
+        RandomAccessFile runFile = new RandomAccessFile("spaceTest.bin",
+            "rw");
+        int blockRecordNum = FileReader.BLOCK_SIZE / FileReader.RECORD_SIZE;
+        RunIndex runs = new RunIndex();
+        for (int r = 0; r < 16; r++) {
+            runs.add(runFile.length(), FileReader.BLOCK_SIZE, r,
+                (blockRecordNum - 1) * 16 + r);
+            for (int i = 0; i < blockRecordNum; i++) {
+                runFile.writeLong(i);
+                runFile.writeDouble(i * 16 + r);
+            }
+        }
+        SortConfig config = new SortConfig(2 * FileReader.BLOCK_SIZE,
+            FileReader.BLOCK_SIZE, 2);
+        controller = new SortController(new RecordStore(config
+            .getHeapRecordNum()), null, null, file, config);
+        RunIndex left = controller.mergeSteps(runFile, runs);
+        assertEquals(2, left.size());
+        assertEquals(16 * FileReader.BLOCK_SIZE, left.totalLength());
+        // appending every level would take four times the runs
+        assertTrue(runFile.length() <= 2 * 16 * FileReader.BLOCK_SIZE);
+        for (int r = 0; r < left.size(); r++) {
+            runFile.seek(left.getStart(r));
+            double previous = Double.NEGATIVE_INFINITY;
+            for (long i = 0; i < left.getLength(r); i +=
+                FileReader.RECORD_SIZE) {
+                runFile.readLong();
+                double key = runFile.readDouble();
+                assertTrue(Double.compare(previous, key) <= 0);
+                previous = key;
+            }
+        }
+        runFile.close();
+        Files.deleteIfExists(Paths.get("spaceTest.bin"));
+    }
 }
@@ -0,0 +1,289 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coordinator of a sort spread over several worker JVMs on one host, so the
+ * sort is not bound to the heap and the collector of a single JVM. Every
+ * worker generates the runs of one byte range of the input into its place
+ * of a shared run file and ships back the index of the runs. The
+ * coordinator runs the merge steps needed to fit one pass, then splits the
+ * last pass into key ranges merged by the workers straight into their
+ * places of the file. The workers only share files and run messages, not
+ * the records. A combiner is applied by the workers to their runs and by
+ * the coordinator to the merge, it has to be one the workers can create by
+ * name, see SortWorker.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.15.22
+ *
+ */
+public class SortCoordinator {
+
+    /** The run file shared by the workers **/
+    public static final Path RUN_PATH = Paths.get("clusterRun.bin");
+    /** Bytes of the worker heap on top of its records **/
+    public static final long WORKER_HEAP_OVERHEAD = 64L << 20;
+
+    private SortConfig config;
+    private int workers;
+
+    /**
+     * Constructor of the sort coordinator
+     *
+     * @param config
+     *            The settings of the sort, the memory budget is the one of
+     *            every worker
+     * @param workers
+     *            The number of worker JVMs, at least 1
+     */
+    public SortCoordinator(SortConfig config, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException(workers
+                + " workers cannot sort");
+        }
+        this.config = config;
+        this.workers = workers;
+    }
+
+
+    /**
+     * Sort a file in place
+     *
+     * @param fileName
+     *            Name of the file
+     * @throws IOException
+     *             Throws when anything wrong with I/O or a worker fails
+     */
+    public void sort(String fileName) throws IOException {
+        Files.deleteIfExists(RUN_PATH);
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+            RandomAccessFile runFile = new RandomAccessFile(RUN_PATH
+                .toFile(), "rw")) {
+            long fileLength = file.length();
+            long recordNum = fileLength / FileReader.RECORD_SIZE;
+            if (recordNum == 0) {
+                return;
+            }
+            boolean compress = config.isCompressRuns();
+            // a compressed frame takes at most one and a half of its records
+            runFile.setLength(compress
+                ? fileLength + fileLength / 2
+                : fileLength);
+            RunIndex runs = generateRuns(fileName, fileLength, (int)Math.min(
+                workers, recordNum));
+            RecordStore records = new RecordStore(config.getHeapRecordNum(),
+                config.isStable());
+            SortController controller = new SortController(records, null,
+                ByteBuffer.wrap(new byte[config.getBlockSize()]), file,
+                config);
+            // the last pass is split by key range, unless it cannot be cut
+            // at record positions or its output length is not known ahead
+            if (workers > 1 && !compress && config.getLimit() == Long.MAX_VALUE
+                && config.getCombiner() == null) {
+                mergeParts(fileName, controller.mergeSteps(runFile, runs));
+            }
+            else {
+                long written = controller.multiwayMerge(runFile, runs, config
+                    .open(file));
+                if (written < file.length()) {
+                    file.setLength(written);
+                }
+            }
+        }
+        finally {
+            Files.deleteIfExists(RUN_PATH);
+        }
+    }
+
+
+    /**
+     * Generate the runs of the file, one byte range per worker
+     *
+     * @param fileName
+     *            Name of the file
+     * @param fileLength
+     *            The bytes of the file
+     * @param processes
+     *            The number of workers
+     * @return The runs of every worker in range order
+     * @throws IOException
+     *             Throws when anything wrong with I/O or a worker fails
+     */
+    private RunIndex generateRuns(
+        String fileName,
+        long fileLength,
+        int processes)
+        throws IOException {
+        long recordNum = fileLength / FileReader.RECORD_SIZE;
+        long rangeRecordNum = (recordNum + processes - 1) / processes;
+        Process[] workerProcesses = new Process[processes];
+        try {
+            for (int i = 0; i < processes; i++) {
+                long start = Math.min(i * rangeRecordNum, recordNum)
+                    * FileReader.RECORD_SIZE;
+                long end = i == processes - 1
+                    ? fileLength
+                    : Math.min((i + 1) * rangeRecordNum, recordNum)
+                        * FileReader.RECORD_SIZE;
+                // every range is written to the same place of the run file
+                long runStart = config.isCompressRuns()
+                    ? start + start / 2
+                    : start;
+                workerProcesses[i] = start(SortWorker.RUNS, fileName, Long
+                    .toString(start), Long.toString(end), RUN_PATH.toString(),
+                    Long.toString(runStart));
+                workerProcesses[i].getOutputStream().close();
+            }
+            RunIndex runs = new RunIndex();
+            for (int i = 0; i < processes; i++) {
+                runs.addAll(collect(workerProcesses[i], i).getRuns());
+            }
+            return runs;
+        }
+        finally {
+            destroy(workerProcesses);
+        }
+    }
+
+
+    /**
+     * Merge the runs on the workers, each worker merging one key range of
+     * every run into its place of the file
+     *
+     * @param fileName
+     *            Name of the file
+     * @param runs
+     *            The runs to merge, at most fan-in of them
+     * @throws IOException
+     *             Throws when anything wrong with I/O or a worker fails
+     */
+    private void mergeParts(String fileName, RunIndex runs)
+        throws IOException {
+        RunIndex[] parts = new RunIndex[workers];
+        long[] partStarts = new long[workers];
+        try (RandomAccessFile runFile = new RandomAccessFile(RUN_PATH
+            .toFile(), "rw")) {
+            MergePartitioner partitioner = new MergePartitioner(config.open(
+                runFile), runs);
+            long[][] bounds = partitioner.bounds(partitioner.splitters(
+                workers));
+            long outputPos = 0;
+            for (int p = 0; p < workers; p++) {
+                parts[p] = new RunIndex(runs.size());
+                for (int r = 0; r < runs.size(); r++) {
+                    parts[p].add(bounds[p][r], bounds[p + 1][r]
+                        - bounds[p][r], runs.getMinKey(r), runs.getMaxKey(r));
+                }
+                // the part starts after the records of the smaller parts
+                partStarts[p] = outputPos;
+                outputPos += parts[p].totalLength();
+            }
+        }
+        Process[] workerProcesses = new Process[workers];
+        try {
+            for (int p = 0; p < workers; p++) {
+                workerProcesses[p] = start(SortWorker.MERGE, RUN_PATH
+                    .toString(), fileName, Long.toString(partStarts[p]));
+                try (OutputStream slices = workerProcesses[p]
+                    .getOutputStream()) {
+                    new RunMessage(parts[p].totalLength(), parts[p]).write(
+                        slices);
+                }
+            }
+            for (int p = 0; p < workers; p++) {
+                collect(workerProcesses[p], p);
+            }
+        }
+        finally {
+            destroy(workerProcesses);
+        }
+    }
+
+
+    /**
+     * Start a worker JVM with the class path of this one
+     *
+     * @param mode
+     *            The mode of the worker
+     * @param args
+     *            The arguments of the mode
+     * @return The worker process, its error output going to this one
+     * @throws IOException
+     *             Throws when the worker cannot be started
+     */
+    private Process start(String mode, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+            .toString());
+        // the records of the heap and the scratch copy of the radix engine
+        command.add("-Xmx" + ((config.getMemoryBudget() * 2
+            + WORKER_HEAP_OVERHEAD) >> 20) + "m");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SortWorker.class.getName());
+        command.add(mode);
+        command.addAll(SortWorker.configArgs(config));
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return new ProcessBuilder(command).redirectError(
+            ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+
+    /**
+     * Stop the workers still running after a failure, the ones done are
+     * left as they are
+     *
+     * @param workerProcesses
+     *            The worker processes, null where none was started
+     */
+    private static void destroy(Process[] workerProcesses) {
+        for (Process worker : workerProcesses) {
+            if (worker != null && worker.isAlive()) {
+                worker.destroyForcibly();
+            }
+        }
+    }
+
+
+    /**
+     * Read the run message of a worker and wait for it to exit
+     *
+     * @param worker
+     *            The worker process
+     * @param index
+     *            The index of the worker
+     * @return The run message of the worker
+     * @throws IOException
+     *             Throws when the worker fails
+     */
+    private static RunMessage collect(Process worker, int index)
+        throws IOException {
+        RunMessage message = RunMessage.read(new BufferedInputStream(worker
+            .getInputStream()));
+        try {
+            int exitCode = worker.waitFor();
+            if (exitCode != 0 || message == null) {
+                throw new IOException("Sort worker " + index
+                    + " failed with exit code " + exitCode);
+            }
+        }
+        catch (InterruptedException e) {
+            worker.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for sort "
+                + "worker " + index);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Test of the sort coordinator, its workers running in their own JVMs
+ *
+ * @author Wenjun Han
+ * @version 5.15.22
+ */
+public class SortCoordinatorTest extends TestCase {
+
+    private double[] keys;
+
+    /**
+     * set up an unsorted input of 24 blocks
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("coordinatorTest.bin"));
+        Random random = new Random(13);
+        ByteBuffer input = ByteBuffer.allocate(24 * FileReader.BLOCK_SIZE);
+        keys = new double[input.capacity() / FileReader.RECORD_SIZE];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextDouble();
+            input.putLong(random.nextLong()).putDouble(keys[i]);
+        }
+        Arrays.sort(keys);
+        Files.write(Paths.get("coordinatorTest.bin"), input.array());
+    }
+
+
+    /**
+     * delete the input
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get("coordinatorTest.bin"));
+    }
+
+
+    /**
+     * test three workers generate the runs and merge the key ranges
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSort() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 4);
+        new SortCoordinator(config, 3).sort("coordinatorTest.bin");
+        assertSorted();
+        assertFalse(Files.exists(SortCoordinator.RUN_PATH));
+    }
+
+
+    /**
+     * test compressed runs are merged by the coordinator itself
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCompressedRuns() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        config.setCompressRuns(true);
+        new SortCoordinator(config, 2).sort("coordinatorTest.bin");
+        assertSorted();
+        Exception thrown = null;
+        try {
+            new SortCoordinator(config, 0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test the workers combine their runs and the coordinator the merge
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCombiner() throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(24 * FileReader.BLOCK_SIZE);
+        for (int i = 0; input.hasRemaining(); i++) {
+            input.putLong(1).putDouble(i % 128);
+        }
+        Files.write(Paths.get("coordinatorTest.bin"), input.array());
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 4);
+        config.setCombiner(RecordCombiner.SUM);
+        new SortCoordinator(config, 3).sort("coordinatorTest.bin");
+        RandomAccessFile file = new RandomAccessFile("coordinatorTest.bin",
+            "r");
+        assertEquals(128L * FileReader.RECORD_SIZE, file.length());
+        long count = input.capacity() / FileReader.RECORD_SIZE / 128;
+        for (int i = 0; i < 128; i++) {
+            assertEquals(count, file.readLong());
+            assertEquals(i, file.readDouble(), 0.0);
+        }
+        file.close();
+    }
+
+
+    /**
+     * Check the input holds its keys in ascending order
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private void assertSorted() throws IOException {
+        RandomAccessFile file = new RandomAccessFile("coordinatorTest.bin",
+            "r");
+        assertEquals(keys.length * (long)FileReader.RECORD_SIZE, file
+            .length());
+        for (double key : keys) {
+            file.readLong();
+            assertEquals(key, file.readDouble(), 0.0);
+        }
+        file.close();
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * The ways records are sorted in memory
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.30.22
+ *
+ */
+public enum SortEngine {
+    /** Compare keys through the min heap, runs by replacement selection **/
+    HEAP,
+    /** Radix sort memory loads of keys, one run per load **/
+    RADIX
+}
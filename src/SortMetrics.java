@@ -0,0 +1,338 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of where a sort spends its time and I/O, published as an MBean.
+ * The sort controller marks the phase it is in, the block readers and
+ * writers, the generators and the mergers add to the counters of that
+ * phase. The counters take updates from every thread of a sort, and add up
+ * over the sorts sharing the metrics, one sort at a time.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.17.22
+ *
+ */
+public class SortMetrics implements SortMetricsMBean {
+
+    /** The name the metrics of the process are published under **/
+    public static final String OBJECT_NAME = "externalsort:type=SortMetrics";
+
+    private static SortMetrics published;
+
+    private LongAdder runsProduced;
+    private LongAdder runBytes;
+    private LongAdder mergePasses;
+    private LongAdder comparisons;
+    private LongAdder stallNanos;
+    private LongAdder[] bytesRead;
+    private LongAdder[] bytesWritten;
+    private LongAdder[] phaseNanos;
+    private volatile SortPhase phase;
+    private long phaseStart;
+    private ObjectName name;
+
+    /**
+     * Constructor of the sort metrics, counting the run phase until another
+     * one starts
+     */
+    public SortMetrics() {
+        int phases = SortPhase.values().length;
+        runsProduced = new LongAdder();
+        runBytes = new LongAdder();
+        mergePasses = new LongAdder();
+        comparisons = new LongAdder();
+        stallNanos = new LongAdder();
+        bytesRead = new LongAdder[phases];
+        bytesWritten = new LongAdder[phases];
+        phaseNanos = new LongAdder[phases];
+        for (int i = 0; i < phases; i++) {
+            bytesRead[i] = new LongAdder();
+            bytesWritten[i] = new LongAdder();
+            phaseNanos[i] = new LongAdder();
+        }
+        phase = SortPhase.RUNS;
+    }
+
+
+    /**
+     * Get the metrics of the process, published under OBJECT_NAME the first
+     * time they are asked for
+     *
+     * @return The published sort metrics
+     */
+    public static synchronized SortMetrics getPublished() {
+        if (published == null) {
+            SortMetrics metrics = new SortMetrics();
+            try {
+                metrics.register(OBJECT_NAME);
+            }
+            catch (JMException e) {
+                throw new IllegalStateException("Sort metrics cannot be "
+                    + "published as " + OBJECT_NAME, e);
+            }
+            published = metrics;
+        }
+        return published;
+    }
+
+
+    /**
+     * Publish the metrics on the platform MBean server
+     *
+     * @param objectName
+     *            The name to publish the metrics under
+     * @throws JMException
+     *             Throws when the name is invalid or taken
+     */
+    public void register(String objectName) throws JMException {
+        ObjectName newName = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+            newName);
+        name = newName;
+    }
+
+
+    /**
+     * Remove the metrics from the platform MBean server
+     *
+     * @throws JMException
+     *             Throws when the metrics are not published
+     */
+    public void unregister() throws JMException {
+        if (name == null) {
+            throw new IllegalStateException("Sort metrics not published");
+        }
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        name = null;
+    }
+
+
+    /**
+     * Start a phase, the counts added until the next phase are its own
+     *
+     * @param newPhase
+     *            The phase starting
+     */
+    public void startPhase(SortPhase newPhase) {
+        phase = newPhase;
+        phaseStart = System.nanoTime();
+    }
+
+
+    /**
+     * End the current phase, adding its wall time
+     */
+    public void endPhase() {
+        phaseNanos[phase.ordinal()].add(System.nanoTime() - phaseStart);
+    }
+
+
+    /**
+     * Add the runs generated
+     *
+     * @param runs
+     *            The runs
+     */
+    public void addRuns(RunIndex runs) {
+        runsProduced.add(runs.size());
+        runBytes.add(runs.totalLength());
+    }
+
+
+    /**
+     * Add a merge of a group of runs
+     */
+    public void addMergePass() {
+        mergePasses.increment();
+    }
+
+
+    /**
+     * Add bytes read in the current phase
+     *
+     * @param bytes
+     *            The bytes read
+     */
+    public void addRead(long bytes) {
+        bytesRead[phase.ordinal()].add(bytes);
+    }
+
+
+    /**
+     * Add bytes written in the current phase
+     *
+     * @param bytes
+     *            The bytes written
+     */
+    public void addWritten(long bytes) {
+        bytesWritten[phase.ordinal()].add(bytes);
+    }
+
+
+    /**
+     * Add key comparisons
+     *
+     * @param count
+     *            The comparisons
+     */
+    public void addComparisons(long count) {
+        comparisons.add(count);
+    }
+
+
+    /**
+     * Add time a sort thread waited for a block
+     *
+     * @param nanos
+     *            The nanoseconds waited
+     */
+    public void addStall(long nanos) {
+        stallNanos.add(nanos);
+    }
+
+
+    /**
+     * Get the number of runs generated
+     *
+     * @return The runs produced
+     */
+    @Override
+    public long getRunsProduced() {
+        return runsProduced.sum();
+    }
+
+
+    /**
+     * Get the average bytes of a generated run
+     *
+     * @return The average run length, 0 without runs
+     */
+    @Override
+    public long getAverageRunLength() {
+        long runs = runsProduced.sum();
+        return runs == 0 ? 0 : runBytes.sum() / runs;
+    }
+
+
+    /**
+     * Get the number of merges, every planned step and every last pass
+     * counting one
+     *
+     * @return The merge passes
+     */
+    @Override
+    public long getMergePasses() {
+        return mergePasses.sum();
+    }
+
+
+    /**
+     * Get the bytes read while the runs were generated
+     *
+     * @return The bytes read
+     */
+    @Override
+    public long getRunBytesRead() {
+        return bytesRead[SortPhase.RUNS.ordinal()].sum();
+    }
+
+
+    /**
+     * Get the bytes written while the runs were generated
+     *
+     * @return The bytes written
+     */
+    @Override
+    public long getRunBytesWritten() {
+        return bytesWritten[SortPhase.RUNS.ordinal()].sum();
+    }
+
+
+    /**
+     * Get the bytes read while the runs were merged
+     *
+     * @return The bytes read
+     */
+    @Override
+    public long getMergeBytesRead() {
+        return bytesRead[SortPhase.MERGE.ordinal()].sum();
+    }
+
+
+    /**
+     * Get the bytes written while the runs were merged
+     *
+     * @return The bytes written
+     */
+    @Override
+    public long getMergeBytesWritten() {
+        return bytesWritten[SortPhase.MERGE.ordinal()].sum();
+    }
+
+
+    /**
+     * Get the key comparisons of the heap and of the merge
+     *
+     * @return The comparisons
+     */
+    @Override
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+
+    /**
+     * Get the wall time of run generation
+     *
+     * @return The milliseconds spent
+     */
+    @Override
+    public long getRunTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos[SortPhase.RUNS
+            .ordinal()].sum());
+    }
+
+
+    /**
+     * Get the wall time of the merge
+     *
+     * @return The milliseconds spent
+     */
+    @Override
+    public long getMergeTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos[SortPhase.MERGE
+            .ordinal()].sum());
+    }
+
+
+    /**
+     * Get the time the sort waited for a block to be read or written
+     *
+     * @return The milliseconds stalled
+     */
+    @Override
+    public long getStallTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(stallNanos.sum());
+    }
+
+
+    /**
+     * Start counting from zero
+     */
+    @Override
+    public void reset() {
+        runsProduced.reset();
+        runBytes.reset();
+        mergePasses.reset();
+        comparisons.reset();
+        stallNanos.reset();
+        for (int i = 0; i < bytesRead.length; i++) {
+            bytesRead[i].reset();
+            bytesWritten[i].reset();
+            phaseNanos[i].reset();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * The management interface of the sort metrics, the attributes read over
+ * JMX. Every value adds up over the sorts since the last reset.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.17.22
+ *
+ */
+public interface SortMetricsMBean {
+
+    /**
+     * Get the number of runs generated
+     *
+     * @return The runs produced
+     */
+    public long getRunsProduced();
+
+
+    /**
+     * Get the average bytes of a generated run
+     *
+     * @return The average run length, 0 without runs
+     */
+    public long getAverageRunLength();
+
+
+    /**
+     * Get the number of merges, every planned step and every last pass
+     * counting one
+     *
+     * @return The merge passes
+     */
+    public long getMergePasses();
+
+
+    /**
+     * Get the bytes read while the runs were generated
+     *
+     * @return The bytes read
+     */
+    public long getRunBytesRead();
+
+
+    /**
+     * Get the bytes written while the runs were generated
+     *
+     * @return The bytes written
+     */
+    public long getRunBytesWritten();
+
+
+    /**
+     * Get the bytes read while the runs were merged
+     *
+     * @return The bytes read
+     */
+    public long getMergeBytesRead();
+
+
+    /**
+     * Get the bytes written while the runs were merged
+     *
+     * @return The bytes written
+     */
+    public long getMergeBytesWritten();
+
+
+    /**
+     * Get the key comparisons of the heap and of the merge
+     *
+     * @return The comparisons
+     */
+    public long getComparisons();
+
+
+    /**
+     * Get the wall time of run generation
+     *
+     * @return The milliseconds spent
+     */
+    public long getRunTimeMillis();
+
+
+    /**
+     * Get the wall time of the merge
+     *
+     * @return The milliseconds spent
+     */
+    public long getMergeTimeMillis();
+
+
+    /**
+     * Get the time the sort waited for a block to be read or written
+     *
+     * @return The milliseconds stalled
+     */
+    public long getStallTimeMillis();
+
+
+    /**
+     * Start counting from zero
+     */
+    public void reset();
+}
@@ -0,0 +1,94 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import student.TestCase;
+
+/**
+ * Test of the sort metrics
+ *
+ * @author Wenjun Han
+ * @version 5.17.22
+ */
+public class SortMetricsTest extends TestCase {
+
+    private SortMetrics metrics;
+
+    /**
+     * set up empty metrics
+     */
+    public void setUp() {
+        metrics = new SortMetrics();
+    }
+
+
+    /**
+     * test the counts go to the phase they are added in
+     */
+    public void testPhases() {
+        RunIndex runs = new RunIndex();
+        runs.add(0, 64);
+        runs.add(64, 32);
+        metrics.addRead(96);
+        metrics.addWritten(96);
+        metrics.addRuns(runs);
+        metrics.startPhase(SortPhase.MERGE);
+        metrics.addRead(96);
+        metrics.addWritten(80);
+        metrics.addMergePass();
+        metrics.addComparisons(7);
+        metrics.addStall(3_000_000);
+        metrics.endPhase();
+        assertEquals(2, metrics.getRunsProduced());
+        assertEquals(48, metrics.getAverageRunLength());
+        assertEquals(96, metrics.getRunBytesRead());
+        assertEquals(96, metrics.getRunBytesWritten());
+        assertEquals(96, metrics.getMergeBytesRead());
+        assertEquals(80, metrics.getMergeBytesWritten());
+        assertEquals(1, metrics.getMergePasses());
+        assertEquals(7, metrics.getComparisons());
+        assertEquals(3, metrics.getStallTimeMillis());
+        assertEquals(0, metrics.getRunTimeMillis());
+        assertTrue(metrics.getMergeTimeMillis() >= 0);
+        metrics.reset();
+        assertEquals(0, metrics.getRunsProduced());
+        assertEquals(0, metrics.getAverageRunLength());
+        assertEquals(0, metrics.getMergeBytesRead());
+        assertEquals(0, metrics.getStallTimeMillis());
+    }
+
+
+    /**
+     * test the metrics are read over JMX once published
+     *
+     * @throws JMException
+     *             Throws if the metrics cannot be published
+     */
+    public void testPublished() throws JMException {
+        SortMetrics published = SortMetrics.getPublished();
+        assertSame(published, SortMetrics.getPublished());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(SortMetrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        published.addComparisons(5);
+        assertTrue((Long)server.getAttribute(name, "Comparisons") >= 5);
+        metrics.register("externalsort:type=SortMetrics,name=test");
+        Exception thrown = null;
+        try {
+            metrics.register("externalsort:type=SortMetrics,name=test");
+        }
+        catch (JMException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        metrics.unregister();
+        thrown = null;
+        try {
+            metrics.unregister();
+        }
+        catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+}
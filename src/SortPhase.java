@@ -0,0 +1,13 @@
+/**
+ * The phases of an external sort the sort metrics are kept for
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.17.22
+ *
+ */
+public enum SortPhase {
+    /** Reading the input and writing the sorted runs **/
+    RUNS,
+    /** Merging the runs, the planned steps and the last pass **/
+    MERGE
+}
@@ -0,0 +1,57 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one run written by run generation, lasting from
+ * the first record of the run to its last block handed to the writer
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.18.22
+ *
+ */
+@Name("externalsort.Run")
+@Label("Run Generated")
+@Category({ "External Sort", "Runs" })
+@Description("A sorted run written to the run file")
+@StackTrace(false)
+public class SortRunEvent extends Event {
+
+    @Label("Run")
+    @Description("Index of the run among the runs of its generator")
+    private int run;
+
+    @Label("Start")
+    @Description("Position of the run inside the run file")
+    private long start;
+
+    @Label("Bytes")
+    @DataAmount(DataAmount.BYTES)
+    private long bytes;
+
+    @Label("Records")
+    private long records;
+
+    /**
+     * Commit the event for the last run of an index, if it is recorded
+     *
+     * @param runs
+     *            The runs of the generator, the last one just written
+     * @param recordNum
+     *            The number of records of the run
+     */
+    public void record(RunIndex runs, long recordNum) {
+        end();
+        if (shouldCommit()) {
+            run = runs.size() - 1;
+            start = runs.getStart(run);
+            bytes = runs.getLength(run);
+            records = recordNum;
+            commit();
+        }
+    }
+}
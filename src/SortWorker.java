@@ -0,0 +1,306 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sort worker running in its own JVM for the sort coordinator. A worker
+ * either generates the runs of one byte range of the input into its place
+ * of the shared run file, or merges one key range of the runs into its
+ * place of the output. The coordinator passes the settings of the sort as
+ * arguments, the runs to merge as a run message on the standard input, and
+ * gets the runs written back as a run message on the standard output, so
+ * the records never go through the pipes. A worker generating runs applies
+ * the combiner of the sort to them, so fewer records reach the merge; the
+ * combiner is passed by name, one of the built in ones or a public class
+ * with a public constructor without arguments.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.15.22
+ *
+ */
+public class SortWorker {
+
+    /** Mode of a worker generating runs **/
+    public static final String RUNS = "runs";
+    /** Mode of a worker merging runs **/
+    public static final String MERGE = "merge";
+    /** Number of arguments holding the settings of the sort **/
+    public static final int CONFIG_ARGS = 10;
+    /** Argument of a sort without a combiner **/
+    public static final String NO_COMBINER = "none";
+    /** Argument of the combiner keeping distinct keys **/
+    public static final String DISTINCT = "distinct";
+    /** Argument of the combiner summing the ids **/
+    public static final String SUM = "sum";
+
+    /**
+     * Run a worker
+     *
+     * @param args
+     *            The mode, the settings of the sort, then for runs the input,
+     *            the range start and end, the run file and the run start, and
+     *            for a merge the run file, the output and the output start
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public static void main(String[] args) throws IOException {
+        SortConfig config = parseConfig(args, 1);
+        int next = 1 + CONFIG_ARGS;
+        RunMessage message;
+        if (RUNS.equals(args[0])) {
+            message = generateRuns(config, args[next], Long.parseLong(
+                args[next + 1]), Long.parseLong(args[next + 2]), args[next
+                    + 3], Long.parseLong(args[next + 4]));
+        }
+        else if (MERGE.equals(args[0])) {
+            RunMessage slices = RunMessage.read(new BufferedInputStream(
+                System.in));
+            if (slices == null) {
+                throw new IOException("No runs received to merge");
+            }
+            message = mergePart(config, args[next], slices.getRuns(),
+                args[next + 1], Long.parseLong(args[next + 2]));
+        }
+        else {
+            throw new IllegalArgumentException("Unknown worker mode "
+                + args[0]);
+        }
+        message.write(System.out);
+    }
+
+
+    /**
+     * Generate the runs of a byte range of the input
+     *
+     * @param config
+     *            The settings of the sort
+     * @param inputName
+     *            Name of the input file
+     * @param start
+     *            The position of the first record of the range
+     * @param end
+     *            The position after the last record of the range
+     * @param runName
+     *            Name of the run file shared by the workers
+     * @param runStart
+     *            The position of the first run of the range
+     * @return The message of the runs written
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public static RunMessage generateRuns(
+        SortConfig config,
+        String inputName,
+        long start,
+        long end,
+        String runName,
+        long runStart)
+        throws IOException {
+        int capacity = config.getHeapRecordNum();
+        RecordStore records = new RecordStore(capacity, config.isStable());
+        ByteBuffer outputBuffer = ByteBuffer.wrap(new byte[config
+            .getBlockSize()]);
+        try (RandomAccessFile input = new RandomAccessFile(inputName, "rw");
+            RandomAccessFile runFile = new RandomAccessFile(runName, "rw")) {
+            BlockReader reader = new BlockReader(config.open(input), start,
+                end, config.getBlockSize(), config.isAsyncIo());
+            BlockWriter writer = new BlockWriter(config.open(runFile),
+                runStart, config.getBlockSize(), config.isAsyncIo(), config
+                    .isCompressRuns());
+            RunIndex runs;
+            try {
+                if (config.getSortEngine() == SortEngine.RADIX) {
+                    RadixRunGenerator generator = new RadixRunGenerator(
+                        records, 0, capacity, 0, reader, writer,
+                        outputBuffer);
+                    generator.setLimit(config.getLimit());
+                    generator.setCombiner(config.getCombiner());
+                    runs = generator.call();
+                }
+                else {
+                    RunGenerator generator = new RunGenerator(records, 0,
+                        capacity, 0, reader, writer, outputBuffer);
+                    generator.setLimit(config.getLimit());
+                    generator.setCombiner(config.getCombiner());
+                    runs = generator.call();
+                }
+            }
+            finally {
+                reader.close();
+                writer.close();
+            }
+            return new RunMessage(end - start, runs);
+        }
+    }
+
+
+    /**
+     * Merge one key range of the runs into its place of the output
+     *
+     * @param config
+     *            The settings of the sort
+     * @param runName
+     *            Name of the run file
+     * @param slices
+     *            The part of every run inside the key range, at most the
+     *            fan-in of them
+     * @param outputName
+     *            Name of the output file
+     * @param outputStart
+     *            The position of the first merged record
+     * @return The message of the merged part as one run of the output
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public static RunMessage mergePart(
+        SortConfig config,
+        String runName,
+        RunIndex slices,
+        String outputName,
+        long outputStart)
+        throws IOException {
+        RecordStore records = new RecordStore(config.getHeapRecordNum(),
+            config.isStable());
+        if (slices.size() > config.getMergeFanIn(records.capacity())) {
+            throw new IllegalArgumentException(slices.size()
+                + " runs do not fit one merge");
+        }
+        RunIndex part = new RunIndex(1);
+        try (RandomAccessFile runFile = new RandomAccessFile(runName, "rw");
+            RandomAccessFile output = new RandomAccessFile(outputName,
+                "rw")) {
+            BlockWriter writer = new BlockWriter(config.open(output),
+                outputStart, config.getBlockSize(), config.isAsyncIo());
+            RunOutput merged = new RunOutput(writer, ByteBuffer.wrap(
+                new byte[config.getBlockSize()]), null, config.getLimit());
+            try {
+                RunMerger merger = new RunMerger(records, 0, config
+                    .getBlockRecordNum(), config.open(runFile), slices, null,
+                    null, config.isCompressRuns());
+                merger.setOutput(merged);
+                merger.call();
+                writer.flush();
+            }
+            finally {
+                writer.close();
+            }
+            long length = writer.getPosition() - outputStart;
+            if (length == 0) {
+                part.add(outputStart, 0);
+            }
+            else {
+                part.add(outputStart, length, merged.getFirstKey(), merged
+                    .getLastKey());
+            }
+            return new RunMessage(length, part);
+        }
+    }
+
+
+    /**
+     * Get the arguments passing the settings of a sort to a worker
+     *
+     * @param config
+     *            The settings of the sort
+     * @return The arguments, parsed back by parseConfig
+     */
+    public static List<String> configArgs(SortConfig config) {
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(config.getMemoryBudget()));
+        args.add(Integer.toString(config.getBlockSize()));
+        args.add(Integer.toString(config.getMaxFanIn()));
+        args.add(config.getIoMode().name());
+        args.add(Boolean.toString(config.isAsyncIo()));
+        args.add(config.getSortEngine().name());
+        args.add(Boolean.toString(config.isCompressRuns()));
+        args.add(Long.toString(config.getLimit()));
+        args.add(Boolean.toString(config.isStable()));
+        args.add(combinerArg(config.getCombiner()));
+        return args;
+    }
+
+
+    /**
+     * Parse the settings of a sort passed to a worker
+     *
+     * @param args
+     *            The arguments of the worker
+     * @param from
+     *            The index of the first setting
+     * @return The settings of the sort
+     */
+    public static SortConfig parseConfig(String[] args, int from) {
+        SortConfig config = new SortConfig(Long.parseLong(args[from]),
+            Integer.parseInt(args[from + 1]), Integer.parseInt(args[from
+                + 2]));
+        config.setIoMode(IoMode.valueOf(args[from + 3]));
+        config.setAsyncIo(Boolean.parseBoolean(args[from + 4]));
+        config.setSortEngine(SortEngine.valueOf(args[from + 5]));
+        config.setCompressRuns(Boolean.parseBoolean(args[from + 6]));
+        config.setLimit(Long.parseLong(args[from + 7]));
+        config.setStable(Boolean.parseBoolean(args[from + 8]));
+        config.setCombiner(parseCombiner(args[from + 9]));
+        return config;
+    }
+
+
+    /**
+     * Get the argument naming a combiner for a worker
+     *
+     * @param combiner
+     *            The combiner, null for none
+     * @return The argument, parsed back by parseCombiner
+     */
+    public static String combinerArg(RecordCombiner combiner) {
+        if (combiner == null) {
+            return NO_COMBINER;
+        }
+        if (combiner == RecordCombiner.DISTINCT) {
+            return DISTINCT;
+        }
+        if (combiner == RecordCombiner.SUM) {
+            return SUM;
+        }
+        Class<?> type = combiner.getClass();
+        try {
+            // a worker creates its own instance of the class
+            type.getConstructor();
+        }
+        catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Combiner " + type.getName()
+                + " has no public constructor a worker can call");
+        }
+        return type.getName();
+    }
+
+
+    /**
+     * Create the combiner named by a worker argument
+     *
+     * @param arg
+     *            The argument of the combiner
+     * @return The combiner, null for none
+     */
+    public static RecordCombiner parseCombiner(String arg) {
+        if (NO_COMBINER.equals(arg)) {
+            return null;
+        }
+        if (DISTINCT.equals(arg)) {
+            return RecordCombiner.DISTINCT;
+        }
+        if (SUM.equals(arg)) {
+            return RecordCombiner.SUM;
+        }
+        try {
+            return Class.forName(arg).asSubclass(RecordCombiner.class)
+                .getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Combiner " + arg
+                + " cannot be created");
+        }
+    }
+}
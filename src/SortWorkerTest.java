@@ -0,0 +1,204 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Test of the sort worker
+ *
+ * @author Wenjun Han
+ * @version 5.15.22
+ */
+public class SortWorkerTest extends TestCase {
+
+    private SortConfig config;
+
+    /**
+     * set up an unsorted input of 16 blocks
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        config = new SortConfig(FileReader.HEAP_SIZE, FileReader.BLOCK_SIZE,
+            8);
+        Files.deleteIfExists(Paths.get("workerTest.bin"));
+        Random random = new Random(11);
+        ByteBuffer input = ByteBuffer.allocate(16 * FileReader.BLOCK_SIZE);
+        while (input.hasRemaining()) {
+            input.putLong(random.nextLong()).putDouble(random.nextDouble());
+        }
+        Files.write(Paths.get("workerTest.bin"), input.array());
+    }
+
+
+    /**
+     * delete the files of the workers
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get("workerTest.bin"));
+        Files.deleteIfExists(Paths.get("workerRun.bin"));
+        Files.deleteIfExists(Paths.get("workerOutput.bin"));
+    }
+
+
+    /**
+     * test two workers generate the runs of their halves, then one merges
+     * them all
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testRunsAndMerge() throws IOException {
+        long length = 16 * FileReader.BLOCK_SIZE;
+        RunMessage first = SortWorker.generateRuns(config, "workerTest.bin",
+            0, length / 2, "workerRun.bin", 0);
+        RunMessage second = SortWorker.generateRuns(config,
+            "workerTest.bin", length / 2, length, "workerRun.bin", length
+                / 2);
+        assertEquals(length / 2, first.getLength());
+        assertEquals(length / 2, first.getRuns().totalLength());
+        assertEquals(length / 2, second.getRuns().getStart(0));
+        RunIndex runs = new RunIndex();
+        runs.addAll(first.getRuns());
+        runs.addAll(second.getRuns());
+        RunMessage part = SortWorker.mergePart(config, "workerRun.bin",
+            runs, "workerOutput.bin", 0);
+        assertEquals(length, part.getLength());
+        assertEquals(1, part.getRuns().size());
+        RandomAccessFile output = new RandomAccessFile("workerOutput.bin",
+            "r");
+        assertEquals(length, output.length());
+        double previous = Double.NEGATIVE_INFINITY;
+        for (long i = 0; i < length; i += FileReader.RECORD_SIZE) {
+            output.readLong();
+            double key = output.readDouble();
+            assertTrue(Double.compare(previous, key) <= 0);
+            previous = key;
+        }
+        output.close();
+        assertEquals(previous, part.getRuns().getMaxKey(0), 0.0);
+    }
+
+
+    /**
+     * test the settings of a sort pass to a worker as arguments
+     */
+    public void testConfigArgs() {
+        config.setIoMode(IoMode.MAPPED);
+        config.setSortEngine(SortEngine.RADIX);
+        config.setCompressRuns(true);
+        config.setLimit(100);
+        config.setStable(true);
+        config.setCombiner(RecordCombiner.SUM);
+        List<String> args = SortWorker.configArgs(config);
+        assertEquals(SortWorker.CONFIG_ARGS, args.size());
+        args.add(0, SortWorker.RUNS);
+        SortConfig parsed = SortWorker.parseConfig(args.toArray(
+            new String[0]), 1);
+        assertEquals(config.getMemoryBudget(), parsed.getMemoryBudget());
+        assertEquals(config.getBlockSize(), parsed.getBlockSize());
+        assertEquals(config.getMaxFanIn(), parsed.getMaxFanIn());
+        assertEquals(IoMode.MAPPED, parsed.getIoMode());
+        assertEquals(SortEngine.RADIX, parsed.getSortEngine());
+        assertTrue(parsed.isCompressRuns());
+        assertEquals(100, parsed.getLimit());
+        assertTrue(parsed.isStable());
+        assertSame(RecordCombiner.SUM, parsed.getCombiner());
+    }
+
+
+    /**
+     * test the combiners a worker can create from their names
+     */
+    public void testCombinerArg() {
+        for (RecordCombiner combiner : new RecordCombiner[] { null,
+            RecordCombiner.DISTINCT, RecordCombiner.SUM }) {
+            assertSame(combiner, SortWorker.parseCombiner(SortWorker
+                .combinerArg(combiner)));
+        }
+        String arg = SortWorker.combinerArg(new MaxCombiner());
+        assertEquals(MaxCombiner.class.getName(), arg);
+        assertEquals(7, SortWorker.parseCombiner(arg).combine(0.5, 3, 7));
+        Exception thrown = null;
+        try {
+            SortWorker.combinerArg((key, keptId, id) -> keptId);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        thrown = null;
+        try {
+            SortWorker.parseCombiner("NoSuchCombiner");
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test a worker combines the records of its runs, and the runs travel
+     * as a run message
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCombinedRuns() throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(16 * FileReader.BLOCK_SIZE);
+        for (int i = 0; input.hasRemaining(); i++) {
+            input.putLong(1).putDouble(i % 10);
+        }
+        Files.write(Paths.get("workerTest.bin"), input.array());
+        config.setCombiner(RecordCombiner.SUM);
+        RunMessage runs = SortWorker.generateRuns(config, "workerTest.bin",
+            0, input.capacity(), "workerRun.bin", 0);
+        // every run keeps at most one record per key
+        for (int r = 0; r < runs.getRuns().size(); r++) {
+            assertTrue(runs.getRuns().getLength(r) <= 10
+                * FileReader.RECORD_SIZE);
+        }
+        ByteArrayOutputStream pipe = new ByteArrayOutputStream();
+        runs.write(pipe);
+        RunMessage read = RunMessage.read(new ByteArrayInputStream(pipe
+            .toByteArray()));
+        assertEquals(input.capacity(), read.getLength());
+        assertEquals(runs.getRuns().size(), read.getRuns().size());
+        assertEquals(runs.getRuns().getEnd(0), read.getRuns().getEnd(0));
+        assertNull(RunMessage.read(new ByteArrayInputStream(new byte[3])));
+    }
+
+
+    /**
+     * Combiner keeping the larger id, created by name in a worker
+     */
+    public static class MaxCombiner implements RecordCombiner {
+
+        /**
+         * Keep the larger id
+         *
+         * @param key
+         *            The key of both records
+         * @param keptId
+         *            The id of the record written before
+         * @param id
+         *            The id of the record to fold in
+         * @return The larger id
+         */
+        @Override
+        public long combine(double key, long keptId, long id) {
+            return Math.max(keptId, id);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Iterator over the records a background sort writes into a channel. The
+ * records are decoded a block at a time, and a failure of the sort is thrown
+ * once the channel ends. Closing the iterator early closes the channel, which
+ * stops the sort.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.2.22
+ *
+ */
+public class SortedRecordIterator implements Iterator<Record>, Closeable {
+    private ReadableByteChannel channel;
+    private Future<Long> sort;
+    private ByteBuffer block;
+    private boolean ended;
+
+    /**
+     * Constructor of the sorted record iterator
+     *
+     * @param channel
+     *            The channel the sorted records are written to
+     * @param sort
+     *            The background sort writing the channel
+     * @param blockSize
+     *            The bytes decoded at a time
+     */
+    public SortedRecordIterator(
+        ReadableByteChannel channel,
+        Future<Long> sort,
+        int blockSize) {
+        this.channel = channel;
+        this.sort = sort;
+        block = ByteBuffer.allocate(blockSize);
+        block.limit(0);
+    }
+
+
+    /**
+     * Check if sorted records are left
+     *
+     * @return True if another record can be read
+     */
+    @Override
+    public boolean hasNext() {
+        if (block.remaining() >= FileReader.RECORD_SIZE || ended) {
+            return block.remaining() >= FileReader.RECORD_SIZE;
+        }
+        try {
+            block.compact();
+            while (block.position() < FileReader.RECORD_SIZE && !ended) {
+                ended = channel.read(block) < 0;
+            }
+            block.flip();
+            if (ended) {
+                finish();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return block.remaining() >= FileReader.RECORD_SIZE;
+    }
+
+
+    /**
+     * Get the next sorted record
+     *
+     * @return The record
+     */
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No sorted record is left");
+        }
+        byte[] record = new byte[FileReader.RECORD_SIZE];
+        block.get(record);
+        return new Record(record);
+    }
+
+
+    /**
+     * Stop reading the sorted records
+     *
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public void close() throws IOException {
+        ended = true;
+        block.limit(0);
+        channel.close();
+        sort.cancel(true);
+    }
+
+
+    /**
+     * Wait for the sort after its channel ended, throwing its failure
+     *
+     * @throws IOException
+     *             Throws if the sort failed
+     */
+    private void finish() throws IOException {
+        try {
+            sort.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting the sort");
+        }
+        catch (ExecutionException e) {
+            throw IoTask.unwrap(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Block file reading and writing through RandomAccessFile. Every block read
+ * is one positional read of the file channel, so it needs no seek and no lock
+ * even when merge threads share the file, while writes still go through the
+ * file pointer.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 4.23.22
+ *
+ */
+public class StreamBlockFile implements BlockFile {
+    private RandomAccessFile file;
+    private FileChannel channel;
+
+    /**
+     * Constructor of the stream block file
+     *
+     * @param file
+     *            The random access file
+     */
+    public StreamBlockFile(RandomAccessFile file) {
+        this.file = file;
+        channel = file.getChannel();
+    }
+
+
+    /**
+     * Get the length of the data inside the file
+     *
+     * @return The length in bytes
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public long length() throws IOException {
+        return file.length();
+    }
+
+
+    /**
+     * Read a block of the file into the buffer
+     *
+     * @param position
+     *            The position of the block inside the file
+     * @param length
+     *            The number of bytes to read, inside the file length
+     * @param buffer
+     *            A buffer with room for the block
+     * @return The buffer holding the block
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public ByteBuffer read(long position, int length, ByteBuffer buffer)
+        throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Block ends after the file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+
+    /**
+     * Write the remaining bytes of an array backed buffer to the file
+     *
+     * @param position
+     *            The position of the block inside the file
+     * @param buffer
+     *            The array backed buffer to write
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    @Override
+    public void write(long position, ByteBuffer buffer) throws IOException {
+        // the file pointer is shared by every thread writing the file
+        synchronized (file) {
+            file.seek(position);
+            file.write(buffer.array(), buffer.arrayOffset() + buffer
+                .position(), buffer.remaining());
+        }
+        buffer.position(buffer.limit());
+    }
+
+
+    /**
+     * Writes go straight to the file, nothing to flush
+     */
+    @Override
+    public void flush() {
+        // every write already reached the file
+    }
+
+
+    /**
+     * Get the underlying random access file
+     *
+     * @return The random access file
+     */
+    @Override
+    public RandomAccessFile getFile() {
+        return file;
+    }
+}
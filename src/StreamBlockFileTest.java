@@ -0,0 +1,65 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import student.TestCase;
+
+/**
+ * Test of the stream block file
+ *
+ * @author Wenjun Han
+ * @version 4.23.22
+ */
+public class StreamBlockFileTest extends TestCase {
+
+    private RandomAccessFile file;
+    private StreamBlockFile blockFile;
+
+    /**
+     * set up an empty file
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void setUp() throws IOException {
+        Files.deleteIfExists(Paths.get("streamTest.bin"));
+        file = new RandomAccessFile("streamTest.bin", "rw");
+        blockFile = new StreamBlockFile(file);
+    }
+
+
+    /**
+     * test writing and reading blocks at positions
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testWriteRead() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.putLong(1).putDouble(2.5).putLong(3).putDouble(4.5);
+        buffer.flip();
+        blockFile.write(16, buffer);
+        assertFalse(buffer.hasRemaining());
+        blockFile.flush();
+        assertEquals(48, blockFile.length());
+        ByteBuffer block = blockFile.read(32, 16, ByteBuffer.allocate(32));
+        assertEquals(16, block.remaining());
+        assertEquals(3, block.getLong());
+        assertEquals(4.5, block.getDouble(), 0.0);
+        assertSame(file, blockFile.getFile());
+        // positional reads leave the file pointer after the last write
+        assertEquals(48, file.getFilePointer());
+        Exception thrown = null;
+        try {
+            blockFile.read(40, 16, ByteBuffer.allocate(16));
+        }
+        catch (EOFException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        file.close();
+        Files.deleteIfExists(Paths.get("streamTest.bin"));
+    }
+}
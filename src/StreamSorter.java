@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sort of a stream of records from a channel or an iterator into a channel
+ * or an iterator. The records are loaded into memory first, and only when
+ * they do not fit the memory budget are runs spilled to a temp file and
+ * merged, the last pass writing straight into the output.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.2.22
+ *
+ */
+public class StreamSorter {
+    private SortConfig config;
+
+    /**
+     * Constructor of the stream sorter
+     *
+     * @param config
+     *            The configuration of the sort
+     */
+    public StreamSorter(SortConfig config) {
+        this.config = config;
+    }
+
+
+    /**
+     * Sort the records of a channel into another channel
+     *
+     * @param input
+     *            The channel of records to sort
+     * @param output
+     *            The channel of the sorted records, left open
+     * @return The number of sorted bytes written
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public long sort(ReadableByteChannel input, WritableByteChannel output)
+        throws IOException {
+        boolean radix = config.getSortEngine() == SortEngine.RADIX;
+        int capacity = config.getHeapRecordNum();
+        int blockRecordNum = config.getBlockRecordNum();
+        // the first load ends on a block, the rest of the input continues
+        // from the next block; a radix load leaves half as scratch
+        int loadCapacity = radix
+            ? capacity / 2 / blockRecordNum * blockRecordNum
+            : capacity;
+        ChannelBlockSource source = new ChannelBlockSource(input, config
+            .getBlockSize());
+        // the store doubles as the records come, a short stream never
+        // allocates the whole budget
+        RecordStore records = new RecordStore(Math.min(capacity,
+            blockRecordNum), config.isStable());
+        int loaded = 0;
+        while (loaded < loadCapacity && source.hasNext()) {
+            ByteBuffer block = source.next();
+            if (loaded + blockRecordNum > records.capacity()) {
+                records.grow(Math.min(capacity, Math.max(loaded
+                    + blockRecordNum, 2 * records.capacity())));
+            }
+            while (block.hasRemaining()) {
+                records.read(loaded++, block);
+            }
+        }
+        BlockFile out = new ChannelBlockFile(output);
+        if (!source.hasNext()) {
+            // everything fits in memory, nothing is spilled
+            if (radix) {
+                records.grow(2 * loaded);
+            }
+            writeSorted(records, loaded, radix, out);
+            return out.length();
+        }
+        records.grow(capacity);
+        if (config.isTopK()) {
+            // the smallest records are kept while the rest is read
+            int selected = new TopKSelector(records, 0, (int)config
+                .getLimit()).select(loaded, source);
+            writeSorted(records, selected, false, out);
+            return out.length();
+        }
+        spill(records, loaded, radix, source, out);
+        return out.length();
+    }
+
+
+    /**
+     * Sort the records of an iterator into a channel
+     *
+     * @param input
+     *            The records to sort
+     * @param output
+     *            The channel of the sorted records, left open
+     * @return The number of sorted bytes written
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public long sort(Iterator<Record> input, WritableByteChannel output)
+        throws IOException {
+        return sort(new RecordIteratorChannel(input), output);
+    }
+
+
+    /**
+     * Sort the records of a channel on a background thread, reading the
+     * sorted records through an iterator
+     *
+     * @param input
+     *            The channel of records to sort
+     * @return The iterator of the sorted records, closing it stops the sort
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public SortedRecordIterator sort(ReadableByteChannel input)
+        throws IOException {
+        Pipe pipe = Pipe.open();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        IoTask<Long> task = () -> {
+            try (Pipe.SinkChannel sink = pipe.sink()) {
+                return sort(input, sink);
+            }
+        };
+        Future<Long> sort = executor.submit(task);
+        // the executor ends once the sort is done
+        executor.shutdown();
+        return new SortedRecordIterator(pipe.source(), sort, config
+            .getBlockSize());
+    }
+
+
+    /**
+     * Sort the records of an iterator on a background thread, reading the
+     * sorted records through an iterator
+     *
+     * @param input
+     *            The records to sort
+     * @return The iterator of the sorted records, closing it stops the sort
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public SortedRecordIterator sort(Iterator<Record> input)
+        throws IOException {
+        return sort(new RecordIteratorChannel(input));
+    }
+
+
+    /**
+     * Sort the loaded records in memory and write them out
+     *
+     * @param records
+     *            The loaded records
+     * @param loaded
+     *            The number of loaded records
+     * @param radix
+     *            True to radix sort, false to drain a heap
+     * @param out
+     *            The output
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private void writeSorted(
+        RecordStore records,
+        int loaded,
+        boolean radix,
+        BlockFile out)
+        throws IOException {
+        int first = radix ? new RadixSorter().sort(records, 0, loaded) : 0;
+        RecordHeap minHeap = radix ? null : new RecordHeap(records, loaded);
+        BlockWriter writer = new BlockWriter(out, 0, config.getBlockSize(),
+            false);
+        RunOutput output = new RunOutput(writer, ByteBuffer.wrap(
+            new byte[config.getBlockSize()]), config.getCombiner(), config
+                .getLimit());
+        for (int i = 0; i < loaded; i++) {
+            // the root of the heap is the next record
+            int next = radix ? first + i : 0;
+            if (output.isFull() && !output.folds(records.getKey(next))) {
+                break;
+            }
+            output.write(records, radix ? next : minHeap.removemin());
+        }
+        // write the last partial block
+        output.endRun();
+        writer.flush();
+    }
+
+
+    /**
+     * Generate runs from the loaded records and the rest of the input into a
+     * temp file, then merge them into the output
+     *
+     * @param records
+     *            The loaded records
+     * @param loaded
+     *            The number of loaded records
+     * @param radix
+     *            True for load-sort-store runs, false for replacement
+     *            selection
+     * @param source
+     *            The rest of the input
+     * @param out
+     *            The output
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    private void spill(
+        RecordStore records,
+        int loaded,
+        boolean radix,
+        BlockSource source,
+        BlockFile out)
+        throws IOException {
+        Path runPath = Files.createTempFile("runFile", ".bin");
+        try (RandomAccessFile runFile = new RandomAccessFile(runPath
+            .toFile(), "rw")) {
+            BlockWriter writer = new BlockWriter(config.open(runFile), 0,
+                config.getBlockSize(), config.isAsyncIo(), config
+                    .isCompressRuns());
+            ByteBuffer outputBuffer = ByteBuffer.wrap(new byte[config
+                .getBlockSize()]);
+            RunIndex runs;
+            try {
+                if (radix) {
+                    RadixRunGenerator generator = new RadixRunGenerator(
+                        records, 0, records.capacity(), loaded, source,
+                        writer, outputBuffer);
+                    generator.setLimit(config.getLimit());
+                    generator.setCombiner(config.getCombiner());
+                    runs = generator.call();
+                }
+                else {
+                    RunGenerator generator = new RunGenerator(records, 0,
+                        records.capacity(), loaded, source, writer,
+                        outputBuffer);
+                    generator.setLimit(config.getLimit());
+                    generator.setCombiner(config.getCombiner());
+                    runs = generator.call();
+                }
+            }
+            finally {
+                writer.close();
+            }
+            SortController controller = new SortController(records, null,
+                null, null, config);
+            controller.multiwayMerge(runFile, runs, out);
+        }
+        finally {
+            Files.deleteIfExists(runPath);
+        }
+    }
+}
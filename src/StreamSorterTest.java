@@ -0,0 +1,267 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import student.TestCase;
+
+/**
+ * Test of the stream sorter
+ *
+ * @author Wenjun Han
+ * @version 5.2.22
+ */
+public class StreamSorterTest extends TestCase {
+
+    private byte[] input;
+    private double[] sortedKeys;
+
+    /**
+     * set up 200 random records
+     */
+    public void setUp() {
+        Random random = new Random(11);
+        ByteBuffer buffer = ByteBuffer.allocate(200 * FileReader.RECORD_SIZE);
+        sortedKeys = new double[200];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedKeys[i] = random.nextInt(1000) - 500.5;
+            buffer.putLong(i).putDouble(sortedKeys[i]);
+        }
+        input = buffer.array();
+        Arrays.sort(sortedKeys);
+    }
+
+
+    /**
+     * test a stream fitting the memory budget
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testInMemory() throws IOException {
+        SortConfig config = new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8);
+        StreamSorter sorter = new StreamSorter(config);
+        assertSorted(sortChannel(sorter));
+        config.setSortEngine(SortEngine.RADIX);
+        assertSorted(sortChannel(sorter));
+    }
+
+
+    /**
+     * test streams spilled to runs merged in several passes
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSpill() throws IOException {
+        SortConfig config = new SortConfig(256, 64, 4);
+        StreamSorter sorter = new StreamSorter(config);
+        assertSorted(sortChannel(sorter));
+        config.setSortEngine(SortEngine.RADIX);
+        config.setIoMode(IoMode.MAPPED);
+        config.setMappedWindowSize(SortConfig.MIN_MAPPED_WINDOW);
+        assertSorted(sortChannel(sorter));
+    }
+
+
+    /**
+     * test sorting an iterator into an iterator
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testIterator() throws IOException {
+        List<Record> records = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(input);
+        while (buffer.hasRemaining()) {
+            byte[] record = new byte[FileReader.RECORD_SIZE];
+            buffer.get(record);
+            records.add(new Record(record));
+        }
+        StreamSorter sorter = new StreamSorter(new SortConfig(256, 64, 4));
+        SortedRecordIterator sorted = sorter.sort(records.iterator());
+        for (double key : sortedKeys) {
+            assertTrue(sorted.hasNext());
+            assertEquals(key, sorted.next().getKey(), 0.0);
+        }
+        assertFalse(sorted.hasNext());
+        sorted.close();
+        Exception thrown = null;
+        try {
+            sorted.next();
+        }
+        catch (NoSuchElementException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * test closing the iterator before the end and an empty stream
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCloseAndEmpty() throws IOException {
+        StreamSorter sorter = new StreamSorter(new SortConfig(256, 64, 4));
+        SortedRecordIterator sorted = sorter.sort(Channels.newChannel(
+            new ByteArrayInputStream(input)));
+        assertEquals(sortedKeys[0], sorted.next().getKey(), 0.0);
+        sorted.close();
+        assertFalse(sorted.hasNext());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(0, sorter.sort(Channels.newChannel(
+            new ByteArrayInputStream(new byte[0])), Channels.newChannel(
+                output)));
+        assertEquals(0, output.size());
+    }
+
+
+    /**
+     * test a limit selected in one scan and one cutting runs and merges
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testLimit() throws IOException {
+        SortConfig config = new SortConfig(256, 64, 4);
+        StreamSorter sorter = new StreamSorter(config);
+        int[] limits = { 1, 10, 16, 50, 199 };
+        for (int limit : limits) {
+            config.setLimit(limit);
+            assertPrefix(sortLimited(sorter), limit);
+            config.setSortEngine(SortEngine.RADIX);
+            assertPrefix(sortLimited(sorter), limit);
+            config.setSortEngine(SortEngine.HEAP);
+        }
+        config.setLimit(500);
+        assertSorted(sortChannel(sorter));
+    }
+
+
+    /**
+     * test duplicate keys summed in memory, in runs and in merges
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testCombiner() throws IOException {
+        // the id of every record sums up to the number of its key
+        ByteBuffer counted = ByteBuffer.wrap(input);
+        for (int i = 0; i < input.length; i += FileReader.RECORD_SIZE) {
+            counted.putLong(i, 1);
+        }
+        TreeMap<Double, Long> counts = new TreeMap<>();
+        for (double key : sortedKeys) {
+            counts.merge(key, 1L, Long::sum);
+        }
+        Double[] keys = counts.keySet().toArray(new Double[0]);
+        SortConfig[] configs = { new SortConfig(FileReader.HEAP_SIZE,
+            FileReader.BLOCK_SIZE, 8), new SortConfig(256, 64, 4) };
+        for (SortConfig config : configs) {
+            config.setCombiner(RecordCombiner.SUM);
+            StreamSorter sorter = new StreamSorter(config);
+            assertCounts(sortLimited(sorter), counts);
+            config.setSortEngine(SortEngine.RADIX);
+            assertCounts(sortLimited(sorter), counts);
+            config.setLimit(20);
+            assertCounts(sortLimited(sorter), counts.headMap(keys[20]));
+        }
+    }
+
+
+    /**
+     * Sort the input from one channel into another
+     *
+     * @param sorter
+     *            The stream sorter
+     * @return The sorted bytes
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private byte[] sortChannel(StreamSorter sorter) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(input.length, sorter.sort(Channels.newChannel(
+            new ByteArrayInputStream(input)), Channels.newChannel(output)));
+        return output.toByteArray();
+    }
+
+
+    /**
+     * Sort the input from one channel into another, keeping the limit
+     *
+     * @param sorter
+     *            The stream sorter
+     * @return The sorted bytes
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    private byte[] sortLimited(StreamSorter sorter) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        sorter.sort(Channels.newChannel(new ByteArrayInputStream(input)),
+            Channels.newChannel(output));
+        return output.toByteArray();
+    }
+
+
+    /**
+     * Check the sorted bytes hold the smallest keys in order
+     *
+     * @param sorted
+     *            The sorted bytes
+     * @param num
+     *            The number of smallest keys
+     */
+    private void assertPrefix(byte[] sorted, int num) {
+        assertEquals(num * FileReader.RECORD_SIZE, sorted.length);
+        ByteBuffer buffer = ByteBuffer.wrap(sorted);
+        for (int i = 0; i < num; i++) {
+            buffer.getLong();
+            assertEquals(sortedKeys[i], buffer.getDouble(), 0.0);
+        }
+    }
+
+
+    /**
+     * Check the sorted bytes hold every key once with its count
+     *
+     * @param sorted
+     *            The sorted bytes
+     * @param counts
+     *            The count of every key in key order
+     */
+    private void assertCounts(byte[] sorted, SortedMap<Double, Long> counts) {
+        assertEquals(counts.size() * FileReader.RECORD_SIZE, sorted.length);
+        ByteBuffer buffer = ByteBuffer.wrap(sorted);
+        for (Map.Entry<Double, Long> count : counts.entrySet()) {
+            assertEquals((long)count.getValue(), buffer.getLong());
+            assertEquals(count.getKey(), buffer.getDouble(), 0.0);
+        }
+    }
+
+
+    /**
+     * Check the sorted bytes hold the keys in order
+     *
+     * @param sorted
+     *            The sorted bytes
+     */
+    private void assertSorted(byte[] sorted) {
+        assertEquals(input.length, sorted.length);
+        ByteBuffer buffer = ByteBuffer.wrap(sorted);
+        for (double key : sortedKeys) {
+            buffer.getLong();
+            assertEquals(key, buffer.getDouble(), 0.0);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Selection of the smallest records of an input in one scan. A max-heap of
+ * at most k records is kept in a slice of the record store, every new
+ * record smaller than the heap root replaces it, and the heap is sorted in
+ * place at the end, so nothing is written before the whole input is read.
+ *
+ * @author Wenjun Han(hwenjun)
+ * @version 5.11.22
+ *
+ */
+public class TopKSelector {
+    private RecordStore records;
+    private int base;
+    private int k;
+    private int n;
+
+    /**
+     * Constructor of the top-k selector
+     *
+     * @param records
+     *            The record store holding the heap slice
+     * @param base
+     *            The index of the first heap record inside the store
+     * @param k
+     *            The number of records to select, at least 1
+     */
+    public TopKSelector(RecordStore records, int base, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Cannot select " + k
+                + " records");
+        }
+        this.records = records;
+        this.base = base;
+        this.k = k;
+    }
+
+
+    /**
+     * Select the smallest records of the preloaded records and the rest of
+     * the input
+     *
+     * @param preloaded
+     *            The number of records already loaded into the store from
+     *            the base, the ones after the heap slice are offered first
+     * @param source
+     *            The rest of the input
+     * @return The number of records selected, sorted from the base
+     * @throws IOException
+     *             Throws when anything wrong with I/O
+     */
+    public int select(int preloaded, BlockSource source) throws IOException {
+        n = Math.min(preloaded, k);
+        if (n == k) {
+            buildheap();
+            for (int i = base + k; i < base + preloaded; i++) {
+                offer(records.getId(i), records.getKey(i));
+            }
+        }
+        while (source.hasNext()) {
+            ByteBuffer block = source.next();
+            while (block.hasRemaining()) {
+                if (n < k) {
+                    // fill the heap before the first replacement
+                    records.read(base + n++, block);
+                    if (n == k) {
+                        buildheap();
+                    }
+                }
+                else {
+                    offer(block.getLong(), block.getDouble());
+                }
+            }
+        }
+        if (n < k) {
+            buildheap();
+        }
+        // sort in place, every removed maximum goes after the heap
+        int selected = n;
+        while (n > 1) {
+            records.swap(base, base + --n);
+            siftdown(0);
+        }
+        return selected;
+    }
+
+
+    /**
+     * Replace the largest selected record if a record is smaller
+     *
+     * @param id
+     *            The id of the record
+     * @param key
+     *            The key of the record
+     */
+    private void offer(long id, double key) {
+        if (records.compare(id, key, base) < 0) {
+            records.set(base, id, key);
+            siftdown(0);
+        }
+    }
+
+
+    /**
+     * Heapify the selected records with the largest key at the root
+     */
+    private void buildheap() {
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftdown(i);
+        }
+    }
+
+
+    /**
+     * Put element in its correct place of the max-heap
+     *
+     * @param pos
+     *            The position of the element
+     */
+    private void siftdown(int pos) {
+        while (pos < n / 2) {
+            int j = 2 * pos + 1;
+            if ((j < (n - 1))
+                && (records.compare(base + j, base + j + 1) < 0)) {
+                j++; // j is now index of child with larger value
+            }
+            if (records.compare(base + pos, base + j) >= 0) {
+                return;
+            }
+            records.swap(base + pos, base + j);
+            pos = j;
+        }
+    }
+}
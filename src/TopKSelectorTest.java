@@ -0,0 +1,92 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import student.TestCase;
+
+/**
+ * Test of the top-k selector
+ *
+ * @author Wenjun Han
+ * @version 5.11.22
+ */
+public class TopKSelectorTest extends TestCase {
+
+    private byte[] input;
+
+    /**
+     * set up an input of 8 records
+     */
+    public void setUp() {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        double[] keys = { 5, 3, 9, 1, 7, 2, 8, 6 };
+        for (int i = 0; i < keys.length; i++) {
+            buffer.putLong(i).putDouble(keys[i]);
+        }
+        input = buffer.array();
+    }
+
+
+    /**
+     * test selecting 3 records into a slice placed after the store start
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testSelect() throws IOException {
+        RecordStore store = new RecordStore(6);
+        TopKSelector selector = new TopKSelector(store, 2, 3);
+        assertEquals(3, selector.select(0, source(input)));
+        assertEquals(1.0, store.getKey(2), 0.0);
+        assertEquals(3, store.getId(2));
+        assertEquals(2.0, store.getKey(3), 0.0);
+        assertEquals(3.0, store.getKey(4), 0.0);
+    }
+
+
+    /**
+     * test preloaded records past the heap slice and fewer records than k
+     *
+     * @throws IOException
+     *             Throws if anything going wrong with I/O.
+     */
+    public void testPreloaded() throws IOException {
+        RecordStore store = new RecordStore(8);
+        ByteBuffer buffer = ByteBuffer.wrap(input);
+        for (int i = 0; i < 8; i++) {
+            store.read(i, buffer);
+        }
+        TopKSelector selector = new TopKSelector(store, 0, 2);
+        assertEquals(2, selector.select(8, source(new byte[0])));
+        assertEquals(1.0, store.getKey(0), 0.0);
+        assertEquals(2.0, store.getKey(1), 0.0);
+        store = new RecordStore(16);
+        selector = new TopKSelector(store, 0, 16);
+        assertEquals(8, selector.select(0, source(input)));
+        double[] sorted = { 1, 2, 3, 5, 6, 7, 8, 9 };
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(sorted[i], store.getKey(i), 0.0);
+        }
+        Exception thrown = null;
+        try {
+            new TopKSelector(store, 0, 0);
+        }
+        catch (IllegalArgumentException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+    }
+
+
+    /**
+     * Get a source of blocks of 2 records over bytes
+     *
+     * @param bytes
+     *            The records
+     * @return The block source
+     */
+    private BlockSource source(byte[] bytes) {
+        return new ChannelBlockSource(Channels.newChannel(
+            new ByteArrayInputStream(bytes)), 32);
+    }
+}